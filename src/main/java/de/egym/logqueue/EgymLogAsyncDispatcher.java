@@ -0,0 +1,325 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+import de.egym.logqueue.config.EgymLogDispatchConfig;
+import de.egym.logqueue.config.EgymLogDispatchMode;
+import de.egym.logqueue.config.EgymLogOverflowPolicy;
+
+/**
+ * Puts request records into a bounded ring buffer which is drained by background dispatcher threads. Each request record is processed by
+ * exactly one dispatcher thread, which feeds it into the pipeline. This keeps the request blocks atomic while taking all pipeline work off
+ * the request thread. If the queue is full, the configured {@link EgymLogOverflowPolicy} decides which record is dropped, if any.
+ * <p>
+ * A dispatcher thread takes all records waiting in the queue at once, up to {@link #MAX_BATCH_SIZE}, and hands them to the pipeline as a
+ * batch, see {@link EgymLogDispatcher#dispatchAll(List)}.
+ * </p>
+ */
+@ThreadSafe
+class EgymLogAsyncDispatcher implements EgymLogDispatcher {
+	/** How long a dispatcher thread waits for new records before checking whether it should stop. */
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	/** How long {@link #shutdown()} waits for each dispatcher thread to drain the queue. */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	/** The maximum number of request records a dispatcher thread takes off the queue at once. */
+	private static final int MAX_BATCH_SIZE = 64;
+
+	/** Executes the pipeline. Used by the dispatcher threads and as fallback after shutdown. */
+	private final EgymLogDispatcher delegate;
+
+	private final BlockingQueue<EgymLogRequestRecord> queue;
+
+	private final EgymLogOverflowPolicy overflowPolicy;
+
+	/** How long a request thread waits for free space in the queue. Zero means no timeout. */
+	private final long blockTimeoutMillis;
+
+	private final List<Thread> dispatcherThreads;
+
+	/** Drains the queue if the application exits without calling {@link #shutdown()}. */
+	private final Thread shutdownHook;
+
+	/** The number of request records which were dropped due to a full queue. */
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	/**
+	 * @param delegate
+	 *            the dispatcher executing the pipeline on the background threads. Must not be null.
+	 * @param config
+	 *            the dispatch configuration. Must not be null.
+	 * @param name
+	 *            used to name the background threads. Must not be null.
+	 */
+	EgymLogAsyncDispatcher(EgymLogDispatcher delegate, EgymLogDispatchConfig config, String name) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("delegate must not be null");
+		}
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+		if (config.getMode() != EgymLogDispatchMode.ASYNC) {
+			throw new IllegalArgumentException("config.mode must be ASYNC but is: " + config.getMode());
+		}
+		if (name == null) {
+			throw new IllegalArgumentException("name must not be null");
+		}
+
+		this.delegate = delegate;
+		this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+		this.overflowPolicy = config.getOverflowPolicy();
+		this.blockTimeoutMillis = config.getBlockTimeoutMillis();
+		this.dispatcherThreads = new ArrayList<>(config.getDispatcherThreads());
+
+		for (int i = 0; i < config.getDispatcherThreads(); i++) {
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			}, name + "-" + i);
+			thread.setDaemon(true);
+			dispatcherThreads.add(thread);
+		}
+
+		this.shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stopAndDrain();
+			}
+		}, name + "-shutdown");
+
+		for (Thread thread : dispatcherThreads) {
+			thread.start();
+		}
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Override
+	public void dispatch(EgymLogRequestRecord requestRecord) {
+		if (requestRecord == null) {
+			throw new IllegalArgumentException("requestRecord must not be null");
+		}
+
+		if (!running) {
+			delegate.dispatch(requestRecord);
+			return;
+		}
+
+		final boolean enqueued;
+		try {
+			enqueued = enqueue(requestRecord);
+		} catch (InterruptedException e) {
+			// Do not lose the record, but preserve the interruption for the caller.
+			Thread.currentThread().interrupt();
+			delegate.dispatch(requestRecord);
+			return;
+		}
+
+		if (!enqueued) {
+			if (running) {
+				drop(requestRecord);
+			} else {
+				// We were waiting for free space while the dispatcher got shut down.
+				delegate.dispatch(requestRecord);
+			}
+		} else if (!running && queue.remove(requestRecord)) {
+			// If we raced with shutdown() nobody might pick up the record anymore.
+			delegate.dispatch(requestRecord);
+		}
+	}
+
+	@Override
+	public void dispatchAll(List<EgymLogRequestRecord> requestRecords) {
+		if (requestRecords == null) {
+			throw new IllegalArgumentException("requestRecords must not be null");
+		}
+
+		for (EgymLogRequestRecord requestRecord : requestRecords) {
+			dispatch(requestRecord);
+		}
+	}
+
+	@Override
+	public long getDroppedRequestRecordCount() {
+		return droppedCount.get();
+	}
+
+	@Override
+	public void shutdown() {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// The JVM is already shutting down and the hook takes care of draining.
+		}
+		stopAndDrain();
+	}
+
+	/**
+	 * Stops accepting records, waits for the dispatcher threads to drain the queue and processes leftovers on the calling thread.
+	 */
+	private void stopAndDrain() {
+		running = false;
+
+		for (Thread thread : dispatcherThreads) {
+			try {
+				thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		// Records which were enqueued concurrently to stopping or which the dispatcher threads did not get to.
+		final List<EgymLogRequestRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		while (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+			dispatchSafely(batch);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Puts the record into the queue, applying the overflow policy if the queue is full.
+	 *
+	 * @param requestRecord
+	 *            the record to enqueue. Must not be null.
+	 * @return True if the record was enqueued, false if it was dropped.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for free space.
+	 */
+	private boolean enqueue(EgymLogRequestRecord requestRecord) throws InterruptedException {
+		switch (overflowPolicy) {
+		case BLOCK:
+			return offerBlocking(requestRecord);
+
+		case DROP_NEWEST:
+			return queue.offer(requestRecord);
+
+		case DROP_OLDEST:
+			while (!queue.offer(requestRecord)) {
+				final EgymLogRequestRecord oldestRecord = queue.poll();
+				if (oldestRecord != null) {
+					drop(oldestRecord);
+				}
+			}
+			return true;
+
+		case DROP_BELOW_AUDIT:
+			while (!queue.offer(requestRecord)) {
+				if (!EgymLogLevels.isAudit(requestRecord)) {
+					return false;
+				}
+				if (!evictNonAudited()) {
+					return offerBlocking(requestRecord);
+				}
+			}
+			return true;
+
+		default:
+			throw new AssertionError("Unknown overflowPolicy: " + overflowPolicy);
+		}
+	}
+
+	/**
+	 * Waits for free space in the queue until the block timeout elapses or the dispatcher is shut down.
+	 *
+	 * @param requestRecord
+	 *            the record to enqueue. Must not be null.
+	 * @return True if the record was enqueued, false otherwise.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for free space.
+	 */
+	private boolean offerBlocking(EgymLogRequestRecord requestRecord) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + blockTimeoutMillis;
+
+		while (running) {
+			long waitMillis = POLL_INTERVAL_MILLIS;
+			if (blockTimeoutMillis > 0) {
+				final long remainingMillis = deadline - System.currentTimeMillis();
+				if (remainingMillis <= 0) {
+					return false;
+				}
+				waitMillis = Math.min(waitMillis, remainingMillis);
+			}
+
+			if (queue.offer(requestRecord, waitMillis, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Counts a record which is not going to be dispatched and releases it.
+	 */
+	private void drop(EgymLogRequestRecord requestRecord) {
+		droppedCount.incrementAndGet();
+		requestRecord.release();
+	}
+
+	/**
+	 * Removes the oldest queued record whose maximum log level is below the audit threshold.
+	 *
+	 * @return True if a record was removed, false if the queue contains audited records only.
+	 */
+	private boolean evictNonAudited() {
+		for (EgymLogRequestRecord queuedRecord : queue) {
+			if (!EgymLogLevels.isAudit(queuedRecord) && queue.remove(queuedRecord)) {
+				drop(queuedRecord);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The main loop of the dispatcher threads.
+	 */
+	private void drain() {
+		final List<EgymLogRequestRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		while (running || !queue.isEmpty()) {
+			final EgymLogRequestRecord requestRecord;
+			try {
+				requestRecord = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// Dispatcher threads are only stopped via the running flag.
+				continue;
+			}
+
+			if (requestRecord != null) {
+				// Take whatever else is waiting, so the pipeline can write it in one go.
+				batch.add(requestRecord);
+				queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+				dispatchSafely(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void dispatchSafely(List<EgymLogRequestRecord> batch) {
+		try {
+			if (batch.size() == 1) {
+				delegate.dispatch(batch.get(0));
+			} else {
+				delegate.dispatchAll(batch);
+			}
+		} catch (Exception e) {
+			EgymLogQueueImpl.handleInternalLoggingFailure(e);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Pools the direct byte buffers used for off-heap encoding of log records. Allocating direct buffers is expensive and their memory is only
+ * freed by the garbage collector, so they are reused across requests.
+ */
+@ThreadSafe
+final class EgymLogByteBufferPool {
+	/** The maximum number of idle buffers kept in the pool. */
+	private static final int MAX_POOLED_BUFFERS = 64;
+
+	/** Larger buffers are not returned to the pool, so a few huge requests do not pin their memory forever. */
+	private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+	private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+
+	/** The number of buffers in {@link #pool}, which does not know its size in constant time. */
+	private static final AtomicInteger pooledCount = new AtomicInteger();
+
+	private EgymLogByteBufferPool() {
+		throw new AssertionError("Do not instantiate");
+	}
+
+	/**
+	 * Takes a buffer from the pool or allocates a new one.
+	 *
+	 * @param minCapacity
+	 *            the minimum capacity in bytes. Must be positive.
+	 * @return a cleared direct buffer with at least the specified capacity. Never null.
+	 */
+	static ByteBuffer acquire(int minCapacity) {
+		if (minCapacity <= 0) {
+			throw new IllegalArgumentException("minCapacity must be positive but is: " + minCapacity);
+		}
+
+		final ByteBuffer buffer = pool.poll();
+		if (buffer != null) {
+			pooledCount.decrementAndGet();
+			if (buffer.capacity() >= minCapacity) {
+				return buffer;
+			}
+			// Too small, leave it to the garbage collector.
+		}
+		return ByteBuffer.allocateDirect(minCapacity);
+	}
+
+	/**
+	 * Returns a buffer to the pool. The caller must not use the buffer afterwards.
+	 *
+	 * @param buffer
+	 *            the buffer to return. Must not be null.
+	 */
+	static void release(ByteBuffer buffer) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("buffer must not be null");
+		}
+
+		if (buffer.capacity() > MAX_POOLED_CAPACITY) {
+			return;
+		}
+		if (pooledCount.incrementAndGet() > MAX_POOLED_BUFFERS) {
+			pooledCount.decrementAndGet();
+			return;
+		}
+
+		buffer.clear();
+		pool.offer(buffer);
+	}
+}
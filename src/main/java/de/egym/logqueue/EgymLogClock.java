@@ -0,0 +1,26 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+/**
+ * The time source used to timestamp log records and requests. Replace the default {@link EgymLogSystemClock} via
+ * {@link de.egym.logqueue.config.EgymLogQueueConfig#withClock(EgymLogClock)} to control time in tests and benchmarks.
+ * <p>
+ * All implementations must be <em>thread-safe</em>.
+ * </p>
+ */
+public interface EgymLogClock {
+	/**
+	 * @return the current time in milliseconds since the epoch.
+	 */
+	long currentTimeMillis();
+
+	/**
+	 * @return the current value of a monotonic time source in nanoseconds. Only differences between two values are meaningful, see
+	 *         {@link System#nanoTime()}.
+	 */
+	long nanoTime();
+}
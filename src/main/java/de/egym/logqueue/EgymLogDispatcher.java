@@ -0,0 +1,46 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.util.List;
+
+/**
+ * Hands finished request records over to a log pipeline. Each pipeline has its own dispatcher, so pipelines make progress independently
+ * of each other.
+ * <p>
+ * All implementations must be <em>thread-safe</em>.
+ * </p>
+ */
+interface EgymLogDispatcher {
+	/**
+	 * Dispatches a request record into the pipeline. Depending on the implementation this happens right away or later on a different
+	 * thread. The dispatcher takes over one reference to the record and calls {@link EgymLogRequestRecord#release()} once the pipeline is
+	 * done with it or the record is dropped.
+	 *
+	 * @param requestRecord
+	 *            the record to dispatch. Must not be null.
+	 */
+	void dispatch(EgymLogRequestRecord requestRecord);
+
+	/**
+	 * Dispatches several request records at once, in order. Takes over one reference to each record like {@link #dispatch(EgymLogRequestRecord)}.
+	 *
+	 * @param requestRecords
+	 *            the records to dispatch. Must not be null or contain null.
+	 */
+	void dispatchAll(List<EgymLogRequestRecord> requestRecords);
+
+	/**
+	 * Processes all pending request records and releases any resources held by this dispatcher. Records dispatched afterwards are processed
+	 * synchronously on the calling thread.
+	 */
+	void shutdown();
+
+	/**
+	 * @return the number of request records which were dropped by this dispatcher due to overload.
+	 */
+	long getDroppedRequestRecordCount();
+}
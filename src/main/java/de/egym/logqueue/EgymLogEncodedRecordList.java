@@ -0,0 +1,180 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A read-only list of log records which are encoded in a direct byte buffer, followed by an in-memory tail. Records are decoded on access,
+ * so each access returns a new but equal instance.
+ * <p>
+ * The buffer is returned to the {@link EgymLogByteBufferPool} when the last reference to the list is released.
+ * </p>
+ */
+@ThreadSafe
+class EgymLogEncodedRecordList extends EgymLogReferenceCountedRecordList {
+	private final EgymLogRecordCodec codec;
+
+	/** The encoded records between position zero and the limit. Never modified, readers work on duplicates. */
+	private final ByteBuffer buffer;
+
+	/** The buffer offset of each encoded record. */
+	private final int[] offsets;
+
+	/** The number of records in the buffer. */
+	private final int encodedCount;
+
+	/** The records following the encoded ones. */
+	private final List<EgymLogRecord> tail;
+
+	/**
+	 * @param codec
+	 *            the codec which encoded the records. Must not be null.
+	 * @param buffer
+	 *            the encoded records between position zero and the limit. Must not be null. The list takes ownership.
+	 * @param offsets
+	 *            the buffer offset of each encoded record. Must not be null.
+	 * @param encodedCount
+	 *            the number of records in the buffer.
+	 * @param tail
+	 *            the records following the encoded ones. Must not be null. The list takes ownership.
+	 */
+	EgymLogEncodedRecordList(EgymLogRecordCodec codec, ByteBuffer buffer, int[] offsets, int encodedCount, List<EgymLogRecord> tail) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec must not be null");
+		}
+		if (buffer == null) {
+			throw new IllegalArgumentException("buffer must not be null");
+		}
+		if (offsets == null || offsets.length < encodedCount) {
+			throw new IllegalArgumentException("offsets must contain an entry per encoded record");
+		}
+		if (tail == null) {
+			throw new IllegalArgumentException("tail must not be null");
+		}
+
+		this.codec = codec;
+		this.buffer = buffer;
+		this.offsets = offsets;
+		this.encodedCount = encodedCount;
+		this.tail = tail;
+	}
+
+	@Override
+	public int size() {
+		return encodedCount + tail.size();
+	}
+
+	@Override
+	public EgymLogRecord get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+		}
+
+		if (index >= encodedCount) {
+			return tail.get(index - encodedCount);
+		}
+
+		checkNotReleased();
+		final ByteBuffer view = buffer.duplicate();
+		view.position(offsets[index]);
+		return decode(new DataInputStream(new ByteBufferInputStream(view)));
+	}
+
+	@Override
+	public Iterator<EgymLogRecord> iterator() {
+		checkNotReleased();
+
+		return new Iterator<EgymLogRecord>() {
+			private final DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer.duplicate()));
+
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < size();
+			}
+
+			@Override
+			public EgymLogRecord next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				if (index >= encodedCount) {
+					return tail.get(index++ - encodedCount);
+				}
+
+				checkNotReleased();
+				index++;
+				return decode(in);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	protected void deallocate() {
+		EgymLogByteBufferPool.release(buffer);
+	}
+
+	private EgymLogRecord decode(DataInputStream in) {
+		try {
+			return codec.decode(in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot decode log record", e);
+		}
+	}
+
+	/**
+	 * Reads from a byte buffer, starting at its position.
+	 */
+	@NotThreadSafe
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			final int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -69,20 +69,31 @@ public class EgymLogLevels {
 	 * @param requestLogRecord
 	 *            the request descriptor to analyze. Must not be null.
 	 * @return the maximum log level discovered. Never null.
+	 * @deprecated Use {@link EgymLogRequestRecord#getMaxLogLevel()}, which does not scan the log records.
 	 */
+	@Deprecated
 	public static EgymLogLevel calcMaxLogLevel(EgymLogRequestRecord requestLogRecord) {
-		int maxLogLevelOrdinal = 0;
+		if (requestLogRecord == null) {
+			throw new IllegalArgumentException("requestLogRecord must not be null");
+		}
 
-		if (requestLogRecord.getLogRecords() != null) {
-			for (EgymLogRecord logRecord : requestLogRecord.getLogRecords()) {
-				final EgymLogLevel logLevel = logRecord.getLogLevel();
+		return requestLogRecord.getMaxLogLevel();
+	}
 
-				final int logLevelOrdinal = logLevel.ordinal();
-				maxLogLevelOrdinal = Math.max(maxLogLevelOrdinal, logLevelOrdinal);
-			}
+	/**
+	 * Tests whether the specified request triggers the <em>audit mode</em>, ie. contains a log record equal to or exceeding
+	 * {@link #getThresholdRequestAudit()}.
+	 *
+	 * @param requestLogRecord
+	 *            the request to test. Must not be null.
+	 * @return True if the request is audited.
+	 */
+	public static boolean isAudit(EgymLogRequestRecord requestLogRecord) {
+		if (requestLogRecord == null) {
+			throw new IllegalArgumentException("requestLogRecord must not be null");
 		}
 
-		return EgymLogLevel.values()[maxLogLevelOrdinal];
+		return isSufficientLogLevel(requestLogRecord.getMaxLogLevel(), THRESHOLD_REQUEST_AUDIT);
 	}
 
 	/**
@@ -7,14 +7,38 @@ package de.egym.logqueue;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Singleton;
+import de.egym.logqueue.config.EgymLogQueueConfig;
 import de.egym.logqueue.slf4j.EgymLogger;
 
 /**
  * The central module of the egym-log system. Your application needs to install this module in order for egym-log to work correctly.
  */
 public class EgymLogModule extends AbstractModule {
+	private final EgymLogQueueConfig config;
+
+	/**
+	 * Uses the default configuration, see {@link EgymLogQueueConfig#defaults()}.
+	 */
+	public EgymLogModule() {
+		this(EgymLogQueueConfig.defaults());
+	}
+
+	/**
+	 * @param config
+	 *            the log queue configuration. Must not be null.
+	 */
+	public EgymLogModule(EgymLogQueueConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.config = config;
+	}
+
 	@Override
 	protected void configure() {
+		bind(EgymLogQueueConfig.class).toInstance(config);
+		bind(EgymLogClock.class).toInstance(config.getClock());
 		bind(EgymLogQueue.class).to(EgymLogQueueImpl.class).in(Singleton.class);
 		bind(EgymLogPipelineService.class);
 		requestStaticInjection(EgymLogger.class);
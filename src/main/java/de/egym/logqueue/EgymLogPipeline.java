@@ -5,24 +5,50 @@
  */
 package de.egym.logqueue;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import net.jcip.annotations.ThreadSafe;
+import de.egym.logqueue.config.EgymLogDispatchConfig;
 import de.egym.logqueue.decorator.EgymLogDecorator;
 import de.egym.logqueue.formatter.EgymLogFormatter;
+import de.egym.logqueue.formatter.EgymLogStreamingFormatter;
+import de.egym.logqueue.writer.EgymLogBatchWriter;
+import de.egym.logqueue.writer.EgymLogStreamingWriter;
 import de.egym.logqueue.writer.EgymLogWriter;
 
 /**
  * A pipeline defines a way of processing log records. It consists of a decorator, a formatter and a writer. All request records are passed
  * through this chain in the {@link EgymLogPipeline#log(EgymLogRequestRecord)} method. Each step in the pipeline has the power to discard
  * the log record by returning null.
+ * <p>
+ * Several request records can be fed at once with {@link #logAll(List)}, which hands all messages to the writer in one call if it is an
+ * {@link EgymLogBatchWriter}.
+ * </p>
+ * <p>
+ * If the formatter is an {@link EgymLogStreamingFormatter} and the writer an {@link EgymLogStreamingWriter}, each request record is
+ * formatted into a reused per-thread buffer which is passed to the writer directly. This streaming path takes precedence over batching.
+ * </p>
  */
 @ThreadSafe
 class EgymLogPipeline {
+	/** The buffer streaming formatters append to. */
+	private static final EgymLogThreadLocalBuffer streamingBuffer = new EgymLogThreadLocalBuffer();
+
 	private final EgymLogDecorator logDecorator;
 
 	private final EgymLogFormatter logFormatter;
 
 	private final EgymLogWriter logWriter;
 
+	/** The pipeline specific dispatch configuration. Null if the queue's default applies. */
+	private final EgymLogDispatchConfig dispatchConfig;
+
+	/** True if the formatter streams into the writer, see {@link EgymLogStreamingFormatter}. */
+	private final boolean streaming;
+
 	/**
 	 * @param logDecorator
 	 *            the log decorator. Must not be null.
@@ -32,6 +58,21 @@ class EgymLogPipeline {
 	 *            the log writer. Must not be null.
 	 */
 	EgymLogPipeline(final EgymLogDecorator logDecorator, final EgymLogFormatter logFormatter, final EgymLogWriter logWriter) {
+		this(logDecorator, logFormatter, logWriter, null);
+	}
+
+	/**
+	 * @param logDecorator
+	 *            the log decorator. Must not be null.
+	 * @param logFormatter
+	 *            the log formatter. Must not be null.
+	 * @param logWriter
+	 *            the log writer. Must not be null.
+	 * @param dispatchConfig
+	 *            the pipeline specific dispatch configuration. May be null.
+	 */
+	EgymLogPipeline(final EgymLogDecorator logDecorator, final EgymLogFormatter logFormatter, final EgymLogWriter logWriter,
+			final EgymLogDispatchConfig dispatchConfig) {
 		if (logDecorator == null) {
 			throw new IllegalArgumentException("logDecorator must not be null");
 		}
@@ -45,6 +86,27 @@ class EgymLogPipeline {
 		this.logDecorator = logDecorator;
 		this.logFormatter = logFormatter;
 		this.logWriter = logWriter;
+		this.dispatchConfig = dispatchConfig;
+		this.streaming = logFormatter instanceof EgymLogStreamingFormatter && logWriter instanceof EgymLogStreamingWriter;
+	}
+
+	/**
+	 * @return The pipeline specific dispatch configuration. Null if the queue's default applies.
+	 */
+	EgymLogDispatchConfig getDispatchConfig() {
+		return dispatchConfig;
+	}
+
+	/**
+	 * Closes the writer if it holds resources, ie. implements {@link Closeable}.
+	 *
+	 * @throws IOException
+	 *             if closing fails.
+	 */
+	void close() throws IOException {
+		if (logWriter instanceof Closeable) {
+			((Closeable) logWriter).close();
+		}
 	}
 
 	/**
@@ -58,16 +120,107 @@ class EgymLogPipeline {
 			throw new IllegalArgumentException("requestRecord must not be null");
 		}
 
-		final EgymLogRequestRecord decoratedRequestLogRecord = logDecorator.decorate(requestRecord);
-		if (decoratedRequestLogRecord == null) {
+		if (streaming) {
+			stream(requestRecord);
 			return;
 		}
 
-		final Object message = logFormatter.format(decoratedRequestLogRecord);
+		final Object message = format(requestRecord);
 		if (message == null) {
 			return;
 		}
 
 		logWriter.write(message);
 	}
+
+	/**
+	 * Feeds several request records into the pipeline. A failure to process one record is reported and does not affect the others.
+	 *
+	 * @param requestRecords
+	 *            the records to process, in order. Must not be null or contain null.
+	 */
+	void logAll(final List<EgymLogRequestRecord> requestRecords) {
+		if (requestRecords == null) {
+			throw new IllegalArgumentException("requestRecords must not be null");
+		}
+
+		if (streaming) {
+			for (EgymLogRequestRecord requestRecord : requestRecords) {
+				try {
+					stream(requestRecord);
+				} catch (Exception e) {
+					EgymLogQueueImpl.handleInternalLoggingFailure(e);
+				}
+			}
+			return;
+		}
+
+		final List<Object> messages = new ArrayList<>(requestRecords.size());
+		for (EgymLogRequestRecord requestRecord : requestRecords) {
+			try {
+				final Object message = format(requestRecord);
+				if (message != null) {
+					messages.add(message);
+				}
+			} catch (Exception e) {
+				EgymLogQueueImpl.handleInternalLoggingFailure(e);
+			}
+		}
+		if (messages.isEmpty()) {
+			return;
+		}
+
+		if (logWriter instanceof EgymLogBatchWriter) {
+			((EgymLogBatchWriter) logWriter).writeBatch(messages);
+			return;
+		}
+
+		for (Object message : messages) {
+			try {
+				logWriter.write(message);
+			} catch (Exception e) {
+				EgymLogQueueImpl.handleInternalLoggingFailure(e);
+			}
+		}
+	}
+
+	/**
+	 * Formats the request record into the per-thread buffer and passes the buffer to the writer.
+	 */
+	@SuppressWarnings("unchecked")
+	private void stream(final EgymLogRequestRecord requestRecord) {
+		if (requestRecord == null) {
+			throw new IllegalArgumentException("requestRecord must not be null");
+		}
+
+		final EgymLogRequestRecord decoratedRequestLogRecord = logDecorator.decorate(requestRecord);
+		if (decoratedRequestLogRecord == null) {
+			return;
+		}
+
+		final StringBuilder str = streamingBuffer.acquire();
+		try {
+			if (((EgymLogStreamingFormatter<EgymLogRequestRecord>) logFormatter).formatTo(decoratedRequestLogRecord, str)) {
+				((EgymLogStreamingWriter) logWriter).writeChars(str);
+			}
+		} finally {
+			streamingBuffer.release(str);
+		}
+	}
+
+	/**
+	 * @return the formatted message of the request record, or null if the decorator or the formatter discarded it.
+	 */
+	private Object format(final EgymLogRequestRecord requestRecord) {
+		if (requestRecord == null) {
+			throw new IllegalArgumentException("requestRecord must not be null");
+		}
+
+		final EgymLogRequestRecord decoratedRequestLogRecord = logDecorator.decorate(requestRecord);
+		if (decoratedRequestLogRecord == null) {
+			return null;
+		}
+
+		return logFormatter.format(decoratedRequestLogRecord);
+	}
 }
@@ -5,6 +5,7 @@
  */
 package de.egym.logqueue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,7 @@ import com.google.inject.spi.InstanceBinding;
 import de.egym.logqueue.config.EgymLogPipelineConfig;
 import de.egym.logqueue.decorator.EgymLogDecorator;
 import de.egym.logqueue.formatter.EgymLogFormatter;
+import de.egym.logqueue.writer.EgymLogJournalWriter;
 import de.egym.logqueue.writer.EgymLogWriter;
 
 /**
@@ -62,8 +64,9 @@ class EgymLogPipelineService {
 
 		final EgymLogDecorator logRecordDecorator = createDecoratorFromConfig(config);
 		final EgymLogFormatter logFormatter = createFormatterFromConfig(config);
-		final EgymLogWriter logWriter = createWriterFromConfig(config);
-		return new EgymLogPipeline(logRecordDecorator, logFormatter, logWriter);
+		final EgymLogWriter logWriter = config.getJournalConfig() != null ? createJournalWriterFromConfig(config)
+				: createWriterFromConfig(config);
+		return new EgymLogPipeline(logRecordDecorator, logFormatter, logWriter, config.getDispatchConfig());
 	}
 
 	private EgymLogDecorator createDecoratorFromConfig(EgymLogPipelineConfig config) {
@@ -99,6 +102,20 @@ class EgymLogPipelineService {
 		return logWriter;
 	}
 
+	private EgymLogJournalWriter createJournalWriterFromConfig(EgymLogPipelineConfig<?, ?> config) {
+		final EgymLogWriter<String> logWriter = injector.getInstance(config.getJournaledWriterClazz());
+
+		if (logWriter == null) {
+			throw new AssertionError("Failed to create writer for config " + config);
+		}
+
+		try {
+			return new EgymLogJournalWriter(config.getJournalConfig(), logWriter);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open the log journal for config " + config, e);
+		}
+	}
+
 	/**
 	 * Retrieves the {@link EgymLogPipelineConfig} instances from Guice.
 	 *
@@ -21,6 +21,18 @@ public interface EgymLogQueue {
 	 */
 	void endRequest();
 
+	/**
+	 * Writes all pending request records and stops background dispatching, if enabled. Afterwards closes all log writers which implement
+	 * {@link java.io.Closeable}. Should be called when the application shuts down. Records logged afterwards are written synchronously, if
+	 * the writers still accept them.
+	 */
+	void shutdown();
+
+	/**
+	 * @return the number of request records which were dropped by any pipeline because its queue was full. Useful for monitoring.
+	 */
+	long getDroppedRequestRecordCount();
+
 	/**
 	 * Used to log a record.
 	 *
@@ -5,15 +5,19 @@
  */
 package de.egym.logqueue;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import net.jcip.annotations.ThreadSafe;
 
-import org.joda.time.DateTime;
-
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
+import de.egym.logqueue.config.EgymLogDispatchConfig;
+import de.egym.logqueue.config.EgymLogDispatchMode;
+import de.egym.logqueue.config.EgymLogQueueConfig;
+import de.egym.logqueue.config.EgymLogRequestLimits;
+
 @Singleton
 @ThreadSafe
 class EgymLogQueueImpl implements EgymLogQueue {
@@ -23,15 +27,32 @@ class EgymLogQueueImpl implements EgymLogQueue {
 	/** All configured logging pipelines. */
 	private final List<EgymLogPipeline> pipelines;
 
+	/** One dispatcher per pipeline, in the same order as the pipelines. */
+	private final List<EgymLogDispatcher> dispatchers;
+
+	/** The time source used to timestamp requests. */
+	private final EgymLogClock clock;
+
+	/** Limits the memory used by the log records of a single request. */
+	private final EgymLogRequestLimits requestLimits;
+
 	@Inject
-	EgymLogQueueImpl(final EgymLogPipelineService pipelineService) {
+	EgymLogQueueImpl(final EgymLogPipelineService pipelineService, final EgymLogQueueConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
 		this.pipelines = pipelineService.createPipelines();
 		pipelineSanityCheck();
+		this.dispatchers = createDispatchers(config.getDispatchConfig());
+		this.clock = config.getClock();
+		this.requestLimits = config.getRequestLimits();
 	}
 
 	@Override
 	public void startRequest() {
-		final EgymLogRequestRecordBuilder requestDescriptor = new EgymLogRequestRecordBuilder(DateTime.now());
+		final EgymLogRequestRecordBuilder requestDescriptor = new EgymLogRequestRecordBuilder(clock.currentTimeMillis(), clock.nanoTime(),
+				requestLimits);
 		threadRequestLogRecordBuilder.set(requestDescriptor);
 	}
 
@@ -42,15 +63,46 @@ class EgymLogQueueImpl implements EgymLogQueue {
 			throw new IllegalStateException("No active request. You need to call startRequest() first.");
 		}
 
+		// The builder must not be used anymore once it is built, even if flushing fails.
+		threadRequestLogRecordBuilder.remove();
+
 		try {
 			final EgymLogRequestRecord requestLogRecord = requestRecordBuilder.build();
 			flush(requestLogRecord);
-			threadRequestLogRecordBuilder.remove();
 		} catch (Exception e) {
 			handleInternalLoggingFailure(e);
 		}
 	}
 
+	@Override
+	public void shutdown() {
+		for (EgymLogDispatcher dispatcher : dispatchers) {
+			try {
+				dispatcher.shutdown();
+			} catch (Exception e) {
+				handleInternalLoggingFailure(e);
+			}
+		}
+
+		// Only now all pending records have reached the writers.
+		for (EgymLogPipeline pipeline : pipelines) {
+			try {
+				pipeline.close();
+			} catch (Exception e) {
+				handleInternalLoggingFailure(e);
+			}
+		}
+	}
+
+	@Override
+	public long getDroppedRequestRecordCount() {
+		long droppedCount = 0;
+		for (EgymLogDispatcher dispatcher : dispatchers) {
+			droppedCount += dispatcher.getDroppedRequestRecordCount();
+		}
+		return droppedCount;
+	}
+
 	@Override
 	public void log(EgymLogRecord logRecord) {
 		try {
@@ -98,13 +150,15 @@ class EgymLogQueueImpl implements EgymLogQueue {
 			return;
 		}
 
-		final EgymLogRequestRecordBuilder requestRecordBuilder = new EgymLogRequestRecordBuilder(logRecord.getTimestamp());
+		final EgymLogRequestRecordBuilder requestRecordBuilder = new EgymLogRequestRecordBuilder(logRecord.getTimestampMillis(),
+				logRecord.getNanoTime(), 1);
 		requestRecordBuilder.addLogRecord(logRecord);
 		flush(requestRecordBuilder.build());
 	}
 
 	/**
-	 * Flushes the request record by sending it into the pipelines.
+	 * Flushes the request record by handing it over to the dispatchers, which send it into the pipelines. A failure in one pipeline does
+	 * not keep the record from reaching the other pipelines.
 	 *
 	 * @param requestRecord
 	 *            the record to flush. Must not be null.
@@ -114,15 +168,55 @@ class EgymLogQueueImpl implements EgymLogQueue {
 			throw new IllegalArgumentException("requestRecord must not be null");
 		}
 
-		for (EgymLogPipeline pipeline : pipelines) {
-			pipeline.log(requestRecord);
+		// Each dispatcher releases its reference once its pipeline is done, so a spill file lives until the last pipeline finished.
+		requestRecord.retain(dispatchers.size());
+		try {
+			for (EgymLogDispatcher dispatcher : dispatchers) {
+				try {
+					dispatcher.dispatch(requestRecord);
+				} catch (Exception e) {
+					handleInternalLoggingFailure(e);
+				}
+			}
+		} finally {
+			requestRecord.release();
+		}
+	}
+
+	/**
+	 * Creates one dispatcher per pipeline. Pipelines without a specific dispatch configuration use the queue's default.
+	 *
+	 * @param defaultDispatchConfig
+	 *            the queue's default dispatch configuration. Must not be null.
+	 * @return the dispatchers. Never null.
+	 */
+	private List<EgymLogDispatcher> createDispatchers(EgymLogDispatchConfig defaultDispatchConfig) {
+		if (defaultDispatchConfig == null) {
+			throw new IllegalArgumentException("defaultDispatchConfig must not be null");
 		}
+
+		final List<EgymLogDispatcher> dispatchers = new ArrayList<>(pipelines.size());
+
+		for (int i = 0; i < pipelines.size(); i++) {
+			final EgymLogPipeline pipeline = pipelines.get(i);
+			final EgymLogDispatchConfig dispatchConfig = pipeline.getDispatchConfig() != null ? pipeline.getDispatchConfig()
+					: defaultDispatchConfig;
+
+			final EgymLogDispatcher syncDispatcher = new EgymLogSyncDispatcher(pipeline);
+			if (dispatchConfig.getMode() == EgymLogDispatchMode.SYNC) {
+				dispatchers.add(syncDispatcher);
+			} else {
+				dispatchers.add(new EgymLogAsyncDispatcher(syncDispatcher, dispatchConfig, "egym-log-pipeline-" + i));
+			}
+		}
+
+		return dispatchers;
 	}
 
 	/**
 	 * Worst-case scenario: An exception occurs while logging. All we can do now is to fall back to stderr to avoid any further issues.
 	 */
-	private void handleInternalLoggingFailure(Exception e) {
+	static void handleInternalLoggingFailure(Exception e) {
 		if (e == null) {
 			return;
 		}
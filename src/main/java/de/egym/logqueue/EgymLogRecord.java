@@ -5,20 +5,37 @@
  */
 package de.egym.logqueue;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
 import net.jcip.annotations.Immutable;
 
 import org.joda.time.DateTime;
+import org.slf4j.helpers.MessageFormatter;
 
 import de.egym.logqueue.slf4j.EgymLogger;
 
 /**
  * Contains all the information about one log record as it is created from each slf4j log call. This class is immutable and thread-safe.
  * However, the exception which is referenced in the 'throwable' field might be mutable and might not be thread-safe.
+ * <p>
+ * Parameterized log messages are rendered lazily: The record keeps the message template and a snapshot of the arguments and renders the
+ * message on the first call of {@link #getMessage()}. Log records which are never emitted are never rendered.
+ * </p>
  */
 @Immutable
 public class EgymLogRecord {
-	/** The point in time the log record was created. */
-	private final DateTime timestamp;
+	/** Marks records which have not been created with a monotonic timestamp. */
+	static final long NANO_TIME_UNKNOWN = Long.MIN_VALUE;
+
+	/** The point in time the log record was created, in milliseconds since the epoch. */
+	private final long timestampMillis;
+
+	/** The monotonic time the log record was created, see {@link EgymLogClock#nanoTime()}. {@link #NANO_TIME_UNKNOWN} if unknown. */
+	private final long nanoTime;
+
+	/** The point in time the log record was created. Created on demand from {@link #timestampMillis}. */
+	private volatile DateTime timestamp;
 
 	/** The logger which created this record. */
 	private final EgymLogger source;
@@ -26,8 +43,17 @@ public class EgymLogRecord {
 	/** The log level. */
 	private final EgymLogLevel logLevel;
 
-	/** The log message, if provided. */
-	private final String message;
+	/** The log message template, if the message has not been rendered yet. */
+	private final String messagePattern;
+
+	/** A snapshot of the message arguments, if the message has not been rendered yet. */
+	private final Object[] arguments;
+
+	/**
+	 * The log message, if provided. Rendered on demand from the message template. This does not break immutability: Rendering always
+	 * yields the same result, so it does not matter if concurrent callers render it twice.
+	 */
+	private volatile String message;
 
 	/** The throwable, if provided. */
 	private final Throwable throwable;
@@ -45,9 +71,55 @@ public class EgymLogRecord {
 	 *            The throwable. May be null.
 	 */
 	public EgymLogRecord(DateTime timestamp, EgymLogger source, EgymLogLevel logLevel, String message, Throwable throwable) {
-		if (timestamp == null) {
-			throw new IllegalArgumentException("timestamp must not be null");
-		}
+		this(getMillis(timestamp), NANO_TIME_UNKNOWN, source, logLevel, message, throwable);
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @param timestampMillis
+	 *            The point in time the log record was created, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the log record was created, see {@link EgymLogClock#nanoTime()}.
+	 * @param source
+	 *            The logger which created this record. Must not be null.
+	 * @param logLevel
+	 *            The log level. Must not be null.
+	 * @param message
+	 *            The log message. May be null.
+	 * @param throwable
+	 *            The throwable. May be null.
+	 */
+	public EgymLogRecord(long timestampMillis, long nanoTime, EgymLogger source, EgymLogLevel logLevel, String message,
+			Throwable throwable) {
+		this(timestampMillis, nanoTime, source, logLevel, null, null, message, throwable);
+	}
+
+	/**
+	 * Creates a log record with a parameterized message which is rendered lazily with slf4j's {@link MessageFormatter}.
+	 *
+	 * @param timestampMillis
+	 *            The point in time the log record was created, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the log record was created, see {@link EgymLogClock#nanoTime()}.
+	 * @param source
+	 *            The logger which created this record. Must not be null.
+	 * @param logLevel
+	 *            The log level. Must not be null.
+	 * @param messagePattern
+	 *            The log message template. May be null.
+	 * @param arguments
+	 *            The message arguments. May be null. Arguments which are not known to be immutable are converted to strings right
+	 *            away, see {@link #snapshotArguments(Object[])}.
+	 * @param throwable
+	 *            The throwable. May be null.
+	 */
+	public EgymLogRecord(long timestampMillis, long nanoTime, EgymLogger source, EgymLogLevel logLevel, String messagePattern,
+			Object[] arguments, Throwable throwable) {
+		this(timestampMillis, nanoTime, source, logLevel, messagePattern, snapshotArguments(arguments), null, throwable);
+	}
+
+	private EgymLogRecord(long timestampMillis, long nanoTime, EgymLogger source, EgymLogLevel logLevel, String messagePattern,
+			Object[] arguments, String message, Throwable throwable) {
 		if (source == null) {
 			throw new IllegalArgumentException("source must not be null");
 		}
@@ -55,9 +127,12 @@ public class EgymLogRecord {
 			throw new IllegalArgumentException("logLevel must not be null");
 		}
 
-		this.timestamp = timestamp;
+		this.timestampMillis = timestampMillis;
+		this.nanoTime = nanoTime;
 		this.source = source;
 		this.logLevel = logLevel;
+		this.messagePattern = messagePattern;
+		this.arguments = arguments;
 		this.message = message;
 		this.throwable = throwable;
 	}
@@ -66,9 +141,30 @@ public class EgymLogRecord {
 	 * @return The point in time the log record was created. Never null.
 	 */
 	public DateTime getTimestamp() {
+		DateTime timestamp = this.timestamp;
+		if (timestamp == null) {
+			timestamp = new DateTime(timestampMillis);
+			this.timestamp = timestamp;
+		}
 		return timestamp;
 	}
 
+	/**
+	 * @return The point in time the log record was created, in milliseconds since the epoch. Prefer this over {@link #getTimestamp()} on
+	 *         hot paths as it does not create any objects.
+	 */
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	/**
+	 * @return The monotonic time the log record was created, see {@link EgymLogClock#nanoTime()}. Only meaningful in relation to other
+	 *         monotonic timestamps, see {@link EgymLogRequestRecord#getElapsedNanos(EgymLogRecord)}.
+	 */
+	long getNanoTime() {
+		return nanoTime;
+	}
+
 	/**
 	 * @return The logger which created this record. Never null.
 	 */
@@ -87,9 +183,30 @@ public class EgymLogRecord {
 	 * @return The log message, if provided. May be null.
 	 */
 	public String getMessage() {
+		String message = this.message;
+		if (message == null && messagePattern != null) {
+			message = MessageFormatter.arrayFormat(messagePattern, arguments).getMessage();
+			this.message = message;
+		}
 		return message;
 	}
 
+	/**
+	 * @return The log message template. Null if the record has been created with a plain message.
+	 */
+	String getMessagePattern() {
+		return messagePattern;
+	}
+
+	/**
+	 * Beware that the returned array must not be modified.
+	 *
+	 * @return The snapshot of the message arguments. Only contains null, strings, throwables and immutable values. May be null.
+	 */
+	Object[] getArguments() {
+		return arguments;
+	}
+
 	/**
 	 * Beware that the exception might not be thread-safe.
 	 *
@@ -98,4 +215,74 @@ public class EgymLogRecord {
 	public Throwable getThrowable() {
 		return throwable;
 	}
+
+	/**
+	 * Estimates the heap memory used by this record without rendering the message.
+	 *
+	 * @return the estimated size in bytes.
+	 */
+	long estimateSize() {
+		// Object header and fields.
+		long size = 64;
+
+		final String message = this.message;
+		if (message != null) {
+			size += 40 + 2L * message.length();
+		} else if (messagePattern != null) {
+			size += 40 + 2L * messagePattern.length();
+			if (arguments != null) {
+				size += 16 + 32L * arguments.length;
+			}
+		}
+
+		if (throwable != null) {
+			// Rough guess for the exception, its message and its stack trace.
+			size += 1024;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Creates a thread-safe snapshot of the message arguments. Immutable values are kept as they are, everything else is rendered right
+	 * away because it might change or might not be thread-safe. Throwables are kept, too, because slf4j does not render a trailing
+	 * throwable.
+	 * <p>
+	 * This means that the {@code toString()} of arguments which are not known to be immutable, eg. UUIDs or domain objects, still runs at
+	 * log time, even if the message is never printed. Only the formatting of the message itself is deferred.
+	 * </p>
+	 *
+	 * @param arguments
+	 *            the arguments. May be null.
+	 * @return the snapshot. Null if arguments is null.
+	 */
+	private static Object[] snapshotArguments(Object[] arguments) {
+		if (arguments == null) {
+			return null;
+		}
+
+		final Object[] snapshot = new Object[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			final Object argument = arguments[i];
+			if (argument == null || argument instanceof Throwable || isImmutable(argument.getClass())) {
+				snapshot[i] = argument;
+			} else {
+				snapshot[i] = MessageFormatter.format("{}", argument).getMessage();
+			}
+		}
+		return snapshot;
+	}
+
+	private static long getMillis(DateTime timestamp) {
+		if (timestamp == null) {
+			throw new IllegalArgumentException("timestamp must not be null");
+		}
+		return timestamp.getMillis();
+	}
+
+	private static boolean isImmutable(Class<?> clazz) {
+		return clazz == String.class || clazz == Integer.class || clazz == Long.class || clazz == Boolean.class || clazz == Character.class
+				|| clazz == Short.class || clazz == Byte.class || clazz == Double.class || clazz == Float.class || clazz == BigDecimal.class
+				|| clazz == BigInteger.class || clazz == DateTime.class || clazz.isEnum();
+	}
 }
@@ -0,0 +1,140 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Encodes the log records of a request into a pooled direct byte buffer, so they do not occupy the heap while the request is in progress.
+ * Once the request ends, the buffer is turned into an {@link EgymLogEncodedRecordList}, which decodes the records on access.
+ * <p>
+ * Parameterized messages are encoded as their template and arguments, see {@link EgymLogRecordCodec}, so they are only rendered if the
+ * decoded record is printed.
+ * </p>
+ */
+@NotThreadSafe
+class EgymLogRecordBuffer {
+	private final EgymLogRecordCodec codec = new EgymLogRecordCodec();
+
+	/** Each record is encoded into this scratch buffer first, so its size is known before the direct buffer is grown. */
+	private final ScratchBuffer recordBuffer = new ScratchBuffer();
+
+	private final DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+
+	private ByteBuffer buffer;
+
+	/** The buffer offset of each record, so the records can be accessed by index. */
+	private int[] offsets = new int[64];
+
+	private int recordCount;
+
+	/**
+	 * @param initialCapacity
+	 *            the initial capacity of the direct buffer in bytes. Must be positive.
+	 */
+	EgymLogRecordBuffer(int initialCapacity) {
+		this.buffer = EgymLogByteBufferPool.acquire(initialCapacity);
+	}
+
+	/**
+	 * Appends a log record to the buffer, growing it if needed.
+	 *
+	 * @param logRecord
+	 *            the record to append. Must not be null.
+	 */
+	void append(EgymLogRecord logRecord) {
+		if (logRecord == null) {
+			throw new IllegalArgumentException("logRecord must not be null");
+		}
+		if (buffer == null) {
+			throw new IllegalStateException("The buffer has already been closed");
+		}
+
+		recordBuffer.reset();
+		try {
+			codec.encode(recordOut, logRecord);
+		} catch (IOException e) {
+			// Cannot happen, ByteArrayOutputStream does not throw.
+			throw new IllegalStateException(e);
+		}
+
+		ensureRemaining(recordBuffer.size());
+
+		if (recordCount == offsets.length) {
+			final int[] grown = new int[offsets.length * 2];
+			System.arraycopy(offsets, 0, grown, 0, offsets.length);
+			offsets = grown;
+		}
+		offsets[recordCount++] = buffer.position();
+		buffer.put(recordBuffer.array(), 0, recordBuffer.size());
+	}
+
+	/**
+	 * Hands the buffer over to a list, which is responsible for returning it to the pool.
+	 *
+	 * @param tail
+	 *            further log records, which follow the encoded ones. Must not be null.
+	 * @return the list of all log records. Never null.
+	 */
+	EgymLogEncodedRecordList toList(List<EgymLogRecord> tail) {
+		if (tail == null) {
+			throw new IllegalArgumentException("tail must not be null");
+		}
+		if (buffer == null) {
+			throw new IllegalStateException("The buffer has already been closed");
+		}
+
+		final ByteBuffer encoded = buffer;
+		buffer = null;
+		encoded.flip();
+		return new EgymLogEncodedRecordList(codec, encoded, offsets, recordCount, tail);
+	}
+
+	/**
+	 * @return The number of encoded records.
+	 */
+	int getRecordCount() {
+		return recordCount;
+	}
+
+	private void ensureRemaining(int length) {
+		if (buffer.remaining() >= length) {
+			return;
+		}
+
+		final long requiredCapacity = (long) buffer.position() + length;
+		if (requiredCapacity > Integer.MAX_VALUE) {
+			throw new IllegalStateException("The log records of the request exceed the maximum buffer size");
+		}
+
+		final int newCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(requiredCapacity, 2L * buffer.capacity()));
+		final ByteBuffer grown = EgymLogByteBufferPool.acquire(newCapacity);
+		buffer.flip();
+		grown.put(buffer);
+		EgymLogByteBufferPool.release(buffer);
+		buffer = grown;
+	}
+
+	/**
+	 * Gives access to the internal array, so the encoded record can be copied into the direct buffer without a temporary copy.
+	 */
+	@NotThreadSafe
+	private static class ScratchBuffer extends ByteArrayOutputStream {
+		ScratchBuffer() {
+			super(256);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.jcip.annotations.NotThreadSafe;
+import de.egym.logqueue.slf4j.EgymLogger;
+
+/**
+ * Encodes log records into a compact binary format and decodes them again. Parameterized messages are stored as their template and
+ * argument snapshot, so they are still only rendered if they are printed. Throwables are stored as {@link EgymLogThrowableSnapshot}s.
+ * Loggers are not serialized: Each codec keeps a registry of the loggers it has encoded and only writes their index, so the records can
+ * only be decoded by the codec which encoded them.
+ * <p>
+ * Encoding must happen on a single thread. Once encoding is finished, decoding is safe from multiple threads, given that the codec has been
+ * safely published to them.
+ * </p>
+ */
+@NotThreadSafe
+class EgymLogRecordCodec {
+	/** Protects against throwables with absurdly long cause chains. */
+	private static final int MAX_CAUSE_DEPTH = 64;
+
+	private static final int NULL_LENGTH = -1;
+
+	private static final byte PLAIN_MESSAGE = 0;
+
+	private static final byte PARAMETERIZED_MESSAGE = 1;
+
+	private static final byte NULL_ARGUMENT = 0;
+
+	private static final byte STRING_ARGUMENT = 1;
+
+	private static final byte INTEGER_ARGUMENT = 2;
+
+	private static final byte LONG_ARGUMENT = 3;
+
+	private static final byte BOOLEAN_ARGUMENT = 4;
+
+	private static final byte DOUBLE_ARGUMENT = 5;
+
+	/** Any other argument, stored rendered. */
+	private static final byte RENDERED_ARGUMENT = 6;
+
+	private final List<EgymLogger> sources = new ArrayList<>();
+
+	private final Map<EgymLogger, Integer> sourceIndexes = new IdentityHashMap<>();
+
+	/**
+	 * @param out
+	 *            the output to write to. Must not be null.
+	 * @param logRecord
+	 *            the record to encode. Must not be null.
+	 * @throws IOException
+	 *             if writing fails.
+	 */
+	void encode(DataOutput out, EgymLogRecord logRecord) throws IOException {
+		if (out == null) {
+			throw new IllegalArgumentException("out must not be null");
+		}
+		if (logRecord == null) {
+			throw new IllegalArgumentException("logRecord must not be null");
+		}
+
+		out.writeLong(logRecord.getTimestampMillis());
+		out.writeLong(logRecord.getNanoTime());
+		out.writeInt(getSourceIndex(logRecord.getSource()));
+		out.writeByte(logRecord.getLogLevel().ordinal());
+		writeMessage(out, logRecord);
+
+		final Throwable throwable = logRecord.getThrowable();
+		if (throwable == null) {
+			out.writeBoolean(false);
+		} else {
+			writeThrowable(out, throwable, Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>()), 0);
+		}
+	}
+
+	/**
+	 * @param in
+	 *            the input to read from. Must not be null.
+	 * @return the decoded record. Never null.
+	 * @throws IOException
+	 *             if reading fails.
+	 */
+	EgymLogRecord decode(DataInput in) throws IOException {
+		if (in == null) {
+			throw new IllegalArgumentException("in must not be null");
+		}
+
+		final long timestampMillis = in.readLong();
+		final long nanoTime = in.readLong();
+		final EgymLogger source = sources.get(in.readInt());
+		final EgymLogLevel logLevel = EgymLogLevel.values()[in.readByte()];
+		if (in.readByte() == PARAMETERIZED_MESSAGE) {
+			final String messagePattern = readString(in);
+			final Object[] arguments = readArguments(in);
+			final Throwable throwable = readThrowable(in);
+			return new EgymLogRecord(timestampMillis, nanoTime, source, logLevel, messagePattern, arguments, throwable);
+		}
+
+		final String message = readString(in);
+		final Throwable throwable = readThrowable(in);
+		return new EgymLogRecord(timestampMillis, nanoTime, source, logLevel, message, throwable);
+	}
+
+	private int getSourceIndex(EgymLogger source) {
+		Integer index = sourceIndexes.get(source);
+		if (index == null) {
+			index = sources.size();
+			sources.add(source);
+			sourceIndexes.put(source, index);
+		}
+		return index;
+	}
+
+	private static void writeMessage(DataOutput out, EgymLogRecord logRecord) throws IOException {
+		final String messagePattern = logRecord.getMessagePattern();
+		if (messagePattern == null) {
+			out.writeByte(PLAIN_MESSAGE);
+			writeString(out, logRecord.getMessage());
+			return;
+		}
+
+		out.writeByte(PARAMETERIZED_MESSAGE);
+		writeString(out, messagePattern);
+
+		final Object[] arguments = logRecord.getArguments();
+		if (arguments == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+
+		out.writeInt(arguments.length);
+		for (Object argument : arguments) {
+			writeArgument(out, argument);
+		}
+	}
+
+	private static void writeArgument(DataOutput out, Object argument) throws IOException {
+		if (argument == null) {
+			out.writeByte(NULL_ARGUMENT);
+		} else if (argument instanceof String) {
+			out.writeByte(STRING_ARGUMENT);
+			writeString(out, (String) argument);
+		} else if (argument instanceof Integer) {
+			out.writeByte(INTEGER_ARGUMENT);
+			out.writeInt((Integer) argument);
+		} else if (argument instanceof Long) {
+			out.writeByte(LONG_ARGUMENT);
+			out.writeLong((Long) argument);
+		} else if (argument instanceof Boolean) {
+			out.writeByte(BOOLEAN_ARGUMENT);
+			out.writeBoolean((Boolean) argument);
+		} else if (argument instanceof Double) {
+			out.writeByte(DOUBLE_ARGUMENT);
+			out.writeDouble((Double) argument);
+		} else {
+			// The remaining immutable values are rendered. A throwable which is not referenced by the template is not part of the message,
+			// and a rendered string in its place is ignored just the same.
+			out.writeByte(RENDERED_ARGUMENT);
+			writeString(out, argument.toString());
+		}
+	}
+
+	private static Object[] readArguments(DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+
+		final Object[] arguments = new Object[length];
+		for (int i = 0; i < length; i++) {
+			final byte type = in.readByte();
+			switch (type) {
+			case NULL_ARGUMENT:
+				break;
+			case STRING_ARGUMENT:
+			case RENDERED_ARGUMENT:
+				arguments[i] = readString(in);
+				break;
+			case INTEGER_ARGUMENT:
+				arguments[i] = in.readInt();
+				break;
+			case LONG_ARGUMENT:
+				arguments[i] = in.readLong();
+				break;
+			case BOOLEAN_ARGUMENT:
+				arguments[i] = in.readBoolean();
+				break;
+			case DOUBLE_ARGUMENT:
+				arguments[i] = in.readDouble();
+				break;
+			default:
+				throw new IOException("Unknown argument type " + type);
+			}
+		}
+		return arguments;
+	}
+
+	private static void writeThrowable(DataOutput out, Throwable throwable, Set<Throwable> visited, int depth) throws IOException {
+		// Cause cycles are cut off, like printStackTrace() does.
+		if (throwable == null || depth > MAX_CAUSE_DEPTH || !visited.add(throwable)) {
+			out.writeBoolean(false);
+			return;
+		}
+
+		out.writeBoolean(true);
+		writeString(out, throwable.getClass().getName());
+		writeString(out, throwable.getMessage());
+		writeString(out, throwable.toString());
+
+		final StackTraceElement[] stackTrace = throwable.getStackTrace();
+		out.writeInt(stackTrace.length);
+		for (StackTraceElement element : stackTrace) {
+			writeString(out, element.getClassName());
+			writeString(out, element.getMethodName());
+			writeString(out, element.getFileName());
+			out.writeInt(element.getLineNumber());
+		}
+
+		writeThrowable(out, throwable.getCause(), visited, depth + 1);
+
+		final Throwable[] suppressed = throwable.getSuppressed();
+		out.writeInt(suppressed.length);
+		for (Throwable suppressedThrowable : suppressed) {
+			writeThrowable(out, suppressedThrowable, visited, depth + 1);
+		}
+	}
+
+	private static Throwable readThrowable(DataInput in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+
+		final String className = readString(in);
+		final String message = readString(in);
+		final String description = readString(in);
+
+		final StackTraceElement[] stackTrace = new StackTraceElement[in.readInt()];
+		for (int i = 0; i < stackTrace.length; i++) {
+			stackTrace[i] = new StackTraceElement(readString(in), readString(in), readString(in), in.readInt());
+		}
+
+		final Throwable cause = readThrowable(in);
+		final EgymLogThrowableSnapshot snapshot = new EgymLogThrowableSnapshot(className, message, description, stackTrace, cause);
+
+		final int suppressedCount = in.readInt();
+		for (int i = 0; i < suppressedCount; i++) {
+			final Throwable suppressed = readThrowable(in);
+			if (suppressed != null) {
+				snapshot.addSuppressed(suppressed);
+			}
+		}
+
+		return snapshot;
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+
+		// Not writeUTF(), which is limited to 64k.
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.util.AbstractList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A read-only list of log records which holds a resource outside of the heap, like a file or a direct buffer. The resource is reference
+ * counted: Whoever hands the list to someone else calls {@link #retain(int)} first, and every holder calls {@link #release()} once it is
+ * done. The resource is freed when the last reference is released. Accessing the records afterwards fails with an
+ * {@link IllegalStateException}.
+ */
+@ThreadSafe
+abstract class EgymLogReferenceCountedRecordList extends AbstractList<EgymLogRecord> {
+	/** The holder of the initial reference is the creator of the list. */
+	private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+	/**
+	 * Adds references for further holders of the list.
+	 *
+	 * @param count
+	 *            the number of references to add. Must not be negative.
+	 */
+	void retain(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("count must not be negative but is: " + count);
+		}
+
+		checkNotReleased();
+		referenceCount.addAndGet(count);
+	}
+
+	/**
+	 * Releases a reference to the list. The resource is freed with the last reference.
+	 */
+	void release() {
+		final int remaining = referenceCount.decrementAndGet();
+		if (remaining == 0) {
+			deallocate();
+		} else if (remaining < 0) {
+			throw new IllegalStateException("The log records have already been released");
+		}
+	}
+
+	/**
+	 * Frees the resource. Called once, when the last reference is released.
+	 */
+	protected abstract void deallocate();
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the last reference has already been released.
+	 */
+	protected void checkNotReleased() {
+		if (referenceCount.get() <= 0) {
+			throw new IllegalStateException("The log records have already been released");
+		}
+	}
+}
@@ -5,42 +5,108 @@
  */
 package de.egym.logqueue;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import net.jcip.annotations.Immutable;
 
 import org.joda.time.DateTime;
 
+import de.egym.logqueue.config.EgymLogRequestLimits;
+
 /**
  * Contains all information collected about a request.
  */
 @Immutable
 public class EgymLogRequestRecord {
-	/** The point in time the request started. */
-	private final DateTime timestamp;
+	/** The point in time the request started, in milliseconds since the epoch. */
+	private final long timestampMillis;
+
+	/** The monotonic time the request started, see {@link EgymLogClock#nanoTime()}. */
+	private final long nanoTime;
+
+	/** The point in time the request started. Created on demand from {@link #timestampMillis}. */
+	private volatile DateTime timestamp;
 
 	/** The list of log records collected during the life time of the request. */
 	private final List<EgymLogRecord> logRecords;
 
+	/** The number of log records which were dropped because the request exceeded its limits. */
+	private final long droppedRecordCount;
+
+	/** The number of log records per log level, indexed by {@link EgymLogLevel#ordinal()}. */
+	private final int[] logLevelCounts;
+
+	/** The maximum log level of all log records. TRACE if there are none. */
+	private final EgymLogLevel maxLogLevel;
+
+	/** The log records if they are stored outside of the heap, null otherwise. */
+	private final EgymLogReferenceCountedRecordList referenceCountedRecords;
+
 	/**
-	 * @param timestamp
-	 *            The point in time the request started. Must not be null.
+	 * @param timestampMillis
+	 *            The point in time the request started, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the request started, see {@link EgymLogClock#nanoTime()}.
 	 * @param logRecords
 	 *            The list of log records collected during the life time of the request. Must not be null. Must not contain null entries.
+	 *            The record takes ownership of the list, ie. the caller must not modify it afterwards.
 	 */
-	EgymLogRequestRecord(DateTime timestamp, List<EgymLogRecord> logRecords) {
-		if (timestamp == null) {
-			throw new IllegalArgumentException("timestmap must not be null");
-		}
+	EgymLogRequestRecord(long timestampMillis, long nanoTime, List<EgymLogRecord> logRecords) {
+		this(timestampMillis, nanoTime, logRecords, 0);
+	}
+
+	/**
+	 * @param timestampMillis
+	 *            The point in time the request started, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the request started, see {@link EgymLogClock#nanoTime()}.
+	 * @param logRecords
+	 *            The list of log records collected during the life time of the request. Must not be null. Must not contain null entries.
+	 *            The record takes ownership of the list, ie. the caller must not modify it afterwards.
+	 * @param droppedRecordCount
+	 *            The number of log records which were dropped because the request exceeded its limits. Must not be negative.
+	 */
+	EgymLogRequestRecord(long timestampMillis, long nanoTime, List<EgymLogRecord> logRecords, long droppedRecordCount) {
+		this(timestampMillis, nanoTime, logRecords, droppedRecordCount, countLogLevels(logRecords));
+	}
+
+	/**
+	 * @param timestampMillis
+	 *            The point in time the request started, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the request started, see {@link EgymLogClock#nanoTime()}.
+	 * @param logRecords
+	 *            The list of log records collected during the life time of the request. Must not be null. Must not contain null entries.
+	 *            The record takes ownership of the list, ie. the caller must not modify it afterwards.
+	 * @param droppedRecordCount
+	 *            The number of log records which were dropped because the request exceeded its limits. Must not be negative.
+	 * @param logLevelCounts
+	 *            The number of log records per log level, indexed by {@link EgymLogLevel#ordinal()}. Must not be null. The record takes
+	 *            ownership of the array, ie. the caller must not modify it afterwards.
+	 */
+	EgymLogRequestRecord(long timestampMillis, long nanoTime, List<EgymLogRecord> logRecords, long droppedRecordCount,
+			int[] logLevelCounts) {
 		if (logRecords == null) {
 			throw new IllegalArgumentException("logRecords must not be null");
 		}
+		if (droppedRecordCount < 0) {
+			throw new IllegalArgumentException("droppedRecordCount must not be negative but is: " + droppedRecordCount);
+		}
+		if (logLevelCounts == null || logLevelCounts.length != EgymLogLevel.values().length) {
+			throw new IllegalArgumentException("logLevelCounts must contain one entry per log level");
+		}
 
-		this.timestamp = timestamp;
-		// Create an immutable copy to ensure thread-safety.
-		this.logRecords = Collections.unmodifiableList(new ArrayList<EgymLogRecord>(logRecords));
+		this.timestampMillis = timestampMillis;
+		this.nanoTime = nanoTime;
+		// No copy needed: The list is handed over by the builder, which does not touch it anymore.
+		this.logRecords = Collections.unmodifiableList(logRecords);
+		this.referenceCountedRecords = logRecords instanceof EgymLogReferenceCountedRecordList
+				? (EgymLogReferenceCountedRecordList) logRecords : null;
+		this.droppedRecordCount = droppedRecordCount;
+		this.logLevelCounts = logLevelCounts;
+		this.maxLogLevel = findMaxLogLevel(logLevelCounts);
 	}
 
 	/**
@@ -50,16 +116,56 @@ public class EgymLogRequestRecord {
 	 *            the instance to copy. Must not be null.
 	 */
 	public EgymLogRequestRecord(EgymLogRequestRecord requestRecord) {
-		this(requestRecord.getTimestamp(), requestRecord.getLogRecords());
+		this.timestampMillis = requestRecord.timestampMillis;
+		this.nanoTime = requestRecord.nanoTime;
+		this.timestamp = requestRecord.timestamp;
+		// Can be safely shared due to immutability.
+		this.logRecords = requestRecord.logRecords;
+		this.referenceCountedRecords = requestRecord.referenceCountedRecords;
+		this.droppedRecordCount = requestRecord.droppedRecordCount;
+		// Can be safely shared as well, it is never modified.
+		this.logLevelCounts = requestRecord.logLevelCounts;
+		this.maxLogLevel = requestRecord.maxLogLevel;
 	}
 
 	/**
 	 * @return The point in time the request started. Never null.
 	 */
 	public DateTime getTimestamp() {
+		DateTime timestamp = this.timestamp;
+		if (timestamp == null) {
+			timestamp = new DateTime(timestampMillis);
+			this.timestamp = timestamp;
+		}
 		return timestamp;
 	}
 
+	/**
+	 * @return The point in time the request started, in milliseconds since the epoch.
+	 */
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	/**
+	 * Calculates the time which elapsed between the start of the request and the creation of the specified log record. Uses the monotonic
+	 * clock if available for both, the wall clock time otherwise.
+	 *
+	 * @param logRecord
+	 *            the log record. Must not be null.
+	 * @return the elapsed time in nanoseconds.
+	 */
+	public long getElapsedNanos(EgymLogRecord logRecord) {
+		if (logRecord == null) {
+			throw new IllegalArgumentException("logRecord must not be null");
+		}
+
+		if (nanoTime != EgymLogRecord.NANO_TIME_UNKNOWN && logRecord.getNanoTime() != EgymLogRecord.NANO_TIME_UNKNOWN) {
+			return logRecord.getNanoTime() - nanoTime;
+		}
+		return TimeUnit.MILLISECONDS.toNanos(logRecord.getTimestampMillis() - timestampMillis);
+	}
+
 	/**
 	 * @return The <em>immutable</em> list of log records collected during the life time of the request. Never null. Never contains null
 	 *         entries.
@@ -68,4 +174,96 @@ public class EgymLogRequestRecord {
 		// Can be safely returned due to immutability.
 		return logRecords;
 	}
+
+	/**
+	 * @return The number of log records which were dropped because the request exceeded its {@link EgymLogRequestLimits}. Zero if
+	 *         nothing was dropped.
+	 */
+	public long getDroppedRecordCount() {
+		return droppedRecordCount;
+	}
+
+	/**
+	 * @return The maximum log level which appears in the log records of this request. TRACE if there are no log records.
+	 */
+	public EgymLogLevel getMaxLogLevel() {
+		return maxLogLevel;
+	}
+
+	/**
+	 * @param logLevel
+	 *            the log level. Must not be null.
+	 * @return The number of log records with exactly the specified log level.
+	 */
+	public int getLogRecordCount(EgymLogLevel logLevel) {
+		if (logLevel == null) {
+			throw new IllegalArgumentException("logLevel must not be null");
+		}
+		return logLevelCounts[logLevel.ordinal()];
+	}
+
+	/**
+	 * @param thresholdLogLevel
+	 *            the threshold. Must not be null.
+	 * @return The number of log records whose log level is equal to or exceeds the threshold.
+	 */
+	public int getLogRecordCountAtLeast(EgymLogLevel thresholdLogLevel) {
+		if (thresholdLogLevel == null) {
+			throw new IllegalArgumentException("thresholdLogLevel must not be null");
+		}
+
+		int count = 0;
+		for (int i = thresholdLogLevel.ordinal(); i < logLevelCounts.length; i++) {
+			count += logLevelCounts[i];
+		}
+		return count;
+	}
+
+	private static int[] countLogLevels(List<EgymLogRecord> logRecords) {
+		final int[] logLevelCounts = new int[EgymLogLevel.values().length];
+		if (logRecords != null) {
+			for (EgymLogRecord logRecord : logRecords) {
+				logLevelCounts[logRecord.getLogLevel().ordinal()]++;
+			}
+		}
+		return logLevelCounts;
+	}
+
+	private static EgymLogLevel findMaxLogLevel(int[] logLevelCounts) {
+		for (int i = logLevelCounts.length - 1; i > 0; i--) {
+			if (logLevelCounts[i] > 0) {
+				return EgymLogLevel.values()[i];
+			}
+		}
+		return EgymLogLevel.values()[0];
+	}
+
+	/**
+	 * Adds references to the off-heap storage of this record, if any. Must be called before the record is handed over to further holders,
+	 * see {@link EgymLogReferenceCountedRecordList}.
+	 *
+	 * @param count
+	 *            the number of references to add. Must not be negative.
+	 */
+	void retain(int count) {
+		if (referenceCountedRecords != null) {
+			referenceCountedRecords.retain(count);
+		}
+	}
+
+	/**
+	 * Releases a reference to the off-heap storage of this record, if any. The storage is freed with the last reference.
+	 */
+	void release() {
+		if (referenceCountedRecords != null) {
+			referenceCountedRecords.release();
+		}
+	}
+
+	/**
+	 * @return True if the log records are stored in a spill file.
+	 */
+	boolean isSpilled() {
+		return referenceCountedRecords instanceof EgymLogSpilledRecordList;
+	}
 }
@@ -5,6 +5,7 @@
  */
 package de.egym.logqueue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,28 +13,141 @@ import net.jcip.annotations.NotThreadSafe;
 
 import org.joda.time.DateTime;
 
+import de.egym.logqueue.config.EgymLogRequestLimits;
+
 /**
- * This class is used while a request is in progress to collect all the request-specific log records.
+ * This class is used while a request is in progress to collect all the request-specific log records. A builder can only be built once: It
+ * hands its storage over to the {@link EgymLogRequestRecord} instead of copying it.
+ * <p>
+ * If {@link EgymLogRequestLimits} are configured and the request exceeds them, records at or above the audit threshold are still kept,
+ * while of the lower level records only the most recent ones are kept in a fixed-size ring. See
+ * {@link EgymLogRequestRecord#getDroppedRecordCount()}.
+ * </p>
+ * <p>
+ * If spilling is enabled and the records exceed the spill threshold, they are moved to an {@link EgymLogSpillFile} and all further records
+ * are appended to it. If the file cannot be written, the builder falls back to keeping the records in memory.
+ * </p>
+ * <p>
+ * If off-heap encoding is enabled, the records are encoded into an {@link EgymLogRecordBuffer} instead of being kept in a list.
+ * </p>
  */
 @NotThreadSafe
 class EgymLogRequestRecordBuilder {
-	/** The point in time the request started. */
-	private final DateTime timestamp;
+	/** The initial capacity of the first requests, until an estimate of the request sizes is available. */
+	private static final int DEFAULT_CAPACITY = 16;
 
-	/** The list of log records collected during the life time of the request. */
-	private final List<EgymLogRecord> logRecords;
+	/** Upper bound for the pre-sized capacity, so a few huge requests do not inflate all following ones. */
+	private static final int MAX_ESTIMATED_CAPACITY = 4096;
+
+	/**
+	 * The running estimate of the number of log records per request, an exponential moving average over the recent requests. Updated
+	 * without synchronization: Lost updates only make the estimate slightly less accurate.
+	 */
+	private static volatile int estimatedSize = DEFAULT_CAPACITY;
+
+	/** The point in time the request started, in milliseconds since the epoch. */
+	private final long timestampMillis;
+
+	/** The monotonic time the request started, see {@link EgymLogClock#nanoTime()}. */
+	private final long nanoTime;
+
+	/**
+	 * The list of log records collected during the life time of the request. Null once the builder has been built. Once the records are
+	 * spilled, it contains the records which follow the spilled ones, if any.
+	 */
+	private List<EgymLogRecord> logRecords;
+
+	/** Whether the size of this request feeds into {@link #estimatedSize}. */
+	private final boolean trackSize;
+
+	private final EgymLogRequestLimits limits;
+
+	/** The number of records which were added before the limits were exceeded, including spilled ones. */
+	private int recordCount;
+
+	/** The estimated heap size of the first {@link #recordCount} records. */
+	private long estimatedBytes;
+
+	/** Holds the encoded records if off-heap encoding is enabled. Null otherwise, or once the records have been spilled. */
+	private EgymLogRecordBuffer offHeapBuffer;
+
+	/** Holds the spilled records. Null as long as nothing has been spilled. */
+	private EgymLogSpillFile spillFile;
+
+	/** True while new records are appended to the {@link #spillFile}. */
+	private boolean spilling;
+
+	/** Set if the spill file cannot be written, to avoid retrying on every record. */
+	private boolean spillFailed;
+
+	/** Collects the records once the limits are exceeded. Null as long as they are not. */
+	private OverflowBuffer overflowBuffer;
+
+	/** The number of kept log records per log level, indexed by {@link EgymLogLevel#ordinal()}. */
+	private final int[] logLevelCounts = new int[EgymLogLevel.values().length];
 
 	/**
 	 * @param timestamp
 	 *            The point in time the request started. Must not be null.
 	 */
 	EgymLogRequestRecordBuilder(DateTime timestamp) {
-		if (timestamp == null) {
-			throw new IllegalArgumentException("timestamp must not be null");
+		this(getMillis(timestamp), EgymLogRecord.NANO_TIME_UNKNOWN);
+	}
+
+	/**
+	 * @param timestampMillis
+	 *            The point in time the request started, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the request started, see {@link EgymLogClock#nanoTime()}.
+	 */
+	EgymLogRequestRecordBuilder(long timestampMillis, long nanoTime) {
+		this(timestampMillis, nanoTime, EgymLogRequestLimits.unlimited());
+	}
+
+	/**
+	 * @param timestampMillis
+	 *            The point in time the request started, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the request started, see {@link EgymLogClock#nanoTime()}.
+	 * @param limits
+	 *            Limits the memory used by the log records. Must not be null.
+	 */
+	EgymLogRequestRecordBuilder(long timestampMillis, long nanoTime, EgymLogRequestLimits limits) {
+		this(timestampMillis, nanoTime, Math.min(estimatedSize, MAX_ESTIMATED_CAPACITY), true, limits);
+	}
+
+	/**
+	 * Creates a builder with a fixed initial capacity and without limits. Its size does not affect the size estimate of the requests.
+	 *
+	 * @param timestampMillis
+	 *            The point in time the request started, in milliseconds since the epoch.
+	 * @param nanoTime
+	 *            The monotonic time the request started, see {@link EgymLogClock#nanoTime()}.
+	 * @param initialCapacity
+	 *            The expected number of log records. Must not be negative.
+	 */
+	EgymLogRequestRecordBuilder(long timestampMillis, long nanoTime, int initialCapacity) {
+		this(timestampMillis, nanoTime, initialCapacity, false, EgymLogRequestLimits.unlimited());
+	}
+
+	private EgymLogRequestRecordBuilder(long timestampMillis, long nanoTime, int initialCapacity, boolean trackSize,
+			EgymLogRequestLimits limits) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity must not be negative but is: " + initialCapacity);
 		}
+		if (limits == null) {
+			throw new IllegalArgumentException("limits must not be null");
+		}
+
+		this.timestampMillis = timestampMillis;
+		this.nanoTime = nanoTime;
+		this.logRecords = new ArrayList<EgymLogRecord>(initialCapacity);
+		this.trackSize = trackSize;
+		this.limits = limits;
 
-		this.timestamp = timestamp;
-		this.logRecords = new ArrayList<EgymLogRecord>();
+		if (limits.isOffHeapEnabled()) {
+			this.offHeapBuffer = new EgymLogRecordBuffer(limits.getOffHeapBufferBytes());
+		}
 	}
 
 	/**
@@ -46,15 +160,249 @@ class EgymLogRequestRecordBuilder {
 		if (logRecord == null) {
 			throw new IllegalArgumentException("logRecord must not be null");
 		}
-		logRecords.add(logRecord);
+		if (logRecords == null) {
+			throw new IllegalStateException("The builder has already been built");
+		}
+
+		logLevelCounts[logRecord.getLogLevel().ordinal()]++;
+
+		if (overflowBuffer != null) {
+			final EgymLogRecord droppedRecord = overflowBuffer.add(logRecord);
+			if (droppedRecord != null) {
+				logLevelCounts[droppedRecord.getLogLevel().ordinal()]--;
+			}
+			return;
+		}
+
+		if (spilling && appendToSpillFile(logRecord)) {
+			// Appended to the spill file.
+		} else if (offHeapBuffer != null) {
+			offHeapBuffer.append(logRecord);
+		} else {
+			logRecords.add(logRecord);
+		}
+		recordCount++;
+
+		if (limits.isLimited() || limits.isSpillEnabled()) {
+			estimatedBytes += logRecord.estimateSize();
+			if (isLimitExceeded()) {
+				overflowBuffer = new OverflowBuffer(limits.getRetainedRecords());
+			} else if (isSpillThresholdExceeded()) {
+				spill();
+			}
+		}
 	}
 
 	/**
-	 * Called at the end of a request to create an immutable copy of this builder.
+	 * Called at the end of a request to create an immutable {@link EgymLogRequestRecord}. The record takes over the storage of this
+	 * builder, so the builder must not be used afterwards.
 	 *
 	 * @return an {@link EgymLogRequestRecord} containing the same information as this builder.
 	 */
 	public EgymLogRequestRecord build() {
-		return new EgymLogRequestRecord(timestamp, logRecords);
+		if (logRecords == null) {
+			throw new IllegalStateException("The builder has already been built");
+		}
+
+		final List<EgymLogRecord> handedOverLogRecords = logRecords;
+		logRecords = null;
+
+		if (trackSize) {
+			updateEstimatedSize(recordCount);
+		}
+
+		long droppedRecordCount = 0;
+		if (overflowBuffer != null) {
+			overflowBuffer.drainTo(handedOverLogRecords);
+			droppedRecordCount = overflowBuffer.droppedCount;
+			overflowBuffer = null;
+		}
+
+		if (offHeapBuffer != null) {
+			final EgymLogEncodedRecordList encodedRecords = offHeapBuffer.toList(handedOverLogRecords);
+			offHeapBuffer = null;
+			return new EgymLogRequestRecord(timestampMillis, nanoTime, encodedRecords, droppedRecordCount, logLevelCounts);
+		}
+
+		if (spillFile == null) {
+			return new EgymLogRequestRecord(timestampMillis, nanoTime, handedOverLogRecords, droppedRecordCount, logLevelCounts);
+		}
+
+		final EgymLogSpilledRecordList spilledRecords;
+		try {
+			spilledRecords = spillFile.toList(handedOverLogRecords);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot finish log spill file", e);
+		} finally {
+			spillFile = null;
+		}
+		return new EgymLogRequestRecord(timestampMillis, nanoTime, spilledRecords, droppedRecordCount, logLevelCounts);
+	}
+
+	private boolean isLimitExceeded() {
+		return (limits.getMaxRecords() > 0 && recordCount >= limits.getMaxRecords())
+				|| (limits.getMaxBytes() > 0 && estimatedBytes >= limits.getMaxBytes());
+	}
+
+	private boolean isSpillThresholdExceeded() {
+		return limits.isSpillEnabled() && !spilling && !spillFailed && estimatedBytes >= limits.getSpillThresholdBytes();
+	}
+
+	/**
+	 * Moves all records collected so far to a new spill file. Further records are appended to the file.
+	 */
+	private void spill() {
+		final EgymLogEncodedRecordList encodedRecords = offHeapBuffer != null ? offHeapBuffer.toList(logRecords) : null;
+		try {
+			spillFile = new EgymLogSpillFile(limits.getSpillDirectory());
+			for (EgymLogRecord logRecord : encodedRecords != null ? encodedRecords : logRecords) {
+				spillFile.append(logRecord);
+			}
+		} catch (IOException e) {
+			EgymLogQueueImpl.handleInternalLoggingFailure(e);
+			spillFailed = true;
+			if (spillFile != null) {
+				spillFile.discard();
+				spillFile = null;
+			}
+			if (encodedRecords != null) {
+				// Keep the records in memory, decoded.
+				logRecords = new ArrayList<EgymLogRecord>(encodedRecords);
+				encodedRecords.release();
+				offHeapBuffer = null;
+			}
+			return;
+		}
+
+		// Release the memory of the spilled records.
+		if (encodedRecords != null) {
+			encodedRecords.release();
+			offHeapBuffer = null;
+		}
+		logRecords = new ArrayList<EgymLogRecord>();
+		spilling = true;
+	}
+
+	/**
+	 * @return True if the record was appended to the spill file, false if writing failed.
+	 */
+	private boolean appendToSpillFile(EgymLogRecord logRecord) {
+		try {
+			spillFile.append(logRecord);
+			return true;
+		} catch (IOException e) {
+			// The records in the file stay valid, the following ones are kept in memory.
+			EgymLogQueueImpl.handleInternalLoggingFailure(e);
+			spilling = false;
+			spillFailed = true;
+			return false;
+		}
+	}
+
+	/**
+	 * Moves the size estimate an eighth of the way towards the size of the current request.
+	 *
+	 * @param size
+	 *            the number of log records of the current request.
+	 */
+	private static void updateEstimatedSize(int size) {
+		final int estimate = estimatedSize;
+		estimatedSize = Math.max(1, estimate + (size - estimate) / 8);
+	}
+
+	private static long getMillis(DateTime timestamp) {
+		if (timestamp == null) {
+			throw new IllegalArgumentException("timestamp must not be null");
+		}
+		return timestamp.getMillis();
+	}
+
+	/**
+	 * Collects the records added after the request exceeded its limits. Records at or above the audit threshold are always kept, the others
+	 * go into a ring which keeps the most recent ones only. Each record gets a sequence number, so the original order can be restored.
+	 */
+	@NotThreadSafe
+	private static class OverflowBuffer {
+		private final List<EgymLogRecord> auditedRecords = new ArrayList<>();
+
+		private long[] auditedSequences = new long[16];
+
+		private final EgymLogRecord[] ring;
+
+		private final long[] ringSequences;
+
+		/** The index of the oldest record in the ring. */
+		private int ringStart;
+
+		private int ringSize;
+
+		private long nextSequence;
+
+		private long droppedCount;
+
+		OverflowBuffer(int ringCapacity) {
+			this.ring = new EgymLogRecord[ringCapacity];
+			this.ringSequences = new long[ringCapacity];
+		}
+
+		/**
+		 * @return the record which was dropped to make room for the new one, or null if nothing was dropped.
+		 */
+		EgymLogRecord add(EgymLogRecord logRecord) {
+			final long sequence = nextSequence++;
+
+			if (EgymLogLevels.hasSufficientLogLevel(logRecord, EgymLogLevels.getThresholdRequestAudit())) {
+				if (auditedRecords.size() == auditedSequences.length) {
+					final long[] grown = new long[auditedSequences.length * 2];
+					System.arraycopy(auditedSequences, 0, grown, 0, auditedSequences.length);
+					auditedSequences = grown;
+				}
+				auditedSequences[auditedRecords.size()] = sequence;
+				auditedRecords.add(logRecord);
+				return null;
+			}
+
+			if (ring.length == 0) {
+				droppedCount++;
+				return logRecord;
+			}
+
+			if (ringSize == ring.length) {
+				// Overwrite the oldest record.
+				final EgymLogRecord droppedRecord = ring[ringStart];
+				ring[ringStart] = logRecord;
+				ringSequences[ringStart] = sequence;
+				ringStart = (ringStart + 1) % ring.length;
+				droppedCount++;
+				return droppedRecord;
+			}
+
+			final int index = (ringStart + ringSize) % ring.length;
+			ring[index] = logRecord;
+			ringSequences[index] = sequence;
+			ringSize++;
+			return null;
+		}
+
+		/**
+		 * Appends all kept records to the target list in their original order.
+		 */
+		void drainTo(List<EgymLogRecord> target) {
+			int auditedIndex = 0;
+			int ringIndex = 0;
+
+			while (auditedIndex < auditedRecords.size() || ringIndex < ringSize) {
+				final int ringPosition = (ringStart + ringIndex) % Math.max(1, ring.length);
+				final boolean takeAudited = ringIndex >= ringSize
+						|| (auditedIndex < auditedRecords.size() && auditedSequences[auditedIndex] < ringSequences[ringPosition]);
+
+				if (takeAudited) {
+					target.add(auditedRecords.get(auditedIndex++));
+				} else {
+					target.add(ring[ringPosition]);
+					ringIndex++;
+				}
+			}
+		}
 	}
 }
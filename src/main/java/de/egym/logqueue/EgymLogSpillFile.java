@@ -0,0 +1,153 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * An append-only temporary file holding the log records of a request which grew too large for the heap. Once the request ends, the file is
+ * turned into an {@link EgymLogSpilledRecordList}, which streams the records back.
+ */
+@NotThreadSafe
+class EgymLogSpillFile {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private final OutputStream out;
+
+	private final EgymLogRecordCodec codec = new EgymLogRecordCodec();
+
+	/** Each record is encoded into this buffer first, so its size is known. */
+	private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+
+	private final DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+
+	/** The file offset of each record, so the records can be accessed by index. */
+	private long[] offsets = new long[256];
+
+	private int recordCount;
+
+	/** The current size of the file. */
+	private long position;
+
+	/** True once the file has been handed over or discarded. */
+	private boolean closed;
+
+	/**
+	 * Creates a new spill file.
+	 *
+	 * @param directory
+	 *            the directory for the file. Null means the default temporary-file directory.
+	 * @throws IOException
+	 *             if the file cannot be created.
+	 */
+	EgymLogSpillFile(File directory) throws IOException {
+		this.file = File.createTempFile("egym-log-", ".spill", directory);
+		try {
+			this.out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends a log record to the file.
+	 *
+	 * @param logRecord
+	 *            the record to append. Must not be null.
+	 * @throws IOException
+	 *             if writing fails.
+	 */
+	void append(EgymLogRecord logRecord) throws IOException {
+		if (logRecord == null) {
+			throw new IllegalArgumentException("logRecord must not be null");
+		}
+		if (closed) {
+			throw new IllegalStateException("The spill file has already been closed");
+		}
+
+		recordBuffer.reset();
+		codec.encode(recordOut, logRecord);
+		recordBuffer.writeTo(out);
+
+		if (recordCount == offsets.length) {
+			final long[] grown = new long[offsets.length * 2];
+			System.arraycopy(offsets, 0, grown, 0, offsets.length);
+			offsets = grown;
+		}
+		offsets[recordCount++] = position;
+		position += recordBuffer.size();
+	}
+
+	/**
+	 * Finishes writing and hands the file over to a list, which is responsible for deleting it.
+	 *
+	 * @param tail
+	 *            further log records, which follow the spilled ones. Must not be null.
+	 * @return the list of all log records. Never null.
+	 * @throws IOException
+	 *             if closing the file fails.
+	 */
+	EgymLogSpilledRecordList toList(List<EgymLogRecord> tail) throws IOException {
+		if (tail == null) {
+			throw new IllegalArgumentException("tail must not be null");
+		}
+		if (closed) {
+			throw new IllegalStateException("The spill file has already been closed");
+		}
+
+		closed = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+		return new EgymLogSpilledRecordList(file, codec, offsets, recordCount, position, tail);
+	}
+
+	/**
+	 * Closes and deletes the file without handing it over.
+	 */
+	void discard() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			EgymLogQueueImpl.handleInternalLoggingFailure(e);
+		}
+		file.delete();
+	}
+
+	/**
+	 * @return The number of records in the file.
+	 */
+	int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return The size of the file in bytes.
+	 */
+	long getSize() {
+		return position;
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A read-only list of log records which are stored in a spill file, followed by an in-memory tail. Records are decoded on access, so each
+ * access returns a new but equal instance. Iterating is a sequential read of the file and should be preferred over {@link #get(int)}.
+ * <p>
+ * The file is deleted when the last reference to the list is released.
+ * </p>
+ */
+@ThreadSafe
+class EgymLogSpilledRecordList extends EgymLogReferenceCountedRecordList {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private final EgymLogRecordCodec codec;
+
+	/** The file offset of each spilled record. */
+	private final long[] offsets;
+
+	/** The number of records in the file. */
+	private final int spilledCount;
+
+	/** The size of the file in bytes. */
+	private final long fileSize;
+
+	/** The records following the spilled ones. */
+	private final List<EgymLogRecord> tail;
+
+	/** Opened on the first random access. */
+	@GuardedBy("this")
+	private RandomAccessFile randomAccessFile;
+
+	/** The streams of iterators which have not read all spilled records yet. Closed when the list is deallocated. */
+	@GuardedBy("this")
+	private final List<InputStream> iteratorStreams = new ArrayList<>();
+
+	/** True once the file has been deleted. */
+	@GuardedBy("this")
+	private boolean deallocated;
+
+	/**
+	 * @param file
+	 *            the spill file. Must not be null.
+	 * @param codec
+	 *            the codec which encoded the records. Must not be null.
+	 * @param offsets
+	 *            the file offset of each spilled record. Must not be null.
+	 * @param spilledCount
+	 *            the number of records in the file.
+	 * @param fileSize
+	 *            the size of the file in bytes.
+	 * @param tail
+	 *            the records following the spilled ones. Must not be null. The list takes ownership.
+	 */
+	EgymLogSpilledRecordList(File file, EgymLogRecordCodec codec, long[] offsets, int spilledCount, long fileSize,
+			List<EgymLogRecord> tail) {
+		if (file == null) {
+			throw new IllegalArgumentException("file must not be null");
+		}
+		if (codec == null) {
+			throw new IllegalArgumentException("codec must not be null");
+		}
+		if (offsets == null || offsets.length < spilledCount) {
+			throw new IllegalArgumentException("offsets must contain an entry per spilled record");
+		}
+		if (tail == null) {
+			throw new IllegalArgumentException("tail must not be null");
+		}
+
+		this.file = file;
+		this.codec = codec;
+		this.offsets = offsets;
+		this.spilledCount = spilledCount;
+		this.fileSize = fileSize;
+		this.tail = tail;
+	}
+
+	@Override
+	public int size() {
+		return spilledCount + tail.size();
+	}
+
+	@Override
+	public EgymLogRecord get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+		}
+
+		if (index >= spilledCount) {
+			return tail.get(index - spilledCount);
+		}
+
+		try {
+			return readAt(index);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read log record from spill file " + file, e);
+		}
+	}
+
+	@Override
+	public Iterator<EgymLogRecord> iterator() {
+		checkNotReleased();
+
+		return new Iterator<EgymLogRecord>() {
+			private int index;
+
+			private DataInputStream in;
+
+			@Override
+			public boolean hasNext() {
+				return index < size();
+			}
+
+			@Override
+			public EgymLogRecord next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				if (index >= spilledCount) {
+					return tail.get(index++ - spilledCount);
+				}
+
+				try {
+					if (in == null) {
+						in = openIteratorStream();
+					}
+
+					final EgymLogRecord logRecord = codec.decode(in);
+					index++;
+					if (index == spilledCount) {
+						closeIteratorStream(in);
+					}
+					return logRecord;
+				} catch (IOException e) {
+					throw new IllegalStateException("Cannot read log record from spill file " + file, e);
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * @return The spill file. Never null.
+	 */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Opens a sequential stream over the spilled records. The stream is closed by the iterator once it has read all spilled records, or
+	 * when the list is deallocated, whichever comes first, so iterators which stop early do not leak the file handle.
+	 */
+	private synchronized DataInputStream openIteratorStream() throws IOException {
+		checkNotReleased();
+		if (deallocated) {
+			throw new IllegalStateException("The log records have already been released");
+		}
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+		iteratorStreams.add(in);
+		return in;
+	}
+
+	private synchronized void closeIteratorStream(InputStream in) throws IOException {
+		iteratorStreams.remove(in);
+		in.close();
+	}
+
+	private synchronized EgymLogRecord readAt(int index) throws IOException {
+		checkNotReleased();
+		if (deallocated) {
+			throw new IllegalStateException("The log records have already been released");
+		}
+
+		if (randomAccessFile == null) {
+			randomAccessFile = new RandomAccessFile(file, "r");
+		}
+
+		// Read the whole record at once, RandomAccessFile itself is not buffered.
+		final long end = index + 1 < spilledCount ? offsets[index + 1] : fileSize;
+		final byte[] bytes = new byte[(int) (end - offsets[index])];
+		randomAccessFile.seek(offsets[index]);
+		randomAccessFile.readFully(bytes);
+		return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	@Override
+	protected synchronized void deallocate() {
+		deallocated = true;
+
+		// Close before deleting, some platforms cannot delete open files.
+		for (InputStream in : iteratorStreams) {
+			try {
+				in.close();
+			} catch (IOException e) {
+				EgymLogQueueImpl.handleInternalLoggingFailure(e);
+			}
+		}
+		iteratorStreams.clear();
+
+		if (randomAccessFile != null) {
+			try {
+				randomAccessFile.close();
+			} catch (IOException e) {
+				EgymLogQueueImpl.handleInternalLoggingFailure(e);
+			}
+			randomAccessFile = null;
+		}
+
+		if (!file.delete() && file.exists()) {
+			System.err.println("WARNING: Cannot delete log spill file " + file);
+		}
+	}
+}
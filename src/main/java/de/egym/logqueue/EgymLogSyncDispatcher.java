@@ -0,0 +1,69 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.util.List;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Executes a pipeline on the calling thread. Releases the request record once the pipeline is done with it.
+ */
+@ThreadSafe
+class EgymLogSyncDispatcher implements EgymLogDispatcher {
+	private final EgymLogPipeline pipeline;
+
+	/**
+	 * @param pipeline
+	 *            the pipeline to feed. Must not be null.
+	 */
+	EgymLogSyncDispatcher(EgymLogPipeline pipeline) {
+		if (pipeline == null) {
+			throw new IllegalArgumentException("pipeline must not be null");
+		}
+
+		this.pipeline = pipeline;
+	}
+
+	@Override
+	public void dispatch(EgymLogRequestRecord requestRecord) {
+		if (requestRecord == null) {
+			throw new IllegalArgumentException("requestRecord must not be null");
+		}
+
+		try {
+			pipeline.log(requestRecord);
+		} finally {
+			requestRecord.release();
+		}
+	}
+
+	@Override
+	public void dispatchAll(List<EgymLogRequestRecord> requestRecords) {
+		if (requestRecords == null) {
+			throw new IllegalArgumentException("requestRecords must not be null");
+		}
+
+		try {
+			pipeline.logAll(requestRecords);
+		} finally {
+			for (EgymLogRequestRecord requestRecord : requestRecords) {
+				requestRecord.release();
+			}
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		// Nothing to do.
+	}
+
+	@Override
+	public long getDroppedRequestRecordCount() {
+		// Never drops anything.
+		return 0;
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import net.jcip.annotations.Immutable;
+
+import org.joda.time.DateTimeUtils;
+
+/**
+ * The default clock. Reads the wall clock time via {@link DateTimeUtils#currentTimeMillis()}, so it honors a fixed time set with
+ * {@link DateTimeUtils#setCurrentMillisFixed(long)}, and the monotonic time via {@link System#nanoTime()}.
+ */
+@Immutable
+public class EgymLogSystemClock implements EgymLogClock {
+	private static final EgymLogSystemClock INSTANCE = new EgymLogSystemClock();
+
+	private EgymLogSystemClock() {
+	}
+
+	/**
+	 * @return the singleton instance.
+	 */
+	public static EgymLogSystemClock getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return DateTimeUtils.currentTimeMillis();
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+}
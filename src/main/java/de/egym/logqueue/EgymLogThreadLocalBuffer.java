@@ -0,0 +1,54 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A {@link StringBuilder} per thread which is reused across calls, for the formatters and writers which assemble their output in memory.
+ * Buffers which have grown larger than {@link #MAX_RETAINED_LENGTH} are not kept for reuse, so a single huge message does not pin its
+ * memory.
+ * <p>
+ * This class is part of the supported API, so custom {@link de.egym.logqueue.formatter.EgymLogFormatter}s and
+ * {@link de.egym.logqueue.writer.EgymLogWriter}s can reuse their buffers the same way, see README.md.
+ * </p>
+ */
+@ThreadSafe
+public final class EgymLogThreadLocalBuffer {
+	/** The capacity up to which a buffer is kept for reuse. */
+	public static final int MAX_RETAINED_LENGTH = 64 * 1024;
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	private final ThreadLocal<StringBuilder> buffer = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(INITIAL_CAPACITY);
+		}
+	};
+
+	/**
+	 * @return the empty buffer of the calling thread. Must be passed to {@link #release(StringBuilder)} once it is not used anymore,
+	 *         usually in a finally block.
+	 */
+	public StringBuilder acquire() {
+		final StringBuilder str = buffer.get();
+		str.setLength(0);
+		return str;
+	}
+
+	/**
+	 * Drops the buffer of the calling thread if it has grown too large for reuse.
+	 *
+	 * @param str
+	 *            the buffer returned by {@link #acquire()}. Must not be null.
+	 */
+	public void release(StringBuilder str) {
+		if (str.capacity() > MAX_RETAINED_LENGTH) {
+			buffer.remove();
+		}
+	}
+}
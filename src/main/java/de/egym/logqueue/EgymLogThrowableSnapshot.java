@@ -0,0 +1,73 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Stands in for a throwable which has been decoded by {@link EgymLogRecordCodec}, either read back from a spill file or from the off-heap
+ * buffer of a request, see {@link EgymLogRecordBuffer}. It reproduces the string representation, the stack trace, the cause and the
+ * suppressed throwables of the original, so it prints exactly like the original. The original class is not restored, it is only available
+ * by name.
+ */
+@NotThreadSafe
+final class EgymLogThrowableSnapshot extends Throwable {
+	private static final long serialVersionUID = 1L;
+
+	/** The fully qualified class name of the original throwable. */
+	private final String originalClassName;
+
+	/** The result of the original's {@link Throwable#toString()}. */
+	private final String description;
+
+	/**
+	 * @param originalClassName
+	 *            The fully qualified class name of the original throwable. Must not be null.
+	 * @param message
+	 *            The message of the original throwable. May be null.
+	 * @param description
+	 *            The result of the original's {@link Throwable#toString()}. Must not be null.
+	 * @param stackTrace
+	 *            The stack trace of the original throwable. Must not be null.
+	 * @param cause
+	 *            The snapshot of the original's cause. May be null.
+	 */
+	EgymLogThrowableSnapshot(String originalClassName, String message, String description, StackTraceElement[] stackTrace, Throwable cause) {
+		super(message, cause, true, true);
+
+		if (originalClassName == null) {
+			throw new IllegalArgumentException("originalClassName must not be null");
+		}
+		if (description == null) {
+			throw new IllegalArgumentException("description must not be null");
+		}
+		if (stackTrace == null) {
+			throw new IllegalArgumentException("stackTrace must not be null");
+		}
+
+		this.originalClassName = originalClassName;
+		this.description = description;
+		setStackTrace(stackTrace);
+	}
+
+	/**
+	 * @return The fully qualified class name of the original throwable. Never null.
+	 */
+	String getOriginalClassName() {
+		return originalClassName;
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		// The stack trace is taken from the original, capturing the current one would be wasted.
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
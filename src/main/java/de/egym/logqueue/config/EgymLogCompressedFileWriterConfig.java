@@ -0,0 +1,122 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import java.io.File;
+import java.util.zip.Deflater;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the {@link de.egym.logqueue.writer.EgymLogCompressedFileWriter}. Bind an instance in your Guice module:
+ *
+ * <pre>
+ * bind(EgymLogCompressedFileWriterConfig.class).toInstance(
+ * 		EgymLogCompressedFileWriterConfig.toFile(new File(&quot;/var/log/app.log.gz&quot;)));
+ * </pre>
+ */
+@Immutable
+public class EgymLogCompressedFileWriterConfig {
+	private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** The file to append to. */
+	private final File file;
+
+	/** The deflate compression level, from 0 (no compression) to 9 (best compression). */
+	private final int compressionLevel;
+
+	/** The preset dictionary. Null for none. */
+	private final byte[] dictionary;
+
+	/** The size of the buffer the compressed data is collected in. */
+	private final int bufferSize;
+
+	private EgymLogCompressedFileWriterConfig(File file, int compressionLevel, byte[] dictionary, int bufferSize) {
+		if (file == null) {
+			throw new IllegalArgumentException("file must not be null");
+		}
+		if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("compressionLevel must be between 0 and 9 but is: " + compressionLevel);
+		}
+		if (dictionary != null && dictionary.length == 0) {
+			throw new IllegalArgumentException("dictionary must not be empty");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive but is: " + bufferSize);
+		}
+
+		this.file = file;
+		this.compressionLevel = compressionLevel;
+		this.dictionary = dictionary;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @param file
+	 *            the file to append to. Must not be null.
+	 * @return a config with default settings: Compression level 6 and no dictionary.
+	 */
+	public static EgymLogCompressedFileWriterConfig toFile(File file) {
+		return new EgymLogCompressedFileWriterConfig(file, DEFAULT_COMPRESSION_LEVEL, null, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param compressionLevel
+	 *            the deflate compression level, from 0 (no compression) to 9 (best compression).
+	 * @return a copy of this config using the specified compression level.
+	 */
+	public EgymLogCompressedFileWriterConfig withCompressionLevel(int compressionLevel) {
+		return new EgymLogCompressedFileWriterConfig(file, compressionLevel, dictionary, bufferSize);
+	}
+
+	/**
+	 * A preset dictionary improves the compression of the first blocks considerably, eg. with typical logger names and messages. Note
+	 * that gzip cannot carry a dictionary, so the file is written in the zlib format instead, and readers need the same dictionary.
+	 *
+	 * @param dictionary
+	 *            the preset dictionary. May be null for none, must not be empty.
+	 * @return a copy of this config using the specified dictionary.
+	 */
+	public EgymLogCompressedFileWriterConfig withDictionary(byte[] dictionary) {
+		return new EgymLogCompressedFileWriterConfig(file, compressionLevel, dictionary != null ? dictionary.clone() : null, bufferSize);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            the size of the buffer the compressed data is collected in. Must be positive.
+	 * @return a copy of this config using the specified buffer size.
+	 */
+	public EgymLogCompressedFileWriterConfig withBufferSize(int bufferSize) {
+		return new EgymLogCompressedFileWriterConfig(file, compressionLevel, dictionary, bufferSize);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * @return a copy of the preset dictionary. Null for none.
+	 */
+	public byte[] getDictionary() {
+		return dictionary != null ? dictionary.clone() : null;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogCompressedFileWriterConfig(" + "file=" + file + ", compressionLevel=" + compressionLevel + ", dictionary="
+				+ (dictionary != null ? dictionary.length + " bytes" : null) + ", bufferSize=" + bufferSize + ')';
+	}
+}
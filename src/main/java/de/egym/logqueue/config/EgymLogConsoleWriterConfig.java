@@ -0,0 +1,97 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the {@link de.egym.logqueue.writer.EgymLogConsoleWriter}. Bind an instance in your Guice module:
+ *
+ * <pre>
+ * bind(EgymLogConsoleWriterConfig.class).toInstance(EgymLogConsoleWriterConfig.defaults().withFlushInterval(500));
+ * </pre>
+ */
+@Immutable
+public class EgymLogConsoleWriterConfig {
+	private static final EgymLogConsoleWriterConfig DEFAULTS = new EgymLogConsoleWriterConfig(8192, 64 * 1024, 100);
+
+	/** The maximum number of messages waiting for the writer thread. Request threads wait for free space if the queue is full. */
+	private final int queueCapacity;
+
+	/** The size of the output buffer in bytes. A full buffer is written right away. */
+	private final int bufferSize;
+
+	/** The maximum time a message stays in the output buffer before it is flushed. */
+	private final long flushIntervalMillis;
+
+	private EgymLogConsoleWriterConfig(int queueCapacity, int bufferSize, long flushIntervalMillis) {
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be positive but is: " + queueCapacity);
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive but is: " + bufferSize);
+		}
+		if (flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("flushIntervalMillis must be positive but is: " + flushIntervalMillis);
+		}
+
+		this.queueCapacity = queueCapacity;
+		this.bufferSize = bufferSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+	}
+
+	/**
+	 * @return a config with a queue of 8192 messages, a 64 KB buffer and a flush interval of 100 ms.
+	 */
+	public static EgymLogConsoleWriterConfig defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * @param queueCapacity
+	 *            the maximum number of messages waiting for the writer thread. Must be positive.
+	 * @return a copy of this config using the specified queue capacity.
+	 */
+	public EgymLogConsoleWriterConfig withQueueCapacity(int queueCapacity) {
+		return new EgymLogConsoleWriterConfig(queueCapacity, bufferSize, flushIntervalMillis);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            the size of the output buffer in bytes. Must be positive.
+	 * @return a copy of this config using the specified buffer size.
+	 */
+	public EgymLogConsoleWriterConfig withBufferSize(int bufferSize) {
+		return new EgymLogConsoleWriterConfig(queueCapacity, bufferSize, flushIntervalMillis);
+	}
+
+	/**
+	 * @param flushIntervalMillis
+	 *            the maximum time a message stays in the output buffer before it is flushed. Must be positive.
+	 * @return a copy of this config using the specified flush interval.
+	 */
+	public EgymLogConsoleWriterConfig withFlushInterval(long flushIntervalMillis) {
+		return new EgymLogConsoleWriterConfig(queueCapacity, bufferSize, flushIntervalMillis);
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public long getFlushIntervalMillis() {
+		return flushIntervalMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogConsoleWriterConfig(" + "queueCapacity=" + queueCapacity + ", bufferSize=" + bufferSize + ", flushIntervalMillis="
+				+ flushIntervalMillis + ')';
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Specifies how request records are dispatched into the log pipelines. Use {@link #sync()} for the classic behavior, where all pipeline
+ * work happens on the request thread, or {@link #async(int, int)} to hand the records over to background dispatcher threads. The behavior
+ * of a full queue can be tuned with {@link #withOverflowPolicy(EgymLogOverflowPolicy)} and {@link #withBlockTimeout(long)}.
+ */
+@Immutable
+public class EgymLogDispatchConfig {
+	private static final EgymLogDispatchConfig SYNC = new EgymLogDispatchConfig(EgymLogDispatchMode.SYNC, 0, 0, EgymLogOverflowPolicy.BLOCK,
+			0);
+
+	private final EgymLogDispatchMode mode;
+
+	/** The maximum number of request records waiting to be dispatched. Only used in {@link EgymLogDispatchMode#ASYNC} mode. */
+	private final int queueCapacity;
+
+	/** The number of background dispatcher threads. Only used in {@link EgymLogDispatchMode#ASYNC} mode. */
+	private final int dispatcherThreads;
+
+	/** What happens if the queue is full. Only used in {@link EgymLogDispatchMode#ASYNC} mode. */
+	private final EgymLogOverflowPolicy overflowPolicy;
+
+	/** How long a request thread waits for free space in the queue before the record is dropped. Zero means no timeout. */
+	private final long blockTimeoutMillis;
+
+	private EgymLogDispatchConfig(EgymLogDispatchMode mode, int queueCapacity, int dispatcherThreads, EgymLogOverflowPolicy overflowPolicy,
+			long blockTimeoutMillis) {
+		if (mode == null) {
+			throw new IllegalArgumentException("mode must not be null");
+		}
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("overflowPolicy must not be null");
+		}
+		if (blockTimeoutMillis < 0) {
+			throw new IllegalArgumentException("blockTimeoutMillis must not be negative but is: " + blockTimeoutMillis);
+		}
+		if (mode == EgymLogDispatchMode.ASYNC && queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be positive but is: " + queueCapacity);
+		}
+		if (mode == EgymLogDispatchMode.ASYNC && dispatcherThreads <= 0) {
+			throw new IllegalArgumentException("dispatcherThreads must be positive but is: " + dispatcherThreads);
+		}
+
+		this.mode = mode;
+		this.queueCapacity = queueCapacity;
+		this.dispatcherThreads = dispatcherThreads;
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeoutMillis = blockTimeoutMillis;
+	}
+
+	/**
+	 * @return a config which executes all pipelines on the request thread.
+	 */
+	public static EgymLogDispatchConfig sync() {
+		return SYNC;
+	}
+
+	/**
+	 * @param queueCapacity
+	 *            the maximum number of request records waiting to be dispatched. Must be positive.
+	 * @param dispatcherThreads
+	 *            the number of background threads draining the queue. Must be positive.
+	 * @return a config which executes all pipelines on background dispatcher threads. Request threads wait for free space if the queue is
+	 *         full.
+	 */
+	public static EgymLogDispatchConfig async(int queueCapacity, int dispatcherThreads) {
+		return new EgymLogDispatchConfig(EgymLogDispatchMode.ASYNC, queueCapacity, dispatcherThreads, EgymLogOverflowPolicy.BLOCK, 0);
+	}
+
+	/**
+	 * @param overflowPolicy
+	 *            what happens if the queue is full. Must not be null.
+	 * @return a copy of this config using the specified overflow policy.
+	 */
+	public EgymLogDispatchConfig withOverflowPolicy(EgymLogOverflowPolicy overflowPolicy) {
+		return new EgymLogDispatchConfig(mode, queueCapacity, dispatcherThreads, overflowPolicy, blockTimeoutMillis);
+	}
+
+	/**
+	 * @param blockTimeoutMillis
+	 *            how long a request thread waits for free space in the queue before the record is dropped. Zero means no timeout. Must
+	 *            not be negative.
+	 * @return a copy of this config using the specified block timeout.
+	 */
+	public EgymLogDispatchConfig withBlockTimeout(long blockTimeoutMillis) {
+		return new EgymLogDispatchConfig(mode, queueCapacity, dispatcherThreads, overflowPolicy, blockTimeoutMillis);
+	}
+
+	public EgymLogDispatchMode getMode() {
+		return mode;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public int getDispatcherThreads() {
+		return dispatcherThreads;
+	}
+
+	public EgymLogOverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public long getBlockTimeoutMillis() {
+		return blockTimeoutMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogDispatchConfig(" + "mode=" + mode + ", queueCapacity=" + queueCapacity + ", dispatcherThreads=" + dispatcherThreads
+				+ ", overflowPolicy=" + overflowPolicy + ", blockTimeoutMillis=" + blockTimeoutMillis + ')';
+	}
+}
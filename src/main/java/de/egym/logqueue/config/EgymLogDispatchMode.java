@@ -0,0 +1,17 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+/**
+ * Defines how finished request records are handed over to the log pipelines.
+ */
+public enum EgymLogDispatchMode {
+	/** The pipelines are executed on the thread which ends the request. */
+	SYNC,
+
+	/** The request record is put into a bounded queue which is drained by background dispatcher threads. */
+	ASYNC
+}
@@ -0,0 +1,195 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import java.io.File;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the {@link de.egym.logqueue.writer.EgymLogFileWriter}. Bind an instance in your Guice module:
+ *
+ * <pre>
+ * bind(EgymLogFileWriterConfig.class).toInstance(EgymLogFileWriterConfig.toFile(new File(&quot;/var/log/app.log&quot;)));
+ * </pre>
+ */
+@Immutable
+public class EgymLogFileWriterConfig {
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private static final int DEFAULT_BATCH_SIZE = 256 * 1024;
+
+	private static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 200;
+
+	private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+	/** The file to append to. */
+	private final File file;
+
+	/** The size of each pooled buffer the log blocks are encoded into. */
+	private final int bufferSize;
+
+	/** The number of pending bytes which triggers a group commit. */
+	private final int batchSize;
+
+	/** The maximum time a log block waits for its group commit. */
+	private final long maxBatchDelayMillis;
+
+	private final EgymLogFsyncPolicy fsyncPolicy;
+
+	/** The minimum time between two forces for {@link EgymLogFsyncPolicy#INTERVAL}. */
+	private final long fsyncIntervalMillis;
+
+	private final EgymLogRotationConfig rotationConfig;
+
+	private EgymLogFileWriterConfig(File file, int bufferSize, int batchSize, long maxBatchDelayMillis, EgymLogFsyncPolicy fsyncPolicy,
+			long fsyncIntervalMillis, EgymLogRotationConfig rotationConfig) {
+		if (file == null) {
+			throw new IllegalArgumentException("file must not be null");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive but is: " + bufferSize);
+		}
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be positive but is: " + batchSize);
+		}
+		if (maxBatchDelayMillis <= 0) {
+			throw new IllegalArgumentException("maxBatchDelayMillis must be positive but is: " + maxBatchDelayMillis);
+		}
+		if (fsyncPolicy == null) {
+			throw new IllegalArgumentException("fsyncPolicy must not be null");
+		}
+		if (fsyncIntervalMillis <= 0) {
+			throw new IllegalArgumentException("fsyncIntervalMillis must be positive but is: " + fsyncIntervalMillis);
+		}
+		if (rotationConfig == null) {
+			throw new IllegalArgumentException("rotationConfig must not be null");
+		}
+
+		this.file = file;
+		this.bufferSize = bufferSize;
+		this.batchSize = batchSize;
+		this.maxBatchDelayMillis = maxBatchDelayMillis;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncIntervalMillis = fsyncIntervalMillis;
+		this.rotationConfig = rotationConfig;
+	}
+
+	/**
+	 * @param file
+	 *            the file to append to. Must not be null.
+	 * @return a config with default settings, which never forces the data to the storage device.
+	 */
+	public static EgymLogFileWriterConfig toFile(File file) {
+		return new EgymLogFileWriterConfig(file, DEFAULT_BUFFER_SIZE, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY_MILLIS,
+				EgymLogFsyncPolicy.NEVER, DEFAULT_FSYNC_INTERVAL_MILLIS, EgymLogRotationConfig.none());
+	}
+
+	/**
+	 * @param file
+	 *            the file to append to. Must not be null.
+	 * @return a copy of this config using the specified file.
+	 */
+	public EgymLogFileWriterConfig withFile(File file) {
+		return new EgymLogFileWriterConfig(file, bufferSize, batchSize, maxBatchDelayMillis, fsyncPolicy, fsyncIntervalMillis,
+				rotationConfig);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            the size of each pooled buffer the log blocks are encoded into. Must be positive.
+	 * @return a copy of this config using the specified buffer size.
+	 */
+	public EgymLogFileWriterConfig withBufferSize(int bufferSize) {
+		return new EgymLogFileWriterConfig(file, bufferSize, batchSize, maxBatchDelayMillis, fsyncPolicy, fsyncIntervalMillis,
+				rotationConfig);
+	}
+
+	/**
+	 * @param batchSize
+	 *            the number of pending bytes which triggers a group commit. Must be positive.
+	 * @return a copy of this config using the specified batch size.
+	 */
+	public EgymLogFileWriterConfig withBatchSize(int batchSize) {
+		return new EgymLogFileWriterConfig(file, bufferSize, batchSize, maxBatchDelayMillis, fsyncPolicy, fsyncIntervalMillis,
+				rotationConfig);
+	}
+
+	/**
+	 * @param maxBatchDelayMillis
+	 *            the maximum time a log block waits for its group commit. Must be positive.
+	 * @return a copy of this config using the specified delay.
+	 */
+	public EgymLogFileWriterConfig withMaxBatchDelay(long maxBatchDelayMillis) {
+		return new EgymLogFileWriterConfig(file, bufferSize, batchSize, maxBatchDelayMillis, fsyncPolicy, fsyncIntervalMillis,
+				rotationConfig);
+	}
+
+	/**
+	 * @param fsyncPolicy
+	 *            when to force the data to the storage device. Must not be null.
+	 * @return a copy of this config using the specified policy.
+	 */
+	public EgymLogFileWriterConfig withFsyncPolicy(EgymLogFsyncPolicy fsyncPolicy) {
+		return new EgymLogFileWriterConfig(file, bufferSize, batchSize, maxBatchDelayMillis, fsyncPolicy, fsyncIntervalMillis,
+				rotationConfig);
+	}
+
+	/**
+	 * @param fsyncIntervalMillis
+	 *            the minimum time between two forces for {@link EgymLogFsyncPolicy#INTERVAL}. Must be positive.
+	 * @return a copy of this config using the specified interval.
+	 */
+	public EgymLogFileWriterConfig withFsyncInterval(long fsyncIntervalMillis) {
+		return new EgymLogFileWriterConfig(file, bufferSize, batchSize, maxBatchDelayMillis, fsyncPolicy, fsyncIntervalMillis,
+				rotationConfig);
+	}
+
+	/**
+	 * @param rotationConfig
+	 *            when and how the file is rotated. Must not be null.
+	 * @return a copy of this config using the specified rotation.
+	 */
+	public EgymLogFileWriterConfig withRotation(EgymLogRotationConfig rotationConfig) {
+		return new EgymLogFileWriterConfig(file, bufferSize, batchSize, maxBatchDelayMillis, fsyncPolicy, fsyncIntervalMillis,
+				rotationConfig);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getMaxBatchDelayMillis() {
+		return maxBatchDelayMillis;
+	}
+
+	public EgymLogFsyncPolicy getFsyncPolicy() {
+		return fsyncPolicy;
+	}
+
+	public long getFsyncIntervalMillis() {
+		return fsyncIntervalMillis;
+	}
+
+	public EgymLogRotationConfig getRotationConfig() {
+		return rotationConfig;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogFileWriterConfig(" + "file=" + file + ", bufferSize=" + bufferSize + ", batchSize=" + batchSize
+				+ ", maxBatchDelayMillis=" + maxBatchDelayMillis + ", fsyncPolicy=" + fsyncPolicy + ", fsyncIntervalMillis="
+				+ fsyncIntervalMillis + ", rotationConfig=" + rotationConfig + ')';
+	}
+}
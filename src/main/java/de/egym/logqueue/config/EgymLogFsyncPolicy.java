@@ -0,0 +1,20 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+/**
+ * Defines when a file writer forces its data to the storage device.
+ */
+public enum EgymLogFsyncPolicy {
+	/** Never force, leave it to the operating system. Fastest, but the most recent log lines can be lost if the machine crashes. */
+	NEVER,
+
+	/** Force after each group commit. Safest, but every batch waits for the storage device. */
+	PER_BATCH,
+
+	/** Force at most once per configured interval. Bounds the amount of log lines which can be lost. */
+	INTERVAL
+}
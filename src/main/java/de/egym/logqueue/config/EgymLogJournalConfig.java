@@ -0,0 +1,140 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import java.io.File;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the write-ahead journal of a pipeline, see {@link de.egym.logqueue.writer.EgymLogJournalWriter}. Enable it in your pipeline
+ * module:
+ *
+ * <pre>
+ * skipDecoration().formatWith(EgymLogPlainTextFormatter.class)
+ * 		.journalTo(EgymLogJournalConfig.toDirectory(new File(&quot;/var/spool/app&quot;))).writeTo(MyNetworkWriter.class);
+ * </pre>
+ */
+@Immutable
+public class EgymLogJournalConfig {
+	private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+	private static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+
+	private static final int DEFAULT_FORWARD_BATCH_SIZE = 256;
+
+	/** The directory holding the journal and its checkpoint. Each journaled pipeline needs its own directory. */
+	private final File directory;
+
+	/** When appends to the journal are forced to the storage device. {@link EgymLogFsyncPolicy#PER_BATCH} forces every append. */
+	private final EgymLogFsyncPolicy fsyncPolicy;
+
+	/** The minimum time between two forces for {@link EgymLogFsyncPolicy#INTERVAL}. */
+	private final long fsyncIntervalMillis;
+
+	/** How long the forwarder waits before retrying after the writer failed. */
+	private final long retryDelayMillis;
+
+	/** The maximum number of messages the forwarder hands to the writer at once. */
+	private final int forwardBatchSize;
+
+	private EgymLogJournalConfig(File directory, EgymLogFsyncPolicy fsyncPolicy, long fsyncIntervalMillis, long retryDelayMillis,
+			int forwardBatchSize) {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory must not be null");
+		}
+		if (fsyncPolicy == null) {
+			throw new IllegalArgumentException("fsyncPolicy must not be null");
+		}
+		if (fsyncIntervalMillis <= 0) {
+			throw new IllegalArgumentException("fsyncIntervalMillis must be positive but is: " + fsyncIntervalMillis);
+		}
+		if (retryDelayMillis <= 0) {
+			throw new IllegalArgumentException("retryDelayMillis must be positive but is: " + retryDelayMillis);
+		}
+		if (forwardBatchSize <= 0) {
+			throw new IllegalArgumentException("forwardBatchSize must be positive but is: " + forwardBatchSize);
+		}
+
+		this.directory = directory;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncIntervalMillis = fsyncIntervalMillis;
+		this.retryDelayMillis = retryDelayMillis;
+		this.forwardBatchSize = forwardBatchSize;
+	}
+
+	/**
+	 * @param directory
+	 *            the directory holding the journal and its checkpoint. Must not be null. Each journaled pipeline needs its own directory.
+	 * @return a config with default settings, which never forces the journal to the storage device.
+	 */
+	public static EgymLogJournalConfig toDirectory(File directory) {
+		return new EgymLogJournalConfig(directory, EgymLogFsyncPolicy.NEVER, DEFAULT_FSYNC_INTERVAL_MILLIS, DEFAULT_RETRY_DELAY_MILLIS,
+				DEFAULT_FORWARD_BATCH_SIZE);
+	}
+
+	/**
+	 * @param fsyncPolicy
+	 *            when appends to the journal are forced to the storage device. Must not be null.
+	 * @return a copy of this config using the specified policy.
+	 */
+	public EgymLogJournalConfig withFsyncPolicy(EgymLogFsyncPolicy fsyncPolicy) {
+		return new EgymLogJournalConfig(directory, fsyncPolicy, fsyncIntervalMillis, retryDelayMillis, forwardBatchSize);
+	}
+
+	/**
+	 * @param fsyncIntervalMillis
+	 *            the minimum time between two forces for {@link EgymLogFsyncPolicy#INTERVAL}. Must be positive.
+	 * @return a copy of this config using the specified interval.
+	 */
+	public EgymLogJournalConfig withFsyncInterval(long fsyncIntervalMillis) {
+		return new EgymLogJournalConfig(directory, fsyncPolicy, fsyncIntervalMillis, retryDelayMillis, forwardBatchSize);
+	}
+
+	/**
+	 * @param retryDelayMillis
+	 *            how long the forwarder waits before retrying after the writer failed. Must be positive.
+	 * @return a copy of this config using the specified delay.
+	 */
+	public EgymLogJournalConfig withRetryDelay(long retryDelayMillis) {
+		return new EgymLogJournalConfig(directory, fsyncPolicy, fsyncIntervalMillis, retryDelayMillis, forwardBatchSize);
+	}
+
+	/**
+	 * @param forwardBatchSize
+	 *            the maximum number of messages the forwarder hands to the writer at once. Must be positive.
+	 * @return a copy of this config using the specified batch size.
+	 */
+	public EgymLogJournalConfig withForwardBatchSize(int forwardBatchSize) {
+		return new EgymLogJournalConfig(directory, fsyncPolicy, fsyncIntervalMillis, retryDelayMillis, forwardBatchSize);
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public EgymLogFsyncPolicy getFsyncPolicy() {
+		return fsyncPolicy;
+	}
+
+	public long getFsyncIntervalMillis() {
+		return fsyncIntervalMillis;
+	}
+
+	public long getRetryDelayMillis() {
+		return retryDelayMillis;
+	}
+
+	public int getForwardBatchSize() {
+		return forwardBatchSize;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogJournalConfig(" + "directory=" + directory + ", fsyncPolicy=" + fsyncPolicy + ", fsyncIntervalMillis="
+				+ fsyncIntervalMillis + ", retryDelayMillis=" + retryDelayMillis + ", forwardBatchSize=" + forwardBatchSize + ')';
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import java.io.File;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the {@link de.egym.logqueue.writer.EgymLogNetworkWriter}. Bind an instance in your Guice module:
+ *
+ * <pre>
+ * bind(EgymLogNetworkWriterConfig.class).toInstance(
+ * 		EgymLogNetworkWriterConfig.toAddress(&quot;localhost&quot;, 24224)
+ * 				.withSpoolFile(new File(&quot;/var/spool/app-log.spool&quot;)));
+ * </pre>
+ */
+@Immutable
+public class EgymLogNetworkWriterConfig {
+	private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+	private static final int DEFAULT_MAX_FRAME_SIZE = 256 * 1024;
+
+	private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+
+	private static final long DEFAULT_MIN_RECONNECT_DELAY_MILLIS = 100;
+
+	private static final long DEFAULT_MAX_RECONNECT_DELAY_MILLIS = 30000;
+
+	/** The host name of the collector. */
+	private final String host;
+
+	/** The TCP port of the collector. */
+	private final int port;
+
+	/** Blocks are appended to this file while the collector is unreachable. Null if they are dropped instead. */
+	private final File spoolFile;
+
+	/** The maximum number of blocks waiting to be sent. Request threads wait for free space if the queue is full. */
+	private final int queueCapacity;
+
+	/** Blocks are sent in frames of up to this many bytes. A larger block is sent in a frame of its own. */
+	private final int maxFrameSize;
+
+	private final int connectTimeoutMillis;
+
+	/** The delay before the first reconnect attempt. Doubles with each failed attempt. */
+	private final long minReconnectDelayMillis;
+
+	/** The maximum delay between two reconnect attempts. */
+	private final long maxReconnectDelayMillis;
+
+	private EgymLogNetworkWriterConfig(String host, int port, File spoolFile, int queueCapacity, int maxFrameSize, int connectTimeoutMillis,
+			long minReconnectDelayMillis, long maxReconnectDelayMillis) {
+		if (host == null || host.isEmpty()) {
+			throw new IllegalArgumentException("host must not be empty");
+		}
+		if (port <= 0 || port > 65535) {
+			throw new IllegalArgumentException("port must be between 1 and 65535 but is: " + port);
+		}
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be positive but is: " + queueCapacity);
+		}
+		if (maxFrameSize <= 0) {
+			throw new IllegalArgumentException("maxFrameSize must be positive but is: " + maxFrameSize);
+		}
+		if (connectTimeoutMillis <= 0) {
+			throw new IllegalArgumentException("connectTimeoutMillis must be positive but is: " + connectTimeoutMillis);
+		}
+		if (minReconnectDelayMillis <= 0) {
+			throw new IllegalArgumentException("minReconnectDelayMillis must be positive but is: " + minReconnectDelayMillis);
+		}
+		if (maxReconnectDelayMillis < minReconnectDelayMillis) {
+			throw new IllegalArgumentException("maxReconnectDelayMillis(" + maxReconnectDelayMillis + ") must not be smaller than "
+					+ "minReconnectDelayMillis(" + minReconnectDelayMillis + ")");
+		}
+
+		this.host = host;
+		this.port = port;
+		this.spoolFile = spoolFile;
+		this.queueCapacity = queueCapacity;
+		this.maxFrameSize = maxFrameSize;
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.minReconnectDelayMillis = minReconnectDelayMillis;
+		this.maxReconnectDelayMillis = maxReconnectDelayMillis;
+	}
+
+	/**
+	 * @param host
+	 *            the host name of the collector. Must not be empty.
+	 * @param port
+	 *            the TCP port of the collector.
+	 * @return a config with default settings, which drops blocks while the collector is unreachable.
+	 */
+	public static EgymLogNetworkWriterConfig toAddress(String host, int port) {
+		return new EgymLogNetworkWriterConfig(host, port, null, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_FRAME_SIZE,
+				DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_MIN_RECONNECT_DELAY_MILLIS, DEFAULT_MAX_RECONNECT_DELAY_MILLIS);
+	}
+
+	/**
+	 * @param spoolFile
+	 *            blocks are appended to this file while the collector is unreachable and sent once it is back. May be null to drop them
+	 *            instead.
+	 * @return a copy of this config using the specified spool file.
+	 */
+	public EgymLogNetworkWriterConfig withSpoolFile(File spoolFile) {
+		return new EgymLogNetworkWriterConfig(host, port, spoolFile, queueCapacity, maxFrameSize, connectTimeoutMillis,
+				minReconnectDelayMillis, maxReconnectDelayMillis);
+	}
+
+	/**
+	 * @param queueCapacity
+	 *            the maximum number of blocks waiting to be sent. Must be positive.
+	 * @return a copy of this config using the specified queue capacity.
+	 */
+	public EgymLogNetworkWriterConfig withQueueCapacity(int queueCapacity) {
+		return new EgymLogNetworkWriterConfig(host, port, spoolFile, queueCapacity, maxFrameSize, connectTimeoutMillis,
+				minReconnectDelayMillis, maxReconnectDelayMillis);
+	}
+
+	/**
+	 * @param maxFrameSize
+	 *            blocks are sent in frames of up to this many bytes. Must be positive.
+	 * @return a copy of this config using the specified frame size.
+	 */
+	public EgymLogNetworkWriterConfig withMaxFrameSize(int maxFrameSize) {
+		return new EgymLogNetworkWriterConfig(host, port, spoolFile, queueCapacity, maxFrameSize, connectTimeoutMillis,
+				minReconnectDelayMillis, maxReconnectDelayMillis);
+	}
+
+	/**
+	 * @param connectTimeoutMillis
+	 *            the timeout for establishing a connection. Must be positive.
+	 * @return a copy of this config using the specified timeout.
+	 */
+	public EgymLogNetworkWriterConfig withConnectTimeout(int connectTimeoutMillis) {
+		return new EgymLogNetworkWriterConfig(host, port, spoolFile, queueCapacity, maxFrameSize, connectTimeoutMillis,
+				minReconnectDelayMillis, maxReconnectDelayMillis);
+	}
+
+	/**
+	 * @param minReconnectDelayMillis
+	 *            the delay before the first reconnect attempt, which doubles with each failed attempt. Must be positive.
+	 * @param maxReconnectDelayMillis
+	 *            the maximum delay between two reconnect attempts. Must not be smaller than minReconnectDelayMillis.
+	 * @return a copy of this config using the specified backoff.
+	 */
+	public EgymLogNetworkWriterConfig withReconnectBackoff(long minReconnectDelayMillis, long maxReconnectDelayMillis) {
+		return new EgymLogNetworkWriterConfig(host, port, spoolFile, queueCapacity, maxFrameSize, connectTimeoutMillis,
+				minReconnectDelayMillis, maxReconnectDelayMillis);
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @return the file blocks are appended to while the collector is unreachable. Null if they are dropped instead.
+	 */
+	public File getSpoolFile() {
+		return spoolFile;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	public long getMinReconnectDelayMillis() {
+		return minReconnectDelayMillis;
+	}
+
+	public long getMaxReconnectDelayMillis() {
+		return maxReconnectDelayMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogNetworkWriterConfig(" + "host=" + host + ", port=" + port + ", spoolFile=" + spoolFile + ", queueCapacity="
+				+ queueCapacity + ", maxFrameSize=" + maxFrameSize + ", connectTimeoutMillis=" + connectTimeoutMillis
+				+ ", minReconnectDelayMillis=" + minReconnectDelayMillis + ", maxReconnectDelayMillis=" + maxReconnectDelayMillis + ')';
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import de.egym.logqueue.EgymLogLevels;
+
+/**
+ * Defines what happens if a request record is dispatched asynchronously while the pipeline's queue is full. Every request record which is
+ * dropped is counted, see {@link de.egym.logqueue.EgymLogQueue#getDroppedRequestRecordCount()}.
+ */
+public enum EgymLogOverflowPolicy {
+	/** The request thread waits for free space. If a block timeout is configured, the record is dropped once the timeout elapses. */
+	BLOCK,
+
+	/** The record which is about to be enqueued is dropped. */
+	DROP_NEWEST,
+
+	/** The oldest queued record is dropped to make room for the new one. */
+	DROP_OLDEST,
+
+	/**
+	 * Records whose maximum log level is below the audit threshold (see {@link EgymLogLevels#getThresholdRequestAudit()}) are dropped
+	 * first: A new record below the threshold is dropped right away, a new record at or above the threshold evicts the oldest queued record
+	 * below the threshold. If the queue contains audited records only, the request thread waits like with {@link #BLOCK}.
+	 */
+	DROP_BELOW_AUDIT
+}
@@ -5,7 +5,13 @@
  */
 package de.egym.logqueue.config;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
 import net.jcip.annotations.Immutable;
+
+import com.google.inject.TypeLiteral;
+
 import de.egym.logqueue.EgymLogRequestRecord;
 import de.egym.logqueue.decorator.EgymLogDecorator;
 import de.egym.logqueue.formatter.EgymLogFormatter;
@@ -27,8 +33,26 @@ public class EgymLogPipelineConfig<D extends EgymLogRequestRecord, F> {
 
 	private final Class<? extends EgymLogWriter<F>> logWriterClazz;
 
+	/** The pipeline specific dispatch configuration. Null if the queue's default applies. */
+	private final EgymLogDispatchConfig dispatchConfig;
+
+	/** The write-ahead journal in front of the writer. Null if the pipeline writes directly. */
+	private final EgymLogJournalConfig journalConfig;
+
 	public EgymLogPipelineConfig(Class<? extends EgymLogDecorator<D>> logDecoratorClazz,
 			Class<? extends EgymLogFormatter<D, F>> logFormatterClazz, Class<? extends EgymLogWriter<F>> logWriterClazz) {
+		this(logDecoratorClazz, logFormatterClazz, logWriterClazz, null);
+	}
+
+	public EgymLogPipelineConfig(Class<? extends EgymLogDecorator<D>> logDecoratorClazz,
+			Class<? extends EgymLogFormatter<D, F>> logFormatterClazz, Class<? extends EgymLogWriter<F>> logWriterClazz,
+			EgymLogDispatchConfig dispatchConfig) {
+		this(logDecoratorClazz, logFormatterClazz, logWriterClazz, dispatchConfig, null);
+	}
+
+	public EgymLogPipelineConfig(Class<? extends EgymLogDecorator<D>> logDecoratorClazz,
+			Class<? extends EgymLogFormatter<D, F>> logFormatterClazz, Class<? extends EgymLogWriter<F>> logWriterClazz,
+			EgymLogDispatchConfig dispatchConfig, EgymLogJournalConfig journalConfig) {
 
 		if (logDecoratorClazz == null) {
 			throw new IllegalArgumentException("logDecoratorClazz must not be null");
@@ -39,10 +63,16 @@ public class EgymLogPipelineConfig<D extends EgymLogRequestRecord, F> {
 		if (logWriterClazz == null) {
 			throw new IllegalArgumentException("logWriterClazz must not be null");
 		}
+		if (journalConfig != null && !producesStrings(logFormatterClazz)) {
+			throw new IllegalArgumentException("The formatter of a journaled pipeline must produce strings: "
+					+ logFormatterClazz.getName());
+		}
 
 		this.logDecoratorClazz = logDecoratorClazz;
 		this.logWriterClazz = logWriterClazz;
 		this.logFormatterClazz = logFormatterClazz;
+		this.dispatchConfig = dispatchConfig;
+		this.journalConfig = journalConfig;
 	}
 
 	public Class<? extends EgymLogDecorator<D>> getLogDecoratorClazz() {
@@ -57,9 +87,47 @@ public class EgymLogPipelineConfig<D extends EgymLogRequestRecord, F> {
 		return logWriterClazz;
 	}
 
+	/**
+	 * @return The pipeline specific dispatch configuration. Null if the queue's default applies.
+	 */
+	public EgymLogDispatchConfig getDispatchConfig() {
+		return dispatchConfig;
+	}
+
+	/**
+	 * @return The write-ahead journal in front of the writer. Null if the pipeline writes directly.
+	 */
+	public EgymLogJournalConfig getJournalConfig() {
+		return journalConfig;
+	}
+
+	/**
+	 * @return The writer the journal forwards to. Null if the pipeline writes directly.
+	 */
+	@SuppressWarnings("unchecked")
+	public Class<? extends EgymLogWriter<String>> getJournaledWriterClazz() {
+		if (journalConfig == null) {
+			return null;
+		}
+		// The constructor made sure that the formatter, and thus the writer, of a journaled pipeline works on strings.
+		return (Class<? extends EgymLogWriter<String>>) (Class<?>) logWriterClazz;
+	}
+
+	/**
+	 * @param logFormatterClazz
+	 *            the formatter class. Must not be null.
+	 * @return true if the formatter is declared to produce strings.
+	 */
+	static boolean producesStrings(Class<?> logFormatterClazz) {
+		final Type formatterType = TypeLiteral.get(logFormatterClazz).getSupertype(EgymLogFormatter.class).getType();
+		return formatterType instanceof ParameterizedType
+				&& ((ParameterizedType) formatterType).getActualTypeArguments()[1] == String.class;
+	}
+
 	@Override
 	public String toString() {
 		return "EgymLogWiringConfig(" + "logDecoratorClazz=" + logDecoratorClazz.getName() + ", logFormatterClazz="
-				+ logFormatterClazz.getName() + ", logWriterClazz=" + logWriterClazz.getName() + ')';
+				+ logFormatterClazz.getName() + ", logWriterClazz=" + logWriterClazz.getName() + ", dispatchConfig=" + dispatchConfig
+				+ ", journalConfig=" + journalConfig + ')';
 	}
 }
@@ -77,6 +77,36 @@ public abstract class EgymLogPipelineModule extends AbstractModule {
 			this.logFormatterClazz = logFormatterClazz;
 		}
 
+		/**
+		 * Specifies how request records are dispatched into this pipeline. Pipelines with an asynchronous dispatch configuration get their
+		 * own queue and dispatcher threads, so they neither slow down the request thread nor any other pipeline.
+		 *
+		 * @param dispatchConfig
+		 *            the dispatch configuration. Must not be null.
+		 * @return intermediary object used to chain the following calls.
+		 */
+		public DispatchWith<D, F> dispatchWith(EgymLogDispatchConfig dispatchConfig) {
+			if (dispatchConfig == null) {
+				throw new IllegalArgumentException("dispatchConfig must not be null");
+			}
+			return new DispatchWith<>(logDecoratorClazz, logFormatterClazz, dispatchConfig);
+		}
+
+		/**
+		 * Puts a write-ahead journal in front of the writer, see {@link de.egym.logqueue.writer.EgymLogJournalWriter}. The formatter must
+		 * produce strings, otherwise an {@link IllegalArgumentException} is thrown.
+		 *
+		 * @param journalConfig
+		 *            the journal configuration. Must not be null.
+		 * @return intermediary object used to chain the following calls.
+		 */
+		public JournalTo<D> journalTo(EgymLogJournalConfig journalConfig) {
+			if (journalConfig == null) {
+				throw new IllegalArgumentException("journalConfig must not be null");
+			}
+			return new JournalTo<>(logDecoratorClazz, requireStringFormatter(logFormatterClazz), null, journalConfig);
+		}
+
 		/**
 		 * Specifies the writer used to write log records. This finalizes the pipeline configuration.
 		 *
@@ -84,11 +114,108 @@ public abstract class EgymLogPipelineModule extends AbstractModule {
 		 *            the type of writer to use.
 		 */
 		public void writeTo(Class<? extends EgymLogWriter<F>> logWriterClazz) {
-			bind(logDecoratorClazz);
-			bind(logFormatterClazz);
-			bind(logWriterClazz);
-			bind(Key.get(EgymLogPipelineConfig.class, UniqueAnnotations.create())).toInstance(
-					new EgymLogPipelineConfig(logDecoratorClazz, logFormatterClazz, logWriterClazz));
+			bindPipeline(new EgymLogPipelineConfig<>(logDecoratorClazz, logFormatterClazz, logWriterClazz));
+		}
+	}
+
+	/**
+	 * Intermediate class used to chain the pipeline configuration.
+	 *
+	 * @param <D>
+	 *            the type of the decorated request log records.
+	 * @param <F>
+	 *            the type of formatted request log record.
+	 */
+	public class DispatchWith<D extends EgymLogRequestRecord, F> {
+		private final Class<? extends EgymLogDecorator<D>> logDecoratorClazz;
+
+		private final Class<? extends EgymLogFormatter<D, F>> logFormatterClazz;
+
+		private final EgymLogDispatchConfig dispatchConfig;
+
+		/**
+		 * @param logDecoratorClazz
+		 *            the class to use for log decoration. Must not be null.
+		 * @param logFormatterClazz
+		 *            the type of formatter to use.
+		 * @param dispatchConfig
+		 *            the dispatch configuration. Must not be null.
+		 */
+		private DispatchWith(Class<? extends EgymLogDecorator<D>> logDecoratorClazz,
+				Class<? extends EgymLogFormatter<D, F>> logFormatterClazz, EgymLogDispatchConfig dispatchConfig) {
+			this.logDecoratorClazz = logDecoratorClazz;
+			this.logFormatterClazz = logFormatterClazz;
+			this.dispatchConfig = dispatchConfig;
+		}
+
+		/**
+		 * Puts a write-ahead journal in front of the writer, see {@link de.egym.logqueue.writer.EgymLogJournalWriter}. The formatter must
+		 * produce strings, otherwise an {@link IllegalArgumentException} is thrown.
+		 *
+		 * @param journalConfig
+		 *            the journal configuration. Must not be null.
+		 * @return intermediary object used to chain the following calls.
+		 */
+		public JournalTo<D> journalTo(EgymLogJournalConfig journalConfig) {
+			if (journalConfig == null) {
+				throw new IllegalArgumentException("journalConfig must not be null");
+			}
+			return new JournalTo<>(logDecoratorClazz, requireStringFormatter(logFormatterClazz), dispatchConfig, journalConfig);
+		}
+
+		/**
+		 * Specifies the writer used to write log records. This finalizes the pipeline configuration.
+		 *
+		 * @param logWriterClazz
+		 *            the type of writer to use.
+		 */
+		public void writeTo(Class<? extends EgymLogWriter<F>> logWriterClazz) {
+			bindPipeline(new EgymLogPipelineConfig<>(logDecoratorClazz, logFormatterClazz, logWriterClazz, dispatchConfig));
+		}
+	}
+
+	/**
+	 * Intermediate class used to chain the pipeline configuration. The journal stores strings, so the formatter has to produce them.
+	 *
+	 * @param <D>
+	 *            the type of the decorated request log records.
+	 */
+	public class JournalTo<D extends EgymLogRequestRecord> {
+		private final Class<? extends EgymLogDecorator<D>> logDecoratorClazz;
+
+		private final Class<? extends EgymLogFormatter<D, String>> logFormatterClazz;
+
+		private final EgymLogDispatchConfig dispatchConfig;
+
+		private final EgymLogJournalConfig journalConfig;
+
+		/**
+		 * @param logDecoratorClazz
+		 *            the class to use for log decoration. Must not be null.
+		 * @param logFormatterClazz
+		 *            the type of formatter to use.
+		 * @param dispatchConfig
+		 *            the dispatch configuration. May be null.
+		 * @param journalConfig
+		 *            the journal configuration. Must not be null.
+		 */
+		private JournalTo(Class<? extends EgymLogDecorator<D>> logDecoratorClazz,
+				Class<? extends EgymLogFormatter<D, String>> logFormatterClazz, EgymLogDispatchConfig dispatchConfig,
+				EgymLogJournalConfig journalConfig) {
+			this.logDecoratorClazz = logDecoratorClazz;
+			this.logFormatterClazz = logFormatterClazz;
+			this.dispatchConfig = dispatchConfig;
+			this.journalConfig = journalConfig;
+		}
+
+		/**
+		 * Specifies the writer the journal is forwarded to. This finalizes the pipeline configuration.
+		 *
+		 * @param logWriterClazz
+		 *            the type of writer to use.
+		 */
+		public void writeTo(Class<? extends EgymLogWriter<String>> logWriterClazz) {
+			bindPipeline(new EgymLogPipelineConfig<>(logDecoratorClazz, logFormatterClazz, logWriterClazz, dispatchConfig, journalConfig));
 		}
 	}
 
@@ -115,4 +242,34 @@ public abstract class EgymLogPipelineModule extends AbstractModule {
 	protected DecorateWith<EgymLogRequestRecord> skipDecoration() {
 		return decorateWith(EgymLogNoOpDecorator.class);
 	}
+
+	/**
+	 * Narrows the formatter type of a journaled pipeline, which has to produce strings.
+	 *
+	 * @param logFormatterClazz
+	 *            the formatter class. Must not be null.
+	 * @return the same class.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <D extends EgymLogRequestRecord> Class<? extends EgymLogFormatter<D, String>> requireStringFormatter(
+			Class<? extends EgymLogFormatter<D, ?>> logFormatterClazz) {
+		if (!EgymLogPipelineConfig.producesStrings(logFormatterClazz)) {
+			throw new IllegalArgumentException("The formatter of a journaled pipeline must produce strings: "
+					+ logFormatterClazz.getName());
+		}
+		return (Class<? extends EgymLogFormatter<D, String>>) logFormatterClazz;
+	}
+
+	/**
+	 * Binds the components and the config of a pipeline.
+	 *
+	 * @param config
+	 *            the pipeline config. Must not be null.
+	 */
+	private void bindPipeline(EgymLogPipelineConfig<?, ?> config) {
+		bind(config.getLogDecoratorClazz());
+		bind(config.getLogFormatterClazz());
+		bind(config.getLogWriterClazz());
+		bind(Key.get(EgymLogPipelineConfig.class, UniqueAnnotations.create())).toInstance(config);
+	}
 }
@@ -0,0 +1,121 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import net.jcip.annotations.Immutable;
+import de.egym.logqueue.EgymLogClock;
+import de.egym.logqueue.EgymLogSystemClock;
+
+/**
+ * Global settings of the log queue. Instances are immutable, use the <code>with*()</code> methods to derive a modified copy:
+ *
+ * <pre>
+ * new EgymLogModule(EgymLogQueueConfig.defaults().withDispatch(EgymLogDispatchConfig.async(4096, 1)))
+ * </pre>
+ */
+@Immutable
+public class EgymLogQueueConfig {
+	private static final EgymLogQueueConfig DEFAULTS = new EgymLogQueueConfig(EgymLogDispatchConfig.sync(),
+			EgymLogSystemClock.getInstance(), EgymLogRequestLimits.unlimited(), EgymLogStackTraceConfig.defaults());
+
+	/** Specifies how finished request records are dispatched into pipelines which do not have their own dispatch configuration. */
+	private final EgymLogDispatchConfig dispatchConfig;
+
+	/** The time source used to timestamp log records and requests. */
+	private final EgymLogClock clock;
+
+	/** Limits the memory used by the log records of a single request. */
+	private final EgymLogRequestLimits requestLimits;
+
+	/** How stack traces are rendered by the plain-text formatter. */
+	private final EgymLogStackTraceConfig stackTraceConfig;
+
+	private EgymLogQueueConfig(EgymLogDispatchConfig dispatchConfig, EgymLogClock clock, EgymLogRequestLimits requestLimits,
+			EgymLogStackTraceConfig stackTraceConfig) {
+		if (dispatchConfig == null) {
+			throw new IllegalArgumentException("dispatchConfig must not be null");
+		}
+		if (clock == null) {
+			throw new IllegalArgumentException("clock must not be null");
+		}
+		if (requestLimits == null) {
+			throw new IllegalArgumentException("requestLimits must not be null");
+		}
+		if (stackTraceConfig == null) {
+			throw new IllegalArgumentException("stackTraceConfig must not be null");
+		}
+
+		this.dispatchConfig = dispatchConfig;
+		this.clock = clock;
+		this.requestLimits = requestLimits;
+		this.stackTraceConfig = stackTraceConfig;
+	}
+
+	/**
+	 * @return the default configuration, which dispatches synchronously on the request thread.
+	 */
+	public static EgymLogQueueConfig defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * @param dispatchConfig
+	 *            the default dispatch configuration for all pipelines. Must not be null.
+	 * @return a copy of this config using the specified dispatch configuration.
+	 */
+	public EgymLogQueueConfig withDispatch(EgymLogDispatchConfig dispatchConfig) {
+		return new EgymLogQueueConfig(dispatchConfig, clock, requestLimits, stackTraceConfig);
+	}
+
+	/**
+	 * @param clock
+	 *            the time source used to timestamp log records and requests. Must not be null.
+	 * @return a copy of this config using the specified clock.
+	 */
+	public EgymLogQueueConfig withClock(EgymLogClock clock) {
+		return new EgymLogQueueConfig(dispatchConfig, clock, requestLimits, stackTraceConfig);
+	}
+
+	/**
+	 * @param requestLimits
+	 *            limits the memory used by the log records of a single request. Must not be null.
+	 * @return a copy of this config using the specified request limits.
+	 */
+	public EgymLogQueueConfig withRequestLimits(EgymLogRequestLimits requestLimits) {
+		return new EgymLogQueueConfig(dispatchConfig, clock, requestLimits, stackTraceConfig);
+	}
+
+	/**
+	 * @param stackTraceConfig
+	 *            how stack traces are rendered by the plain-text formatter. Must not be null.
+	 * @return a copy of this config using the specified stack trace configuration.
+	 */
+	public EgymLogQueueConfig withStackTraces(EgymLogStackTraceConfig stackTraceConfig) {
+		return new EgymLogQueueConfig(dispatchConfig, clock, requestLimits, stackTraceConfig);
+	}
+
+	public EgymLogDispatchConfig getDispatchConfig() {
+		return dispatchConfig;
+	}
+
+	public EgymLogClock getClock() {
+		return clock;
+	}
+
+	public EgymLogRequestLimits getRequestLimits() {
+		return requestLimits;
+	}
+
+	public EgymLogStackTraceConfig getStackTraceConfig() {
+		return stackTraceConfig;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogQueueConfig(" + "dispatchConfig=" + dispatchConfig + ", clock=" + clock + ", requestLimits=" + requestLimits
+				+ ", stackTraceConfig=" + stackTraceConfig + ')';
+	}
+}
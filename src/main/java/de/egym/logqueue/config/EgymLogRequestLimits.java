@@ -0,0 +1,188 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import java.io.File;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Limits the memory a single in-flight request can use for its log records. Once the request exceeds {@link #getMaxRecords()} or
+ * {@link #getMaxBytes()}, records at or above the audit threshold (WARN and ERROR) are still always kept, but of the lower level records
+ * only the most recent {@link #getRetainedRecords()} ones are kept. The number of dropped records is reported in the request's log block.
+ * <p>
+ * Independently of the limits, the log records of a request can be moved out of the heap into a temporary spill file once they exceed
+ * {@link #getSpillThresholdBytes()}. The file is streamed back through the pipelines when the request ends and deleted afterwards.
+ * </p>
+ * <p>
+ * With {@link #withOffHeapBuffer(int)} the log records are encoded into pooled direct byte buffers right away, instead of being kept as
+ * objects on the heap until the request ends. This reduces the number of objects promoted by the garbage collector under high request
+ * concurrency, at the cost of rendering each message eagerly.
+ * </p>
+ */
+@Immutable
+public class EgymLogRequestLimits {
+	private static final EgymLogRequestLimits UNLIMITED = new EgymLogRequestLimits(0, 0, 0, 0, null, 0);
+
+	/** The number of records after which the limit applies. Zero means unlimited. */
+	private final int maxRecords;
+
+	/** The estimated number of bytes after which the limit applies. Zero means unlimited. */
+	private final long maxBytes;
+
+	/** The number of most recent records below the audit threshold which are kept once the limit applies. */
+	private final int retainedRecords;
+
+	/** The estimated number of bytes after which the log records are moved to a spill file. Zero means never. */
+	private final long spillThresholdBytes;
+
+	/** The directory for spill files. Null means the default temporary-file directory. */
+	private final File spillDirectory;
+
+	/** The initial capacity of the direct buffer the log records of a request are encoded into. Zero means no off-heap encoding. */
+	private final int offHeapBufferBytes;
+
+	private EgymLogRequestLimits(int maxRecords, long maxBytes, int retainedRecords, long spillThresholdBytes, File spillDirectory,
+			int offHeapBufferBytes) {
+		if (maxRecords < 0) {
+			throw new IllegalArgumentException("maxRecords must not be negative but is: " + maxRecords);
+		}
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes must not be negative but is: " + maxBytes);
+		}
+		if (retainedRecords < 0) {
+			throw new IllegalArgumentException("retainedRecords must not be negative but is: " + retainedRecords);
+		}
+		if (spillThresholdBytes < 0) {
+			throw new IllegalArgumentException("spillThresholdBytes must not be negative but is: " + spillThresholdBytes);
+		}
+		if (offHeapBufferBytes < 0) {
+			throw new IllegalArgumentException("offHeapBufferBytes must not be negative but is: " + offHeapBufferBytes);
+		}
+
+		this.maxRecords = maxRecords;
+		this.maxBytes = maxBytes;
+		this.retainedRecords = retainedRecords;
+		this.spillThresholdBytes = spillThresholdBytes;
+		this.spillDirectory = spillDirectory;
+		this.offHeapBufferBytes = offHeapBufferBytes;
+	}
+
+	/**
+	 * @return limits which never drop any record.
+	 */
+	public static EgymLogRequestLimits unlimited() {
+		return UNLIMITED;
+	}
+
+	/**
+	 * @param maxRecords
+	 *            the number of records after which the limit applies. Zero means unlimited. Must not be negative.
+	 * @return a copy of these limits using the specified record limit.
+	 */
+	public EgymLogRequestLimits withMaxRecords(int maxRecords) {
+		return new EgymLogRequestLimits(maxRecords, maxBytes, retainedRecords, spillThresholdBytes, spillDirectory, offHeapBufferBytes);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            the estimated number of bytes after which the limit applies. Zero means unlimited. Must not be negative.
+	 * @return a copy of these limits using the specified byte limit.
+	 */
+	public EgymLogRequestLimits withMaxBytes(long maxBytes) {
+		return new EgymLogRequestLimits(maxRecords, maxBytes, retainedRecords, spillThresholdBytes, spillDirectory, offHeapBufferBytes);
+	}
+
+	/**
+	 * @param retainedRecords
+	 *            the number of most recent records below the audit threshold which are kept once the limit applies. Must not be negative.
+	 * @return a copy of these limits using the specified number of retained records.
+	 */
+	public EgymLogRequestLimits withRetainedRecords(int retainedRecords) {
+		return new EgymLogRequestLimits(maxRecords, maxBytes, retainedRecords, spillThresholdBytes, spillDirectory, offHeapBufferBytes);
+	}
+
+	/**
+	 * @param spillThresholdBytes
+	 *            the estimated number of bytes after which the log records of a request are moved to a spill file. Zero means never. Must
+	 *            not be negative.
+	 * @return a copy of these limits using the specified spill threshold.
+	 */
+	public EgymLogRequestLimits withSpillThreshold(long spillThresholdBytes) {
+		return new EgymLogRequestLimits(maxRecords, maxBytes, retainedRecords, spillThresholdBytes, spillDirectory, offHeapBufferBytes);
+	}
+
+	/**
+	 * @param spillDirectory
+	 *            the directory for spill files. Null means the default temporary-file directory.
+	 * @return a copy of these limits using the specified spill directory.
+	 */
+	public EgymLogRequestLimits withSpillDirectory(File spillDirectory) {
+		return new EgymLogRequestLimits(maxRecords, maxBytes, retainedRecords, spillThresholdBytes, spillDirectory, offHeapBufferBytes);
+	}
+
+	/**
+	 * @param offHeapBufferBytes
+	 *            the initial capacity of the direct buffer the log records of a request are encoded into. The buffer grows as needed. Zero
+	 *            means the records are kept as objects on the heap. Must not be negative.
+	 * @return a copy of these limits using the specified off-heap buffer size.
+	 */
+	public EgymLogRequestLimits withOffHeapBuffer(int offHeapBufferBytes) {
+		return new EgymLogRequestLimits(maxRecords, maxBytes, retainedRecords, spillThresholdBytes, spillDirectory, offHeapBufferBytes);
+	}
+
+	public int getMaxRecords() {
+		return maxRecords;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public int getRetainedRecords() {
+		return retainedRecords;
+	}
+
+	public long getSpillThresholdBytes() {
+		return spillThresholdBytes;
+	}
+
+	public File getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	public int getOffHeapBufferBytes() {
+		return offHeapBufferBytes;
+	}
+
+	/**
+	 * @return True if any limit is configured.
+	 */
+	public boolean isLimited() {
+		return maxRecords > 0 || maxBytes > 0;
+	}
+
+	/**
+	 * @return True if log records are moved to a spill file above {@link #getSpillThresholdBytes()}.
+	 */
+	public boolean isSpillEnabled() {
+		return spillThresholdBytes > 0;
+	}
+
+	/**
+	 * @return True if log records are encoded into direct byte buffers.
+	 */
+	public boolean isOffHeapEnabled() {
+		return offHeapBufferBytes > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogRequestLimits(" + "maxRecords=" + maxRecords + ", maxBytes=" + maxBytes + ", retainedRecords=" + retainedRecords
+				+ ", spillThresholdBytes=" + spillThresholdBytes + ", spillDirectory=" + spillDirectory
+				+ ", offHeapBufferBytes=" + offHeapBufferBytes + ')';
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the rotation of log files. A file is rotated once it exceeds {@link #getMaxFileSize()} or once the
+ * {@link #getPeriod() period} boundary is reached, whatever happens first. Rotated files are renamed to
+ * <code>&lt;file&gt;.&lt;yyyyMMdd-HHmmss-SSS&gt;</code> and compressed on a low-priority background thread. Only the most recent
+ * {@link #getMaxArchives()} archives are kept.
+ */
+@Immutable
+public class EgymLogRotationConfig {
+	private static final int DEFAULT_MAX_ARCHIVES = 10;
+
+	private static final EgymLogRotationConfig NONE = new EgymLogRotationConfig(0, null, DEFAULT_MAX_ARCHIVES, true);
+
+	/** The file size in bytes which triggers a rotation. Zero means no size limit. */
+	private final long maxFileSize;
+
+	/** The time boundaries which trigger a rotation. Null means no time based rotation. */
+	private final EgymLogRotationPeriod period;
+
+	/** The number of archives which are kept. */
+	private final int maxArchives;
+
+	/** Whether rotated files are compressed with gzip. */
+	private final boolean compress;
+
+	private EgymLogRotationConfig(long maxFileSize, EgymLogRotationPeriod period, int maxArchives, boolean compress) {
+		if (maxFileSize < 0) {
+			throw new IllegalArgumentException("maxFileSize must not be negative but is: " + maxFileSize);
+		}
+		if (maxArchives < 0) {
+			throw new IllegalArgumentException("maxArchives must not be negative but is: " + maxArchives);
+		}
+
+		this.maxFileSize = maxFileSize;
+		this.period = period;
+		this.maxArchives = maxArchives;
+		this.compress = compress;
+	}
+
+	/**
+	 * @return a config which never rotates.
+	 */
+	public static EgymLogRotationConfig none() {
+		return NONE;
+	}
+
+	/**
+	 * @param maxFileSize
+	 *            the file size in bytes which triggers a rotation. Zero means no size limit. Must not be negative.
+	 * @return a copy of this config using the specified size limit.
+	 */
+	public EgymLogRotationConfig withMaxFileSize(long maxFileSize) {
+		return new EgymLogRotationConfig(maxFileSize, period, maxArchives, compress);
+	}
+
+	/**
+	 * @param period
+	 *            the time boundaries which trigger a rotation. Null means no time based rotation.
+	 * @return a copy of this config using the specified period.
+	 */
+	public EgymLogRotationConfig withPeriod(EgymLogRotationPeriod period) {
+		return new EgymLogRotationConfig(maxFileSize, period, maxArchives, compress);
+	}
+
+	/**
+	 * @param maxArchives
+	 *            the number of archives which are kept. Must not be negative.
+	 * @return a copy of this config using the specified number of archives.
+	 */
+	public EgymLogRotationConfig withMaxArchives(int maxArchives) {
+		return new EgymLogRotationConfig(maxFileSize, period, maxArchives, compress);
+	}
+
+	/**
+	 * @param compress
+	 *            whether rotated files are compressed with gzip.
+	 * @return a copy of this config using the specified compression setting.
+	 */
+	public EgymLogRotationConfig withCompression(boolean compress) {
+		return new EgymLogRotationConfig(maxFileSize, period, maxArchives, compress);
+	}
+
+	public long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	public EgymLogRotationPeriod getPeriod() {
+		return period;
+	}
+
+	public int getMaxArchives() {
+		return maxArchives;
+	}
+
+	public boolean isCompress() {
+		return compress;
+	}
+
+	/**
+	 * @return True if files are rotated at all.
+	 */
+	public boolean isEnabled() {
+		return maxFileSize > 0 || period != null;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogRotationConfig(" + "maxFileSize=" + maxFileSize + ", period=" + period + ", maxArchives=" + maxArchives
+				+ ", compress=" + compress + ')';
+	}
+}
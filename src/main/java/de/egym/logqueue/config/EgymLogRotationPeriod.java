@@ -0,0 +1,36 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import org.joda.time.DateTime;
+
+/**
+ * Defines the time boundaries on which log files are rotated.
+ */
+public enum EgymLogRotationPeriod {
+	/** Rotates at the beginning of each hour. */
+	HOURLY {
+		@Override
+		public DateTime nextBoundary(DateTime time) {
+			return time.hourOfDay().roundFloorCopy().plusHours(1);
+		}
+	},
+
+	/** Rotates at midnight. */
+	DAILY {
+		@Override
+		public DateTime nextBoundary(DateTime time) {
+			return time.withTimeAtStartOfDay().plusDays(1);
+		}
+	};
+
+	/**
+	 * @param time
+	 *            the current time. Must not be null.
+	 * @return the first boundary after the specified time. Never null.
+	 */
+	public abstract DateTime nextBoundary(DateTime time);
+}
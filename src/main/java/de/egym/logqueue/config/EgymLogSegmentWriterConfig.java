@@ -0,0 +1,94 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import java.io.File;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the {@link de.egym.logqueue.writer.EgymLogMappedSegmentWriter} and the
+ * {@link de.egym.logqueue.writer.EgymLogMappedSegmentByteWriter}. Bind an instance in your Guice module:
+ *
+ * <pre>
+ * bind(EgymLogSegmentWriterConfig.class).toInstance(EgymLogSegmentWriterConfig.toDirectory(new File(&quot;/var/log/app&quot;)));
+ * </pre>
+ */
+@Immutable
+public class EgymLogSegmentWriterConfig {
+	private static final String DEFAULT_FILE_PREFIX = "egym-log";
+
+	private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/** The directory the segment files are created in. */
+	private final File directory;
+
+	/** The name of each segment file starts with this prefix. */
+	private final String filePrefix;
+
+	/** The number of bytes pre-allocated for each segment file. */
+	private final int segmentSize;
+
+	private EgymLogSegmentWriterConfig(File directory, String filePrefix, int segmentSize) {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory must not be null");
+		}
+		if (filePrefix == null || filePrefix.isEmpty()) {
+			throw new IllegalArgumentException("filePrefix must not be empty");
+		}
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("segmentSize must be positive but is: " + segmentSize);
+		}
+
+		this.directory = directory;
+		this.filePrefix = filePrefix;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * @param directory
+	 *            the directory the segment files are created in. Must not be null.
+	 * @return a config with default settings.
+	 */
+	public static EgymLogSegmentWriterConfig toDirectory(File directory) {
+		return new EgymLogSegmentWriterConfig(directory, DEFAULT_FILE_PREFIX, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param filePrefix
+	 *            the name of each segment file starts with this prefix. Must not be empty.
+	 * @return a copy of this config using the specified prefix.
+	 */
+	public EgymLogSegmentWriterConfig withFilePrefix(String filePrefix) {
+		return new EgymLogSegmentWriterConfig(directory, filePrefix, segmentSize);
+	}
+
+	/**
+	 * @param segmentSize
+	 *            the number of bytes pre-allocated for each segment file. Must be positive.
+	 * @return a copy of this config using the specified segment size.
+	 */
+	public EgymLogSegmentWriterConfig withSegmentSize(int segmentSize) {
+		return new EgymLogSegmentWriterConfig(directory, filePrefix, segmentSize);
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public String getFilePrefix() {
+		return filePrefix;
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogSegmentWriterConfig(" + "directory=" + directory + ", filePrefix=" + filePrefix + ", segmentSize=" + segmentSize + ')';
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Controls how the plain-text formatter renders stack traces. By default each stack trace is printed like
+ * {@link Throwable#printStackTrace()} does: Frames a cause has in common with the enclosing trace are omitted, all other frames are
+ * printed.
+ * <p>
+ * Long traces can be shortened with {@link #withMaxFramesPerCause(int)}, which caps the number of frame lines printed per throwable, and
+ * with {@link #withCollapsedPackages(String...)}, which replaces runs of consecutive frames from the given packages, typically framework
+ * internals, by a single line.
+ * </p>
+ * <p>
+ * With {@link #withDeduplication(long)} throwables are fingerprinted by their class and stack frames, including their causes. The first
+ * occurrence of a fingerprint within the time window is printed in full, preceded by the fingerprint id. Further occurrences only print
+ * the throwable's description and a reference to the fingerprint id with an occurrence counter. The fingerprints are kept in a cache of
+ * {@link #getFingerprintCacheSize()} entries, evicting the least recently used one.
+ * </p>
+ */
+@Immutable
+public class EgymLogStackTraceConfig {
+	private static final int DEFAULT_FINGERPRINT_CACHE_SIZE = 1024;
+
+	private static final EgymLogStackTraceConfig DEFAULTS = new EgymLogStackTraceConfig(0, DEFAULT_FINGERPRINT_CACHE_SIZE, 0,
+			Collections.<String> emptyList());
+
+	/** How long a stack trace is only referenced after it was printed in full. Zero means no deduplication. */
+	private final long deduplicationWindowMillis;
+
+	/** The maximum number of fingerprints remembered for deduplication. */
+	private final int fingerprintCacheSize;
+
+	/** The maximum number of frame lines printed per throwable. Zero means unlimited. */
+	private final int maxFramesPerCause;
+
+	/** Runs of consecutive frames whose class name starts with one of these prefixes are collapsed into a single line. */
+	private final List<String> collapsedPackages;
+
+	private EgymLogStackTraceConfig(long deduplicationWindowMillis, int fingerprintCacheSize, int maxFramesPerCause,
+			List<String> collapsedPackages) {
+		if (deduplicationWindowMillis < 0) {
+			throw new IllegalArgumentException("deduplicationWindowMillis must not be negative but is: " + deduplicationWindowMillis);
+		}
+		if (fingerprintCacheSize <= 0) {
+			throw new IllegalArgumentException("fingerprintCacheSize must be positive but is: " + fingerprintCacheSize);
+		}
+		if (maxFramesPerCause < 0) {
+			throw new IllegalArgumentException("maxFramesPerCause must not be negative but is: " + maxFramesPerCause);
+		}
+		for (String collapsedPackage : collapsedPackages) {
+			if (collapsedPackage == null || collapsedPackage.isEmpty()) {
+				throw new IllegalArgumentException("collapsedPackages must not contain null or empty entries");
+			}
+		}
+
+		this.deduplicationWindowMillis = deduplicationWindowMillis;
+		this.fingerprintCacheSize = fingerprintCacheSize;
+		this.maxFramesPerCause = maxFramesPerCause;
+		this.collapsedPackages = collapsedPackages;
+	}
+
+	/**
+	 * @return the default configuration, which prints every stack trace in full.
+	 */
+	public static EgymLogStackTraceConfig defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * @param deduplicationWindowMillis
+	 *            how long a stack trace is only referenced after it was printed in full, measured by the timestamps of the log records.
+	 *            Zero means no deduplication. Must not be negative.
+	 * @return a copy of this config using the specified deduplication window.
+	 */
+	public EgymLogStackTraceConfig withDeduplication(long deduplicationWindowMillis) {
+		return new EgymLogStackTraceConfig(deduplicationWindowMillis, fingerprintCacheSize, maxFramesPerCause, collapsedPackages);
+	}
+
+	/**
+	 * @param fingerprintCacheSize
+	 *            the maximum number of fingerprints remembered for deduplication. Must be positive.
+	 * @return a copy of this config using the specified cache size.
+	 */
+	public EgymLogStackTraceConfig withFingerprintCacheSize(int fingerprintCacheSize) {
+		return new EgymLogStackTraceConfig(deduplicationWindowMillis, fingerprintCacheSize, maxFramesPerCause, collapsedPackages);
+	}
+
+	/**
+	 * @param maxFramesPerCause
+	 *            the maximum number of frame lines printed for each throwable of the cause chain. The remaining frames are summarized in
+	 *            a single line. Zero means unlimited. Must not be negative.
+	 * @return a copy of this config using the specified frame limit.
+	 */
+	public EgymLogStackTraceConfig withMaxFramesPerCause(int maxFramesPerCause) {
+		return new EgymLogStackTraceConfig(deduplicationWindowMillis, fingerprintCacheSize, maxFramesPerCause, collapsedPackages);
+	}
+
+	/**
+	 * @param collapsedPackages
+	 *            package or class name prefixes, e.g. "org.springframework.". Runs of at least two consecutive frames whose class name
+	 *            starts with one of the prefixes are printed as a single line. Must not be null or contain null or empty entries.
+	 * @return a copy of this config using the specified package prefixes.
+	 */
+	public EgymLogStackTraceConfig withCollapsedPackages(String... collapsedPackages) {
+		if (collapsedPackages == null) {
+			throw new IllegalArgumentException("collapsedPackages must not be null");
+		}
+		return new EgymLogStackTraceConfig(deduplicationWindowMillis, fingerprintCacheSize, maxFramesPerCause,
+				Collections.unmodifiableList(Arrays.asList(collapsedPackages.clone())));
+	}
+
+	public long getDeduplicationWindowMillis() {
+		return deduplicationWindowMillis;
+	}
+
+	public int getFingerprintCacheSize() {
+		return fingerprintCacheSize;
+	}
+
+	public int getMaxFramesPerCause() {
+		return maxFramesPerCause;
+	}
+
+	/**
+	 * @return the package prefixes whose frames are collapsed. Never null, unmodifiable.
+	 */
+	public List<String> getCollapsedPackages() {
+		return collapsedPackages;
+	}
+
+	/**
+	 * @return True if repeated stack traces are replaced by a reference.
+	 */
+	public boolean isDeduplicationEnabled() {
+		return deduplicationWindowMillis > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogStackTraceConfig(" + "deduplicationWindowMillis=" + deduplicationWindowMillis + ", fingerprintCacheSize="
+				+ fingerprintCacheSize + ", maxFramesPerCause=" + maxFramesPerCause + ", collapsedPackages=" + collapsedPackages + ')';
+	}
+}
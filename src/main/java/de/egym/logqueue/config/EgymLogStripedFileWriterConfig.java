@@ -0,0 +1,69 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.config;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Configures the {@link de.egym.logqueue.writer.EgymLogStripedFileWriter}. Stripe <code>i</code> is written to the configured file name
+ * with the suffix <code>.i</code>, all other settings apply to each stripe. Bind an instance in your Guice module:
+ *
+ * <pre>
+ * bind(EgymLogStripedFileWriterConfig.class).toInstance(
+ * 		EgymLogStripedFileWriterConfig.of(EgymLogFileWriterConfig.toFile(new File(&quot;/var/log/app.log&quot;))).withStripes(8));
+ * </pre>
+ */
+@Immutable
+public class EgymLogStripedFileWriterConfig {
+	/** The settings of each stripe. The stripe index is appended to its file name. */
+	private final EgymLogFileWriterConfig fileWriterConfig;
+
+	/** The number of stripes. */
+	private final int stripes;
+
+	private EgymLogStripedFileWriterConfig(EgymLogFileWriterConfig fileWriterConfig, int stripes) {
+		if (fileWriterConfig == null) {
+			throw new IllegalArgumentException("fileWriterConfig must not be null");
+		}
+		if (stripes <= 0) {
+			throw new IllegalArgumentException("stripes must be positive but is: " + stripes);
+		}
+
+		this.fileWriterConfig = fileWriterConfig;
+		this.stripes = stripes;
+	}
+
+	/**
+	 * @param fileWriterConfig
+	 *            the settings of each stripe. The stripe index is appended to its file name. Must not be null.
+	 * @return a config with one stripe per available processor.
+	 */
+	public static EgymLogStripedFileWriterConfig of(EgymLogFileWriterConfig fileWriterConfig) {
+		return new EgymLogStripedFileWriterConfig(fileWriterConfig, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of stripes. Must be positive.
+	 * @return a copy of this config using the specified number of stripes.
+	 */
+	public EgymLogStripedFileWriterConfig withStripes(int stripes) {
+		return new EgymLogStripedFileWriterConfig(fileWriterConfig, stripes);
+	}
+
+	public EgymLogFileWriterConfig getFileWriterConfig() {
+		return fileWriterConfig;
+	}
+
+	public int getStripes() {
+		return stripes;
+	}
+
+	@Override
+	public String toString() {
+		return "EgymLogStripedFileWriterConfig(" + "fileWriterConfig=" + fileWriterConfig + ", stripes=" + stripes + ')';
+	}
+}
@@ -9,13 +9,16 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.commons.lang.exception.ExceptionUtils;
+import net.jcip.annotations.Immutable;
+
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
 import de.egym.logqueue.EgymLogLevel;
 import de.egym.logqueue.EgymLogRecord;
+import de.egym.logqueue.config.EgymLogStackTraceConfig;
 
 /**
  * Utilities used to format log messages.
@@ -23,8 +26,17 @@ import de.egym.logqueue.EgymLogRecord;
 public class EgymLogFormatterUtil {
 	private static final DateTimeFormatter FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
+	/** Renders everything of {@link #FORMAT} except the millis digits. */
+	private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss.");
+
+	/** The most recently rendered second. Records are formatted roughly in time order, so consecutive records mostly hit it. */
+	private static volatile RenderedSecond renderedSecond = new RenderedSecond(Long.MIN_VALUE, DateTimeZone.getDefault(), "");
+
 	private static final Map<EgymLogLevel, String> logLevelLabels = createLogLevelLabels();
 
+	/** Prints every stack trace in full, it does not keep any state. */
+	private static final EgymLogStackTraceRenderer FULL_STACK_TRACES = new EgymLogStackTraceRenderer(EgymLogStackTraceConfig.defaults());
+
 	private EgymLogFormatterUtil() {
 		throw new AssertionError("Do not instantiate");
 	}
@@ -40,17 +52,55 @@ public class EgymLogFormatterUtil {
 	 * @return the formatted log message.
 	 */
 	public static String formatLogRecord(final EgymLogRecord logRecord, final String indentation) {
+		final StringBuilder str = new StringBuilder();
+		formatLogRecord(logRecord, indentation, str);
+		return str.toString();
+	}
+
+	/**
+	 * Like {@link #formatLogRecord(EgymLogRecord, String)}, but appends the formatted log message to the given buffer.
+	 *
+	 * @param logRecord
+	 *            the record to format. Must not be null.
+	 * @param indentation
+	 *            The indentation to use. Must not be null.
+	 * @param str
+	 *            the buffer to append to. Must not be null.
+	 */
+	public static void formatLogRecord(final EgymLogRecord logRecord, final String indentation, final StringBuilder str) {
+		formatLogRecord(logRecord, indentation, FULL_STACK_TRACES, str);
+	}
+
+	/**
+	 * Like {@link #formatLogRecord(EgymLogRecord, String, StringBuilder)}, but renders the stack trace with the given renderer, e.g. to
+	 * deduplicate repeated stack traces.
+	 *
+	 * @param logRecord
+	 *            the record to format. Must not be null.
+	 * @param indentation
+	 *            The indentation to use. Must not be null.
+	 * @param stackTraceRenderer
+	 *            renders the stack trace of the record's throwable. Must not be null.
+	 * @param str
+	 *            the buffer to append to. Must not be null.
+	 */
+	public static void formatLogRecord(final EgymLogRecord logRecord, final String indentation,
+			final EgymLogStackTraceRenderer stackTraceRenderer, final StringBuilder str) {
 		if (logRecord == null) {
 			throw new IllegalArgumentException("logRecord must not be null");
 		}
 		if (indentation == null) {
 			throw new IllegalArgumentException("indentation must not be null");
 		}
-
-		final StringBuilder str = new StringBuilder();
+		if (stackTraceRenderer == null) {
+			throw new IllegalArgumentException("stackTraceRenderer must not be null");
+		}
+		if (str == null) {
+			throw new IllegalArgumentException("str must not be null");
+		}
 
 		str.append(indentation);
-		str.append(formatTimestamp(logRecord.getTimestamp()));
+		appendTimestamp(logRecord.getTimestampMillis(), str);
 		str.append(" ");
 		str.append(formatLogLevel(logRecord.getLogLevel()));
 
@@ -61,32 +111,37 @@ public class EgymLogFormatterUtil {
 
 		str.append(": ");
 
-		if (logRecord.getMessage() != null) {
-			final String[] lines = logRecord.getMessage().split("\n");
-			for (int i = 0; i < lines.length; i++) {
-				String line = lines[i];
-				if (i > 0) {
-					str.append('\n');
-					str.append(indentation);
-					str.append(indentation);
-				}
-				str.append(line);
+		final String message = logRecord.getMessage();
+		if (message != null) {
+			// Trailing line breaks are not printed.
+			int end = message.length();
+			while (end > 0 && message.charAt(end - 1) == '\n') {
+				end--;
 			}
+			appendIndented(message, end, indentation, str);
 		}
 
 		if (logRecord.getThrowable() != null) {
-			final String stackTrace = ExceptionUtils.getFullStackTrace(logRecord.getThrowable());
-			final String[] lines = stackTrace.split("\n");
-
-			for (String line : lines) {
-				str.append('\n');
-				str.append(indentation);
-				str.append(indentation);
-				str.append(line);
-			}
+			stackTraceRenderer.appendStackTrace(logRecord.getThrowable(), logRecord.getTimestampMillis(), indentation, str);
 		}
+	}
 
-		return str.toString();
+	static void appendIndented(String text, String indentation, StringBuilder str) {
+		appendIndented(text, text.length(), indentation, str);
+	}
+
+	/**
+	 * Copies the text up to the specified end and inserts twice the indentation after each line break, in a single pass. Runs of
+	 * characters without line breaks are copied in one call.
+	 */
+	static void appendIndented(String text, int end, String indentation, StringBuilder str) {
+		int start = 0;
+		int lineBreak;
+		while ((lineBreak = text.indexOf('\n', start)) >= 0 && lineBreak < end) {
+			str.append(text, start, lineBreak + 1).append(indentation).append(indentation);
+			start = lineBreak + 1;
+		}
+		str.append(text, start, end);
 	}
 
 	/**
@@ -184,4 +239,69 @@ public class EgymLogFormatterUtil {
 		}
 		return FORMAT.print(timestamp);
 	}
+
+	/**
+	 * Formats the given timestamp in the default time zone.
+	 *
+	 * @param timestampMillis
+	 *            the timestamp in milliseconds since the epoch.
+	 * @return the string representation of the timestamp.
+	 */
+	public static String formatTimestamp(long timestampMillis) {
+		final StringBuilder str = new StringBuilder(23);
+		appendTimestamp(timestampMillis, str);
+		return str.toString();
+	}
+
+	/**
+	 * Formats the given timestamp in the default time zone and appends it to the given buffer. Like
+	 * {@link #formatTimestamp(long)}, but only renders the date and time once per second and then just appends the millis digits.
+	 *
+	 * @param timestampMillis
+	 *            the timestamp in milliseconds since the epoch.
+	 * @param str
+	 *            the buffer to append to. Must not be null.
+	 */
+	public static void appendTimestamp(long timestampMillis, StringBuilder str) {
+		if (str == null) {
+			throw new IllegalArgumentException("str must not be null");
+		}
+
+		// Floor modulo, so timestamps before the epoch are rounded down to their second as well.
+		final int millis = (int) ((timestampMillis % 1000 + 1000) % 1000);
+		final long secondMillis = timestampMillis - millis;
+		final DateTimeZone zone = DateTimeZone.getDefault();
+
+		RenderedSecond second = renderedSecond;
+		if (second.secondMillis != secondMillis || !second.zone.equals(zone)) {
+			second = new RenderedSecond(secondMillis, zone, SECOND_FORMAT.withZone(zone).print(secondMillis));
+			renderedSecond = second;
+		}
+
+		str.append(second.prefix);
+		str.append((char) ('0' + millis / 100));
+		str.append((char) ('0' + millis / 10 % 10));
+		str.append((char) ('0' + millis % 10));
+	}
+
+	/**
+	 * A second rendered with {@link #SECOND_FORMAT}. Immutable, so it can be shared between threads through a volatile field.
+	 */
+	@Immutable
+	private static class RenderedSecond {
+		/** The start of the second, in milliseconds since the epoch. */
+		final long secondMillis;
+
+		/** The time zone the second was rendered in. */
+		final DateTimeZone zone;
+
+		/** The rendered date and time up to and including the decimal point. */
+		final String prefix;
+
+		RenderedSecond(long secondMillis, DateTimeZone zone, String prefix) {
+			this.secondMillis = secondMillis;
+			this.zone = zone;
+			this.prefix = prefix;
+		}
+	}
 }
@@ -0,0 +1,180 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.formatter;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.EgymLogLevels;
+import de.egym.logqueue.EgymLogRecord;
+import de.egym.logqueue.EgymLogRequestRecord;
+import de.egym.logqueue.EgymLogThreadLocalBuffer;
+import de.egym.logqueue.config.EgymLogStackTraceConfig;
+
+/**
+ * Produces one JSON object per request block, on a single line, for log pipelines which ingest JSON. The log records are filtered like
+ * in {@link EgymLogPlainTextFormatter}:
+ *
+ * <pre>
+ * {"timestampMillis":1386955422073,"maxLevel":"WARN","audit":true,"droppedRecords":0,"records":[
+ *   {"timestampMillis":1386955422080,"level":"WARN","logger":"com.example.Service","message":"...","stackTrace":"..."}]}
+ * </pre>
+ * <p>
+ * Timestamps are written as milliseconds since the epoch. "logger", "message" and "stackTrace" are omitted if not present. Strings are
+ * escaped character by character directly into the output buffer, so formatting a block without throwables does not allocate when
+ * streaming into the writer, see {@link EgymLogStreamingFormatter}. {@link #format(EgymLogRequestRecord)} uses a reused per-thread
+ * buffer and only allocates the resulting string.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogJsonFormatter implements EgymLogStreamingFormatter<EgymLogRequestRecord> {
+	/** Prints stack traces in full, without deduplication, so it holds no state. */
+	private static final EgymLogStackTraceRenderer STACK_TRACE_RENDERER = new EgymLogStackTraceRenderer(EgymLogStackTraceConfig.defaults());
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final EgymLogThreadLocalBuffer buffer = new EgymLogThreadLocalBuffer();
+
+	/** Stack traces are rendered into a buffer of their own, which is then escaped into the output. */
+	private final EgymLogThreadLocalBuffer stackTraceBuffer = new EgymLogThreadLocalBuffer();
+
+	@Override
+	public String format(EgymLogRequestRecord requestRecord) {
+		final StringBuilder str = buffer.acquire();
+		try {
+			formatTo(requestRecord, str);
+			return str.toString();
+		} finally {
+			buffer.release(str);
+		}
+	}
+
+	@Override
+	public boolean formatTo(EgymLogRequestRecord requestRecord, StringBuilder str) {
+		if (requestRecord == null) {
+			throw new IllegalArgumentException("requestLogRecord must not be null");
+		}
+		if (str == null) {
+			throw new IllegalArgumentException("str must not be null");
+		}
+
+		final boolean audit = EgymLogLevels.isAudit(requestRecord);
+		str.append("{\"timestampMillis\":").append(requestRecord.getTimestampMillis());
+		str.append(",\"maxLevel\":\"").append(requestRecord.getMaxLogLevel().name());
+		str.append("\",\"audit\":").append(audit);
+		str.append(",\"droppedRecords\":").append(requestRecord.getDroppedRecordCount());
+		str.append(",\"records\":[");
+
+		// The iterator streams spilled records sequentially instead of seeking to each one.
+		boolean first = true;
+		for (EgymLogRecord logRecord : requestRecord.getLogRecords()) {
+			if (audit || EgymLogLevels.hasSufficientLogLevel(logRecord, EgymLogLevels.getThresholdRequest())) {
+				if (!first) {
+					str.append(',');
+				}
+				formatLogRecord(logRecord, str);
+				first = false;
+			}
+		}
+
+		str.append("]}");
+		return true;
+	}
+
+	private void formatLogRecord(EgymLogRecord logRecord, StringBuilder str) {
+		str.append("{\"timestampMillis\":").append(logRecord.getTimestampMillis());
+		str.append(",\"level\":\"").append(logRecord.getLogLevel().name()).append('"');
+
+		if (logRecord.getSource() != null) {
+			str.append(",\"logger\":\"");
+			appendEscaped(logRecord.getSource().getName(), str);
+			str.append('"');
+		}
+
+		final String message = logRecord.getMessage();
+		if (message != null) {
+			str.append(",\"message\":\"");
+			appendEscaped(message, str);
+			str.append('"');
+		}
+
+		if (logRecord.getThrowable() != null) {
+			str.append(",\"stackTrace\":\"");
+			appendStackTrace(logRecord.getThrowable(), logRecord.getTimestampMillis(), str);
+			str.append('"');
+		}
+
+		str.append('}');
+	}
+
+	/**
+	 * Appends the stack trace in the format of {@link Throwable#printStackTrace()}, including suppressed exceptions and the elision of
+	 * frames in common with the enclosing trace, escaped as JSON string content. See {@link EgymLogStackTraceRenderer}.
+	 */
+	private void appendStackTrace(Throwable throwable, long timestampMillis, StringBuilder str) {
+		final StringBuilder stackTrace = stackTraceBuffer.acquire();
+		try {
+			STACK_TRACE_RENDERER.appendStackTrace(throwable, timestampMillis, "", stackTrace);
+			// The renderer starts with a line break.
+			stackTrace.deleteCharAt(0);
+			appendEscaped(stackTrace, str);
+		} finally {
+			stackTraceBuffer.release(stackTrace);
+		}
+	}
+
+	/**
+	 * Appends the characters as JSON string content. Runs of characters which need no escaping are copied in one call.
+	 *
+	 * @param chars
+	 *            the characters to escape. Must not be null.
+	 * @param str
+	 *            the buffer to append to. Must not be null.
+	 */
+	static void appendEscaped(CharSequence chars, StringBuilder str) {
+		final int length = chars.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = chars.charAt(i);
+			if (c >= 0x20 && c != '"' && c != '\\' && c != 0x2028 && c != 0x2029) {
+				continue;
+			}
+
+			str.append(chars, start, i);
+			start = i + 1;
+			switch (c) {
+			case '"':
+				str.append("\\\"");
+				break;
+			case '\\':
+				str.append("\\\\");
+				break;
+			case '\n':
+				str.append("\\n");
+				break;
+			case '\r':
+				str.append("\\r");
+				break;
+			case '\t':
+				str.append("\\t");
+				break;
+			case '\b':
+				str.append("\\b");
+				break;
+			case '\f':
+				str.append("\\f");
+				break;
+			default:
+				// Other control characters, and the line separators which are not allowed in JavaScript string literals.
+				str.append("\\u").append(HEX_DIGITS[c >> 12 & 0xf]).append(HEX_DIGITS[c >> 8 & 0xf]).append(HEX_DIGITS[c >> 4 & 0xf])
+						.append(HEX_DIGITS[c & 0xf]);
+			}
+		}
+		str.append(chars, start, length);
+	}
+}
@@ -9,41 +9,95 @@ import static de.egym.logqueue.formatter.EgymLogFormatterUtil.*;
 
 import net.jcip.annotations.ThreadSafe;
 
-import com.google.inject.Singleton;
+import com.google.inject.Inject;
 
-import de.egym.logqueue.EgymLogLevel;
 import de.egym.logqueue.EgymLogLevels;
 import de.egym.logqueue.EgymLogRecord;
 import de.egym.logqueue.EgymLogRequestRecord;
+import de.egym.logqueue.config.EgymLogQueueConfig;
 
 /**
- * Produces human readable plain-text log output. All log records of a request are printed as a block, indented with tabs.
+ * Produces human readable plain-text log output. All log records of a request are printed as a block, indented with tabs. Supports
+ * streaming into the writer, see {@link EgymLogStreamingFormatter}. Stack traces are rendered as configured by
+ * {@link EgymLogQueueConfig#withStackTraces(de.egym.logqueue.config.EgymLogStackTraceConfig)}.
+ * <p>
+ * Deliberately not a singleton: Each pipeline gets its own instance, and with it its own fingerprints of deduplicated stack traces, so a
+ * stack trace is printed in full in each output before it is only referenced there. Do not bind this class in singleton scope if stack
+ * trace deduplication is enabled.
+ * </p>
  */
-@Singleton
 @ThreadSafe
-public class EgymLogPlainTextFormatter implements EgymLogFormatter<EgymLogRequestRecord, String> {
+public class EgymLogPlainTextFormatter implements EgymLogStreamingFormatter<EgymLogRequestRecord> {
+	/** Used to pre-size the output buffer. */
+	private static final int ESTIMATED_LINE_LENGTH = 128;
+
+	private final EgymLogStackTraceRenderer stackTraceRenderer;
+
+	/**
+	 * Uses the default configuration, which prints every stack trace in full.
+	 */
+	public EgymLogPlainTextFormatter() {
+		this(EgymLogQueueConfig.defaults());
+	}
+
+	/**
+	 * @param config
+	 *            the log queue configuration. Must not be null.
+	 */
+	@Inject
+	public EgymLogPlainTextFormatter(EgymLogQueueConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.stackTraceRenderer = new EgymLogStackTraceRenderer(config.getStackTraceConfig());
+	}
+
 	@Override
 	public String format(EgymLogRequestRecord requestRecord) {
+		final StringBuilder str = new StringBuilder(estimateLength(requestRecord));
+		formatTo(requestRecord, str);
+		return str.toString();
+	}
+
+	@Override
+	public boolean formatTo(EgymLogRequestRecord requestRecord, StringBuilder str) {
 		if (requestRecord == null) {
 			throw new IllegalArgumentException("requestLogRecord must not be null");
 		}
-
-		final EgymLogLevel maxLogLevel = EgymLogLevels.calcMaxLogLevel(requestRecord);
-		final boolean audit = EgymLogLevels.isSufficientLogLevel(maxLogLevel, EgymLogLevels.getThresholdRequestAudit());
-
-		if (requestRecord.getLogRecords() == null || requestRecord.getLogRecords().isEmpty()) {
-			return "";
+		if (str == null) {
+			throw new IllegalArgumentException("str must not be null");
 		}
 
-		final StringBuilder str = new StringBuilder();
-
+		final boolean audit = EgymLogLevels.isAudit(requestRecord);
+		boolean printed = false;
 		for (EgymLogRecord logRecord : requestRecord.getLogRecords()) {
 			if (audit || EgymLogLevels.hasSufficientLogLevel(logRecord, EgymLogLevels.getThresholdRequest())) {
-				str.append(formatLogRecord(logRecord, "\t"));
-				str.append("\n");
+				formatLogRecord(logRecord, "\t", stackTraceRenderer, str);
+				str.append('\n');
+				printed = true;
 			}
 		}
 
-		return str.toString();
+		// A request which printed nothing does not get a lone notice about records nobody would have seen anyway.
+		if (requestRecord.getDroppedRecordCount() > 0 && (audit || printed)) {
+			str.append("\t... ").append(requestRecord.getDroppedRecordCount())
+					.append(" log records dropped because the request exceeded its log limits\n");
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the estimated length of the formatted request record, used to pre-size the output buffer.
+	 */
+	private static int estimateLength(EgymLogRequestRecord requestRecord) {
+		if (requestRecord == null) {
+			throw new IllegalArgumentException("requestLogRecord must not be null");
+		}
+
+		final int outputRecordCount = EgymLogLevels.isAudit(requestRecord) ? requestRecord.getLogRecords().size() : requestRecord
+				.getLogRecordCountAtLeast(EgymLogLevels.getThresholdRequest());
+		return outputRecordCount * ESTIMATED_LINE_LENGTH;
 	}
 }
@@ -0,0 +1,307 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.formatter;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import de.egym.logqueue.config.EgymLogStackTraceConfig;
+
+/**
+ * Renders stack traces in the format of {@link Throwable#printStackTrace()}, indented like the other lines of a log record. If
+ * deduplication is enabled in the {@link EgymLogStackTraceConfig}, the renderer remembers the fingerprints of the stack traces it has
+ * printed, so each instance should serve a single output:
+ *
+ * <pre>
+ *     Stack trace 9f3c2a4be01d7c55:
+ *     java.lang.IllegalStateException: Connection pool exhausted
+ *     	at com.example.Dao.load(Dao.java:42)
+ *     ...
+ *     java.lang.IllegalStateException: Connection pool exhausted
+ *     	... stack trace 9f3c2a4be01d7c55, occurrence 2
+ * </pre>
+ */
+@ThreadSafe
+public class EgymLogStackTraceRenderer {
+	private static final StackTraceElement[] NO_FRAMES = new StackTraceElement[0];
+
+	/** Guards against cycles in the cause chain when fingerprinting. */
+	private static final int MAX_FINGERPRINTED_CAUSES = 32;
+
+	/** The 64 bit FNV prime, used to mix the hash codes into the fingerprint. */
+	private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final EgymLogStackTraceConfig config;
+
+	/** The most recently seen fingerprints, in access order, so the least recently used one is evicted first. */
+	@GuardedBy("this")
+	private final Map<Long, Occurrences> fingerprints;
+
+	/**
+	 * @param config
+	 *            the stack trace configuration. Must not be null.
+	 */
+	public EgymLogStackTraceRenderer(EgymLogStackTraceConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.config = config;
+		final int fingerprintCacheSize = config.getFingerprintCacheSize();
+		this.fingerprints = new LinkedHashMap<Long, Occurrences>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Occurrences> eldest) {
+				return size() > fingerprintCacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Appends the stack trace, starting with a line break. Each line is indented by twice the indentation.
+	 *
+	 * @param throwable
+	 *            the throwable to print. Must not be null.
+	 * @param timestampMillis
+	 *            the timestamp of the log record, used for the deduplication window.
+	 * @param indentation
+	 *            the indentation to use. Must not be null.
+	 * @param str
+	 *            the buffer to append to. Must not be null.
+	 */
+	public void appendStackTrace(Throwable throwable, long timestampMillis, String indentation, StringBuilder str) {
+		if (throwable == null) {
+			throw new IllegalArgumentException("throwable must not be null");
+		}
+		if (indentation == null) {
+			throw new IllegalArgumentException("indentation must not be null");
+		}
+		if (str == null) {
+			throw new IllegalArgumentException("str must not be null");
+		}
+
+		if (config.isDeduplicationEnabled()) {
+			final long fingerprint = fingerprint(throwable);
+			final int occurrence = countOccurrence(fingerprint, timestampMillis);
+			if (occurrence > 1) {
+				appendLineStart(0, indentation, str);
+				EgymLogFormatterUtil.appendIndented(throwable.toString(), indentation, str);
+				appendLineStart(0, indentation, str).append("\t... stack trace ");
+				appendFingerprint(fingerprint, str);
+				str.append(", occurrence ").append(occurrence);
+				return;
+			}
+
+			appendLineStart(0, indentation, str).append("Stack trace ");
+			appendFingerprint(fingerprint, str);
+			str.append(':');
+		}
+
+		final Set<Throwable> printed = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+		appendStackTrace(throwable, NO_FRAMES, "", 0, indentation, printed, str);
+	}
+
+	/**
+	 * Counts an occurrence of the fingerprint. Starts a new window if the fingerprint is unknown or its window has passed.
+	 *
+	 * @return the number of occurrences within the current window, including this one.
+	 */
+	private synchronized int countOccurrence(long fingerprint, long timestampMillis) {
+		final Occurrences occurrences = fingerprints.get(fingerprint);
+		if (occurrences == null || timestampMillis - occurrences.windowStartMillis >= config.getDeduplicationWindowMillis()) {
+			fingerprints.put(fingerprint, new Occurrences(timestampMillis));
+			return 1;
+		}
+		return ++occurrences.count;
+	}
+
+	/**
+	 * @return a hash of the class names and stack frames of the throwable and its causes. The message is not included, so throwables
+	 *         thrown at the same place with different messages share a fingerprint. Throwables decoded from spill files or off-heap buffers
+	 *         share the fingerprint of their originals, see {@link #getPrintedClassName(Throwable)}.
+	 */
+	static long fingerprint(Throwable throwable) {
+		long fingerprint = 0xcbf29ce484222325L;
+		Throwable t = throwable;
+		for (int depth = 0; t != null && depth < MAX_FINGERPRINTED_CAUSES; depth++) {
+			fingerprint = (fingerprint ^ getPrintedClassName(t).hashCode()) * FINGERPRINT_PRIME;
+			for (StackTraceElement element : t.getStackTrace()) {
+				fingerprint = (fingerprint ^ element.getClassName().hashCode()) * FINGERPRINT_PRIME;
+				fingerprint = (fingerprint ^ element.getMethodName().hashCode()) * FINGERPRINT_PRIME;
+				fingerprint = (fingerprint ^ element.getLineNumber()) * FINGERPRINT_PRIME;
+			}
+			t = t.getCause();
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * @return the class name at the start of {@link Throwable#toString()}, up to the colon in front of the message. The stand-ins for
+	 *         decoded throwables are of a different class than their originals, but print the original class name.
+	 */
+	private static String getPrintedClassName(Throwable t) {
+		final String description = t.toString();
+		final int colon = description.indexOf(':');
+		return colon < 0 ? description : description.substring(0, colon);
+	}
+
+	private static void appendFingerprint(long fingerprint, StringBuilder str) {
+		for (int shift = 60; shift >= 0; shift -= 4) {
+			str.append(HEX_DIGITS[(int) (fingerprint >>> shift) & 0xf]);
+		}
+	}
+
+	/**
+	 * Appends the stack trace of the throwable and its suppressed exceptions and causes in the format of
+	 * {@link Throwable#printStackTrace()}, one line per frame, each line indented by twice the indentation. Walks the stack trace
+	 * elements directly instead of printing into an intermediate string. The frames are shortened as configured, see
+	 * {@link #appendFrames(StackTraceElement[], int, int, String, StringBuilder)}.
+	 *
+	 * @param throwable
+	 *            the throwable to print.
+	 * @param enclosingTrace
+	 *            the stack trace of the enclosing throwable. Frames in common with it are not printed.
+	 * @param caption
+	 *            printed in front of the throwable, e.g. "Caused by: ".
+	 * @param nesting
+	 *            the number of tabs in front of each line, increased for suppressed exceptions.
+	 * @param printed
+	 *            the throwables printed so far, to detect circular references.
+	 */
+	private void appendStackTrace(Throwable throwable, StackTraceElement[] enclosingTrace, String caption, int nesting,
+			String indentation, Set<Throwable> printed, StringBuilder str) {
+		if (!printed.add(throwable)) {
+			appendLineStart(nesting, indentation, str).append(caption).append("[CIRCULAR REFERENCE:");
+			EgymLogFormatterUtil.appendIndented(throwable.toString(), indentation, str);
+			str.append(']');
+			return;
+		}
+
+		final StackTraceElement[] trace = throwable.getStackTrace();
+		int m = trace.length - 1;
+		int n = enclosingTrace.length - 1;
+		while (m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n])) {
+			m--;
+			n--;
+		}
+		final int framesInCommon = trace.length - 1 - m;
+
+		appendLineStart(nesting, indentation, str).append(caption);
+		EgymLogFormatterUtil.appendIndented(throwable.toString(), indentation, str);
+		appendFrames(trace, m + 1, nesting, indentation, str);
+		if (framesInCommon != 0) {
+			appendLineStart(nesting, indentation, str).append("\t... ").append(framesInCommon).append(" more");
+		}
+
+		for (Throwable suppressed : throwable.getSuppressed()) {
+			appendStackTrace(suppressed, trace, "Suppressed: ", nesting + 1, indentation, printed, str);
+		}
+
+		final Throwable cause = throwable.getCause();
+		if (cause != null) {
+			appendStackTrace(cause, trace, "Caused by: ", nesting, indentation, printed, str);
+		}
+	}
+
+	/**
+	 * Appends the first frames of the trace, one line per frame. Runs of at least two consecutive frames from the collapsed packages are
+	 * printed as a single line. Once the configured number of lines is reached, the remaining frames are summarized in a single line.
+	 *
+	 * @param frameCount
+	 *            the number of frames to print, ie. without the frames in common with the enclosing trace.
+	 */
+	private void appendFrames(StackTraceElement[] trace, int frameCount, int nesting, String indentation, StringBuilder str) {
+		final int maxLines = config.getMaxFramesPerCause();
+		int lines = 0;
+		int i = 0;
+		while (i < frameCount) {
+			if (maxLines > 0 && lines == maxLines) {
+				appendLineStart(nesting, indentation, str).append("\t... ").append(frameCount - i).append(" frames truncated");
+				return;
+			}
+
+			int runEnd = i;
+			while (runEnd < frameCount && isCollapsed(trace[runEnd])) {
+				runEnd++;
+			}
+
+			if (runEnd - i > 1) {
+				appendLineStart(nesting, indentation, str).append("\t... ").append(runEnd - i).append(" frames collapsed");
+				i = runEnd;
+			} else {
+				appendLineStart(nesting, indentation, str).append("\tat ");
+				appendStackTraceElement(trace[i], str);
+				i++;
+			}
+			lines++;
+		}
+	}
+
+	private boolean isCollapsed(StackTraceElement element) {
+		final List<String> collapsedPackages = config.getCollapsedPackages();
+		for (int i = 0; i < collapsedPackages.size(); i++) {
+			if (element.getClassName().startsWith(collapsedPackages.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Appends the element like {@link StackTraceElement#toString()} does, without creating the string.
+	 */
+	private static void appendStackTraceElement(StackTraceElement element, StringBuilder str) {
+		str.append(element.getClassName()).append('.').append(element.getMethodName());
+		if (element.isNativeMethod()) {
+			str.append("(Native Method)");
+		} else if (element.getFileName() == null) {
+			str.append("(Unknown Source)");
+		} else {
+			str.append('(').append(element.getFileName());
+			if (element.getLineNumber() >= 0) {
+				str.append(':').append(element.getLineNumber());
+			}
+			str.append(')');
+		}
+	}
+
+	/**
+	 * Starts a new line of a stack trace: Appends a line break, twice the indentation and the specified number of tabs.
+	 */
+	private static StringBuilder appendLineStart(int nesting, String indentation, StringBuilder str) {
+		str.append('\n').append(indentation).append(indentation);
+		for (int i = 0; i < nesting; i++) {
+			str.append('\t');
+		}
+		return str;
+	}
+
+	/**
+	 * The occurrences of a fingerprint within its current deduplication window.
+	 */
+	@NotThreadSafe
+	private static class Occurrences {
+		/** The timestamp of the log record whose stack trace was printed in full. */
+		final long windowStartMillis;
+
+		int count = 1;
+
+		Occurrences(long windowStartMillis) {
+			this.windowStartMillis = windowStartMillis;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.formatter;
+
+import de.egym.logqueue.EgymLogRequestRecord;
+
+/**
+ * A formatter which can append its output to a caller provided buffer instead of returning a new string. If the writer of the pipeline
+ * is a {@link de.egym.logqueue.writer.EgymLogStreamingWriter}, the pipeline formats into a reused per-thread buffer and hands that buffer
+ * to the writer, so a request block reaches the writer's byte buffers without an intermediate string.
+ * <p>
+ * {@link #format(EgymLogRequestRecord)} must produce the same output as {@link #formatTo(EgymLogRequestRecord, StringBuilder)}.
+ * </p>
+ *
+ * @param <D>
+ *            the input type, ie. the decorated log record type.
+ */
+public interface EgymLogStreamingFormatter<D extends EgymLogRequestRecord> extends EgymLogFormatter<D, String> {
+	/**
+	 * Formats a decorated request record by appending to the given buffer.
+	 *
+	 * @param requestRecord
+	 *            the input. Must not be null.
+	 * @param str
+	 *            the buffer to append to. Must not be null.
+	 * @return true if the record was formatted, false if it was discarded. Nothing must be appended in the latter case.
+	 */
+	boolean formatTo(D requestRecord, StringBuilder str);
+}
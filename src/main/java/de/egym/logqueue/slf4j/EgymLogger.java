@@ -9,17 +9,17 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.Marker;
-import org.slf4j.helpers.MessageFormatter;
 
 import com.google.inject.Inject;
 
+import de.egym.logqueue.EgymLogClock;
 import de.egym.logqueue.EgymLogLevel;
 import de.egym.logqueue.EgymLogLevels;
 import de.egym.logqueue.EgymLogQueue;
 import de.egym.logqueue.EgymLogRecord;
+import de.egym.logqueue.EgymLogSystemClock;
 import de.egym.logqueue.formatter.EgymLogFormatterUtil;
 
 /**
@@ -39,6 +39,10 @@ public class EgymLogger implements Logger {
 	@Inject
 	static EgymLogQueue logQueue;
 
+	/** The time source used to timestamp log records. Statically injected by Guice. */
+	@Inject
+	static EgymLogClock clock = EgymLogSystemClock.getInstance();
+
 	/** The logger name. */
 	private final String name;
 
@@ -95,17 +99,17 @@ public class EgymLogger implements Logger {
 
 	@Override
 	public void trace(String format, Object arg) {
-		trace(format(format, arg));
+		enqueueFormatted(EgymLogLevel.TRACE, format, new Object[] { arg });
 	}
 
 	@Override
 	public void trace(String format, Object arg1, Object arg2) {
-		trace(format(format, arg1, arg2));
+		enqueueFormatted(EgymLogLevel.TRACE, format, new Object[] { arg1, arg2 });
 	}
 
 	@Override
 	public void trace(String format, Object... arguments) {
-		trace(format(format, arguments));
+		enqueueFormatted(EgymLogLevel.TRACE, format, arguments);
 	}
 
 	@Override
@@ -155,17 +159,17 @@ public class EgymLogger implements Logger {
 
 	@Override
 	public void debug(String format, Object arg) {
-		debug(format(format, arg));
+		enqueueFormatted(EgymLogLevel.DEBUG, format, new Object[] { arg });
 	}
 
 	@Override
 	public void debug(String format, Object arg1, Object arg2) {
-		debug(format(format, arg1, arg2));
+		enqueueFormatted(EgymLogLevel.DEBUG, format, new Object[] { arg1, arg2 });
 	}
 
 	@Override
 	public void debug(String format, Object... arguments) {
-		debug(format(format, arguments));
+		enqueueFormatted(EgymLogLevel.DEBUG, format, arguments);
 	}
 
 	@Override
@@ -215,17 +219,17 @@ public class EgymLogger implements Logger {
 
 	@Override
 	public void info(String format, Object arg) {
-		info(format(format, arg));
+		enqueueFormatted(EgymLogLevel.INFO, format, new Object[] { arg });
 	}
 
 	@Override
 	public void info(String format, Object arg1, Object arg2) {
-		info(format(format, arg1, arg2));
+		enqueueFormatted(EgymLogLevel.INFO, format, new Object[] { arg1, arg2 });
 	}
 
 	@Override
 	public void info(String format, Object... arguments) {
-		info(format(format, arguments));
+		enqueueFormatted(EgymLogLevel.INFO, format, arguments);
 	}
 
 	@Override
@@ -275,17 +279,17 @@ public class EgymLogger implements Logger {
 
 	@Override
 	public void warn(String format, Object arg) {
-		warn(format(format, arg));
+		enqueueFormatted(EgymLogLevel.WARN, format, new Object[] { arg });
 	}
 
 	@Override
 	public void warn(String format, Object... arguments) {
-		warn(format(format, arguments));
+		enqueueFormatted(EgymLogLevel.WARN, format, arguments);
 	}
 
 	@Override
 	public void warn(String format, Object arg1, Object arg2) {
-		warn(format(format, arg1, arg2));
+		enqueueFormatted(EgymLogLevel.WARN, format, new Object[] { arg1, arg2 });
 	}
 
 	@Override
@@ -335,17 +339,17 @@ public class EgymLogger implements Logger {
 
 	@Override
 	public void error(String format, Object arg) {
-		error(format(format, arg));
+		enqueueFormatted(EgymLogLevel.ERROR, format, new Object[] { arg });
 	}
 
 	@Override
 	public void error(String format, Object arg1, Object arg2) {
-		error(format(format, arg1, arg2));
+		enqueueFormatted(EgymLogLevel.ERROR, format, new Object[] { arg1, arg2 });
 	}
 
 	@Override
 	public void error(String format, Object... arguments) {
-		error(format(format, arguments));
+		enqueueFormatted(EgymLogLevel.ERROR, format, arguments);
 	}
 
 	@Override
@@ -415,8 +419,40 @@ public class EgymLogger implements Logger {
 			return;
 		}
 
-		final EgymLogRecord logRecord = new EgymLogRecord(DateTime.now(), this, logLevel, msg, t);
+		enqueue(new EgymLogRecord(clock.currentTimeMillis(), clock.nanoTime(), this, logLevel, msg, t));
+	}
 
+	/**
+	 * Enqueues the specified log message template and arguments. The message is not rendered here but only if a formatter actually emits
+	 * the log record.
+	 *
+	 * @param logLevel
+	 *            the log level. Must not be null.
+	 * @param format
+	 *            the format string / template. May be null.
+	 * @param arguments
+	 *            the arguments. May be null.
+	 */
+	void enqueueFormatted(EgymLogLevel logLevel, String format, Object[] arguments) {
+		if (logLevel == null) {
+			throw new IllegalArgumentException("logLevel must not be null");
+		}
+
+		// Skip everything which does not fulfill the log level threshold.
+		if (!isSufficientLogLevel(logLevel)) {
+			return;
+		}
+
+		enqueue(new EgymLogRecord(clock.currentTimeMillis(), clock.nanoTime(), this, logLevel, format, arguments, null));
+	}
+
+	/**
+	 * Hands the log record over to the log queue.
+	 *
+	 * @param logRecord
+	 *            the record. Must not be null.
+	 */
+	private void enqueue(EgymLogRecord logRecord) {
 		if (logQueue == null) {
 			// Fallback if log queue isn't initialized yet.
 			System.out.println(EgymLogFormatterUtil.formatLogRecord(logRecord, "[NO LOG QUEUE] "));
@@ -435,45 +471,4 @@ public class EgymLogger implements Logger {
 	boolean isSufficientLogLevel(EgymLogLevel logLevel) {
 		return EgymLogLevels.isSufficientLogLevel(logLevel, threshold);
 	}
-
-	/**
-	 * Formats a log message with parameters.
-	 *
-	 * @param format
-	 *            the format string / template. Must not be null.
-	 * @param arg
-	 *            the argument.
-	 * @return the formatted log message.
-	 */
-	private String format(String format, Object arg) {
-		return MessageFormatter.format(format, arg).getMessage();
-	}
-
-	/**
-	 * Formats a log message with parameters.
-	 *
-	 * @param format
-	 *            the format string / template. Must not be null.
-	 * @param arg1
-	 *            the first argument.
-	 * @param arg2
-	 *            the second argument.
-	 * @return the formatted log message.
-	 */
-	private String format(String format, Object arg1, Object arg2) {
-		return MessageFormatter.format(format, arg1, arg2).getMessage();
-	}
-
-	/**
-	 * Formats a log message with parameters.
-	 *
-	 * @param format
-	 *            the format string / template. Must not be null.
-	 * @param args
-	 *            the arguments.
-	 * @return the formatted log message.
-	 */
-	private String format(String format, Object... args) {
-		return MessageFormatter.arrayFormat(format, args).getMessage();
-	}
 }
@@ -0,0 +1,29 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.util.List;
+
+/**
+ * A writer which can write several log messages at once. Asynchronous dispatchers drain all waiting request records in one go, and a
+ * pipeline whose writer implements this interface hands over all their messages in a single call instead of one {@link #write(Object)}
+ * call per message. This lets writers amortize locking and I/O over the whole batch.
+ * <p>
+ * Writers which only implement {@link EgymLogWriter} keep working unchanged.
+ * </p>
+ *
+ * @param <T>
+ *            the log message type.
+ */
+public interface EgymLogBatchWriter<T> extends EgymLogWriter<T> {
+	/**
+	 * Invoked for a batch of log messages. Must have the same effect as calling {@link #write(Object)} for each message in order.
+	 *
+	 * @param logMessages
+	 *            the log messages. Never null or empty, but may contain null messages.
+	 */
+	void writeBatch(List<T> logMessages);
+}
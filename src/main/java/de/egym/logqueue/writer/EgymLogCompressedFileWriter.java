@@ -0,0 +1,283 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.config.EgymLogCompressedFileWriterConfig;
+
+/**
+ * Appends log messages to a compressed file. The messages are compressed continuously, and the compressor is sync flushed after each
+ * message or batch, so everything written so far can be decompressed right away, eg. with <code>zcat</code>. Each time the writer is
+ * opened a new gzip member is started, which gzip tools read as one continuous stream. With a preset dictionary, the file is written in the
+ * zlib format instead, see {@link EgymLogCompressedFileWriterConfig#withDictionary(byte[])}. See {@link EgymLogCompressedFileWriterConfig}
+ * for the settings, which must be bound in Guice.
+ * <p>
+ * Closed by {@link de.egym.logqueue.EgymLogQueue#shutdown()}, which finishes the compressed stream.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogCompressedFileWriter implements EgymLogBatchWriter<String>, EgymLogStreamingWriter, Closeable {
+	/** The gzip header: Magic number, deflate, no flags, no modification time, no extra flags, unknown operating system. */
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final EgymLogCompressedFileWriterConfig config;
+
+	/** True for the gzip format, false for the zlib format. */
+	private final boolean gzip;
+
+	@GuardedBy("this")
+	private final FileOutputStream out;
+
+	@GuardedBy("this")
+	private final Deflater deflater;
+
+	/** The checksum of the uncompressed data of the gzip member. */
+	@GuardedBy("this")
+	private final CRC32 crc = new CRC32();
+
+	@GuardedBy("this")
+	private final EgymLogLineEncoder lineEncoder = new EgymLogLineEncoder();
+
+	/** Collects the compressed data. */
+	@GuardedBy("this")
+	private final byte[] compressed;
+
+	@GuardedBy("this")
+	private int compressedLength;
+
+	@GuardedBy("this")
+	private long uncompressedByteCount;
+
+	@GuardedBy("this")
+	private long compressedByteCount;
+
+	@GuardedBy("this")
+	private boolean closed;
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	@Inject
+	public EgymLogCompressedFileWriter(EgymLogCompressedFileWriterConfig config) throws IOException {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.config = config;
+		this.compressed = new byte[config.getBufferSize()];
+
+		final byte[] dictionary = config.getDictionary();
+		this.gzip = dictionary == null;
+		this.deflater = new Deflater(config.getCompressionLevel(), gzip);
+		if (dictionary != null) {
+			deflater.setDictionary(dictionary);
+		}
+
+		this.out = new FileOutputStream(config.getFile(), true);
+		if (gzip) {
+			synchronized (this) {
+				writeUncompressed(GZIP_HEADER);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void write(String msg) {
+		if (msg == null) {
+			return;
+		}
+
+		checkNotClosed();
+		compress(lineEncoder.encodeLine(msg));
+		syncFlush();
+	}
+
+	@Override
+	public synchronized void writeChars(StringBuilder msg) {
+		if (msg == null) {
+			throw new IllegalArgumentException("msg must not be null");
+		}
+
+		checkNotClosed();
+		compress(lineEncoder.encodeLine(msg));
+		syncFlush();
+	}
+
+	/**
+	 * Compresses all messages with a single sync flush.
+	 */
+	@Override
+	public synchronized void writeBatch(List<String> msgs) {
+		checkNotClosed();
+		for (String msg : msgs) {
+			if (msg != null) {
+				compress(lineEncoder.encodeLine(msg));
+			}
+		}
+		syncFlush();
+	}
+
+	/**
+	 * @return the number of bytes passed to this writer, including line separators.
+	 */
+	public synchronized long getUncompressedByteCount() {
+		return uncompressedByteCount;
+	}
+
+	/**
+	 * @return the number of bytes written to the file by this writer.
+	 */
+	public synchronized long getCompressedByteCount() {
+		return compressedByteCount;
+	}
+
+	/**
+	 * @return the number of uncompressed bytes per compressed byte, or 0 if nothing was written yet.
+	 */
+	public synchronized double getCompressionRatio() {
+		return compressedByteCount > 0 ? (double) uncompressedByteCount / compressedByteCount : 0;
+	}
+
+	/**
+	 * Finishes the compressed stream and closes the file. Messages written afterwards are rejected. Closing twice has no effect.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			deflater.finish();
+			while (!deflater.finished()) {
+				deflate(Deflater.NO_FLUSH);
+			}
+			if (gzip) {
+				final byte[] trailer = new byte[8];
+				writeIntLittleEndian(trailer, 0, (int) crc.getValue());
+				writeIntLittleEndian(trailer, 4, (int) deflater.getBytesRead());
+				writeUncompressed(trailer);
+			}
+			flushCompressed();
+		} finally {
+			deflater.end();
+			out.close();
+		}
+	}
+
+	@GuardedBy("this")
+	private void checkNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("The writer has already been closed");
+		}
+	}
+
+	/**
+	 * Feeds an encoded line into the compressor.
+	 */
+	@GuardedBy("this")
+	private void compress(ByteBuffer line) {
+		final int byteLength = line.limit();
+		if (gzip) {
+			crc.update(line.array(), 0, byteLength);
+		}
+		uncompressedByteCount += byteLength;
+
+		deflater.setInput(line.array(), 0, byteLength);
+		while (!deflater.needsInput()) {
+			deflate(Deflater.NO_FLUSH);
+		}
+	}
+
+	/**
+	 * Flushes the compressor to a byte boundary and writes everything to the file, so readers can decompress all messages so far.
+	 */
+	@GuardedBy("this")
+	private void syncFlush() {
+		// The output is complete once the compressor does not fill the remaining buffer anymore.
+		while (true) {
+			if (compressedLength == compressed.length) {
+				flushCompressed();
+			}
+			final int free = compressed.length - compressedLength;
+			if (deflate(Deflater.SYNC_FLUSH) < free) {
+				break;
+			}
+		}
+
+		flushCompressed();
+	}
+
+	/**
+	 * Runs the compressor once, writing the buffer to the file first if it is full.
+	 *
+	 * @return the number of compressed bytes produced.
+	 */
+	@GuardedBy("this")
+	private int deflate(int flush) {
+		if (compressedLength == compressed.length) {
+			flushCompressed();
+		}
+
+		final int length = deflater.deflate(compressed, compressedLength, compressed.length - compressedLength, flush);
+		compressedLength += length;
+		return length;
+	}
+
+	/**
+	 * Writes uncompressed data, ie. the gzip header or trailer, after the pending compressed data.
+	 */
+	@GuardedBy("this")
+	private void writeUncompressed(byte[] data) {
+		flushCompressed();
+		try {
+			out.write(data);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write to log file " + config.getFile(), e);
+		}
+		compressedByteCount += data.length;
+	}
+
+	@GuardedBy("this")
+	private void flushCompressed() {
+		if (compressedLength == 0) {
+			return;
+		}
+
+		try {
+			out.write(compressed, 0, compressedLength);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write to log file " + config.getFile(), e);
+		}
+		compressedByteCount += compressedLength;
+		compressedLength = 0;
+	}
+
+	private static void writeIntLittleEndian(byte[] data, int offset, int value) {
+		data[offset] = (byte) value;
+		data[offset + 1] = (byte) (value >>> 8);
+		data[offset + 2] = (byte) (value >>> 16);
+		data[offset + 3] = (byte) (value >>> 24);
+	}
+}
@@ -0,0 +1,290 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.config.EgymLogConsoleWriterConfig;
+
+/**
+ * Writes all log messages to stdout without going through {@link System#out}. Request threads only encode their message to UTF-8 and put
+ * it into a queue. A single writer thread appends the queued messages to a large buffer on top of the stdout file descriptor, which is
+ * flushed once it is full or once the oldest buffered message has waited for the flush interval. See {@link EgymLogConsoleWriterConfig}
+ * for the settings, which must be bound in Guice.
+ * <p>
+ * Closed by {@link de.egym.logqueue.EgymLogQueue#shutdown()} or on JVM exit, which writes and flushes all pending messages. Messages written
+ * afterwards go to stdout directly.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogConsoleWriter implements EgymLogBatchWriter<String>, Closeable {
+	/** How long a request thread waits for free space in the queue before checking whether the writer got closed. */
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	/** The maximum number of messages the writer thread takes off the queue at once. */
+	private static final int MAX_DRAIN_SIZE = 256;
+
+	/** How long {@link #close()} waits for the writer thread to drain the queue. */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	private final BlockingQueue<byte[]> queue;
+
+	private final long flushIntervalNanos;
+
+	/** Written by the writer thread and, once the writer is closed, directly by the callers. */
+	@GuardedBy("out")
+	private final OutputStream out;
+
+	private final Thread writerThread;
+
+	/** Writes the pending messages if the application exits without closing the writer. */
+	private final Thread shutdownHook;
+
+	private volatile boolean closed;
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 */
+	@Inject
+	public EgymLogConsoleWriter(EgymLogConsoleWriterConfig config) {
+		this(config, new FileOutputStream(FileDescriptor.out));
+	}
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 * @param out
+	 *            the unbuffered stream to write to. Must not be null.
+	 */
+	EgymLogConsoleWriter(EgymLogConsoleWriterConfig config, OutputStream out) {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+		if (out == null) {
+			throw new IllegalArgumentException("out must not be null");
+		}
+
+		this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMillis());
+		this.out = new BufferedOutputStream(out, config.getBufferSize());
+
+		this.writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "egym-log-console-writer");
+		writerThread.setDaemon(true);
+
+		this.shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stopAndDrain();
+			}
+		}, "egym-log-console-writer-shutdown");
+
+		writerThread.start();
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Override
+	public void write(String msg) {
+		if (msg == null) {
+			return;
+		}
+
+		enqueue(msg.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Encodes all messages into a single queue entry.
+	 */
+	@Override
+	public void writeBatch(List<String> msgs) {
+		final List<byte[]> encodedMsgs = new ArrayList<>(msgs.size());
+		int length = 0;
+		for (String msg : msgs) {
+			if (msg != null) {
+				final byte[] encodedMsg = msg.getBytes(StandardCharsets.UTF_8);
+				encodedMsgs.add(encodedMsg);
+				length += encodedMsg.length + 1;
+			}
+		}
+		if (encodedMsgs.isEmpty()) {
+			return;
+		}
+
+		// The writer thread appends the last line separator.
+		final byte[] bytes = new byte[length - 1];
+		int offset = 0;
+		for (byte[] encodedMsg : encodedMsgs) {
+			if (offset > 0) {
+				bytes[offset - 1] = '\n';
+			}
+			System.arraycopy(encodedMsg, 0, bytes, offset, encodedMsg.length);
+			offset += encodedMsg.length + 1;
+		}
+		enqueue(bytes);
+	}
+
+	/**
+	 * Writes all pending messages to stdout and stops the writer thread. Closing twice has no effect. The stdout file descriptor stays
+	 * open.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// The JVM is already shutting down and the hook takes care of draining.
+		}
+		stopAndDrain();
+	}
+
+	/**
+	 * Puts an encoded message into the queue, waiting for free space if necessary. Writes the message directly if the writer is closed.
+	 */
+	private void enqueue(byte[] bytes) {
+		boolean interrupted = false;
+		try {
+			while (!closed) {
+				try {
+					if (queue.offer(bytes, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+						// If we raced with close() the writer thread might not pick up the message anymore.
+						if (closed && queue.remove(bytes)) {
+							writeDirectly(bytes);
+						}
+						return;
+					}
+				} catch (InterruptedException e) {
+					// Do not lose the message, but preserve the interruption for the caller.
+					interrupted = true;
+				}
+			}
+			writeDirectly(bytes);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void writeDirectly(byte[] bytes) {
+		synchronized (out) {
+			try {
+				writeLine(bytes);
+				out.flush();
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot write to stdout", e);
+			}
+		}
+	}
+
+	/**
+	 * Stops the writer thread, waits for it to drain the queue and writes leftovers on the calling thread.
+	 */
+	private void stopAndDrain() {
+		closed = true;
+
+		try {
+			writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (out) {
+			try {
+				byte[] bytes;
+				while ((bytes = queue.poll()) != null) {
+					writeLine(bytes);
+				}
+				out.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * The main loop of the writer thread.
+	 */
+	private void drain() {
+		final List<byte[]> batch = new ArrayList<>(MAX_DRAIN_SIZE);
+		boolean dirty = false;
+		long flushDeadline = 0;
+
+		while (!closed || !queue.isEmpty()) {
+			final long waitNanos = dirty ? Math.max(0, flushDeadline - System.nanoTime()) : flushIntervalNanos;
+			final byte[] first;
+			try {
+				first = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				// The writer thread is only stopped via the closed flag.
+				continue;
+			}
+
+			synchronized (out) {
+				try {
+					if (first != null) {
+						if (!dirty) {
+							dirty = true;
+							flushDeadline = System.nanoTime() + flushIntervalNanos;
+						}
+
+						writeLine(first);
+						queue.drainTo(batch, MAX_DRAIN_SIZE);
+						for (byte[] bytes : batch) {
+							writeLine(bytes);
+						}
+						batch.clear();
+					}
+
+					// A full buffer is written by the BufferedOutputStream itself.
+					if (dirty && System.nanoTime() - flushDeadline >= 0) {
+						out.flush();
+						dirty = false;
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+					batch.clear();
+				}
+			}
+		}
+
+		synchronized (out) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@GuardedBy("out")
+	private void writeLine(byte[] bytes) throws IOException {
+		out.write(bytes);
+		out.write('\n');
+	}
+}
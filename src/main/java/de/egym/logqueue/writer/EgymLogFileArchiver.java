@@ -0,0 +1,178 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import de.egym.logqueue.config.EgymLogRotationConfig;
+
+/**
+ * Turns rotated log files into archives. The file is renamed right away, compressing it and deleting old archives happens on a
+ * low-priority background thread, so the writer never waits for it.
+ */
+@ThreadSafe
+class EgymLogFileArchiver {
+	private static final String ARCHIVE_TIMESTAMP_PATTERN = "yyyyMMdd-HHmmss-SSS";
+
+	private static final DateTimeFormatter ARCHIVE_TIMESTAMP_FORMAT = DateTimeFormat.forPattern(ARCHIVE_TIMESTAMP_PATTERN);
+
+	private static final String COMPRESSED_SUFFIX = ".gz";
+
+	/** How long {@link #shutdown()} waits for pending compressions. */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	private final File file;
+
+	private final EgymLogRotationConfig config;
+
+	private final ExecutorService executor;
+
+	/** Matches the names of the archives of the file, but not other files which share its name as prefix. */
+	private final Pattern archiveNamePattern;
+
+	/**
+	 * @param file
+	 *            the log file which is rotated. Must not be null.
+	 * @param config
+	 *            the rotation configuration. Must not be null.
+	 */
+	EgymLogFileArchiver(File file, EgymLogRotationConfig config) {
+		if (file == null) {
+			throw new IllegalArgumentException("file must not be null");
+		}
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.file = file.getAbsoluteFile();
+		this.config = config;
+		// Every pattern letter of the timestamp format stands for a digit.
+		this.archiveNamePattern = Pattern.compile(Pattern.quote(this.file.getName() + ".")
+				+ ARCHIVE_TIMESTAMP_PATTERN.replaceAll("[a-zA-Z]", "\\\\d") + "(" + Pattern.quote(COMPRESSED_SUFFIX) + ")?");
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = new Thread(runnable, "egym-log-archiver");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Renames the log file to an archive name and schedules its compression. The log file must be closed.
+	 *
+	 * @param rotationMillis
+	 *            the point in time of the rotation, used for the archive name.
+	 * @throws IOException
+	 *             if the file cannot be renamed.
+	 */
+	void archive(long rotationMillis) throws IOException {
+		final File archive = nextArchiveFile(rotationMillis);
+		if (!file.renameTo(archive)) {
+			throw new IOException("Cannot rename " + file + " to " + archive);
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (config.isCompress()) {
+						compress(archive);
+					}
+					deleteOldArchives();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for pending compressions and stops the background thread.
+	 */
+	void shutdown() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private File nextArchiveFile(long rotationMillis) {
+		// On a collision move on by a millisecond rather than appending a counter, so the names still sort by time.
+		for (long millis = rotationMillis;; millis++) {
+			final File archive = new File(file.getParentFile(), file.getName() + "." + ARCHIVE_TIMESTAMP_FORMAT.print(millis));
+			if (!archive.exists() && !new File(archive.getPath() + COMPRESSED_SUFFIX).exists()) {
+				return archive;
+			}
+		}
+	}
+
+	private static void compress(File archive) throws IOException {
+		final File compressed = new File(archive.getPath() + COMPRESSED_SUFFIX);
+
+		try (InputStream in = new FileInputStream(archive);
+				OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(compressed)), 64 * 1024)) {
+			final byte[] buffer = new byte[64 * 1024];
+			int length;
+			while ((length = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, length);
+			}
+		} catch (IOException e) {
+			compressed.delete();
+			throw e;
+		}
+
+		if (!archive.delete()) {
+			throw new IOException("Cannot delete " + archive + " after compressing it");
+		}
+	}
+
+	/**
+	 * Deletes all but the most recent archives. The archive names sort by the time of the rotation. Other files next to the log file, eg.
+	 * backups or stripes, are left alone even if their names start with the name of the log file.
+	 */
+	private void deleteOldArchives() {
+		final File[] archives = file.getParentFile().listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return archiveNamePattern.matcher(name).matches();
+			}
+		});
+		if (archives == null || archives.length <= config.getMaxArchives()) {
+			return;
+		}
+
+		Arrays.sort(archives);
+		for (int i = 0; i < archives.length - config.getMaxArchives(); i++) {
+			if (!archives[i].delete()) {
+				System.err.println("WARNING: Cannot delete log archive " + archives[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Positional reads and writes which do not return before the whole buffer has been transferred.
+ */
+final class EgymLogFileChannels {
+	private EgymLogFileChannels() {
+		throw new AssertionError("Do not instantiate");
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer at the given position. Does not change the position of the channel.
+	 *
+	 * @throws IOException
+	 *             if writing fails.
+	 */
+	static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+	}
+
+	/**
+	 * Fills the remaining space of the buffer from the given position on. Does not change the position of the channel.
+	 *
+	 * @throws EOFException
+	 *             if the channel ends before the buffer is full.
+	 * @throws IOException
+	 *             if reading fails.
+	 */
+	static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, offset);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of file at " + offset);
+			}
+			offset += read;
+		}
+	}
+}
@@ -0,0 +1,501 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CoderResult;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.joda.time.DateTime;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.config.EgymLogFileWriterConfig;
+import de.egym.logqueue.config.EgymLogFsyncPolicy;
+import de.egym.logqueue.config.EgymLogRotationPeriod;
+
+/**
+ * Appends log messages to a file. The messages are encoded into pooled buffers and written in groups with a single gathering write, either
+ * once the pending messages reach the configured batch size or once the oldest pending message has waited for the configured delay. See
+ * {@link EgymLogFileWriterConfig} for the settings, which must be bound in Guice.
+ * <p>
+ * If rotation is configured, the file is rotated after a group commit which makes it exceed the size limit, or once a time boundary has
+ * passed. Rotated files are compressed in the background, see {@link EgymLogFileArchiver}.
+ * </p>
+ * <p>
+ * Closed by {@link de.egym.logqueue.EgymLogQueue#shutdown()}, which writes all pending messages. If the JVM exits without a shutdown, a
+ * shutdown hook writes the pending messages instead and commits every message written afterwards right away, so records which are still
+ * drained during the exit are not lost either.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogFileWriter implements EgymLogBatchWriter<String>, EgymLogStreamingWriter, Closeable {
+	/** The maximum number of idle buffers kept for reuse. */
+	private static final int MAX_FREE_BUFFERS = 16;
+
+	/** How long close() waits for a running timer commit. */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	private final EgymLogFileWriterConfig config;
+
+	/** Guards the pending messages. Never acquire {@link #commitLock} while holding it. */
+	private final Object bufferLock = new Object();
+
+	/** Serializes the writes to the file. */
+	private final Object commitLock = new Object();
+
+	@GuardedBy("bufferLock")
+	private final EgymLogLineEncoder lineEncoder = new EgymLogLineEncoder();
+
+	/** Filled buffers waiting for the next commit. */
+	@GuardedBy("bufferLock")
+	private final List<ByteBuffer> pendingBuffers = new ArrayList<>();
+
+	/** The buffer new messages are encoded into. Null if there is none. */
+	@GuardedBy("bufferLock")
+	private ByteBuffer currentBuffer;
+
+	@GuardedBy("bufferLock")
+	private long pendingBytes;
+
+	/** When the oldest pending message was written, see {@link System#nanoTime()}. */
+	@GuardedBy("bufferLock")
+	private long oldestPendingNanos;
+
+	@GuardedBy("bufferLock")
+	private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+
+	@GuardedBy("bufferLock")
+	private boolean closed;
+
+	/** True once the JVM is shutting down. Every message is committed right away then, as no timer commit follows. */
+	@GuardedBy("bufferLock")
+	private boolean writeThrough;
+
+	@GuardedBy("commitLock")
+	private FileChannel channel;
+
+	/** True once the file has been closed for good. Commits are no-ops afterwards, so they neither write nor rotate or reopen the file. */
+	@GuardedBy("commitLock")
+	private boolean channelClosed;
+
+	/** The current size of the file. */
+	@GuardedBy("commitLock")
+	private long fileSize;
+
+	/** When the file is rotated next, in milliseconds since the epoch. {@link Long#MAX_VALUE} if it is not rotated by time. */
+	@GuardedBy("commitLock")
+	private long nextRotationMillis = Long.MAX_VALUE;
+
+	/** Null if rotation is disabled. */
+	private final EgymLogFileArchiver archiver;
+
+	/** When the data was forced the last time, see {@link System#nanoTime()}. */
+	@GuardedBy("commitLock")
+	private long lastFsyncNanos = System.nanoTime();
+
+	/** True if data was written since the last force. */
+	@GuardedBy("commitLock")
+	private boolean unsynced;
+
+	/** Commits messages which wait longer than the configured delay, even if no further message arrives. */
+	private final ScheduledExecutorService scheduler;
+
+	private final Thread shutdownHook;
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	@Inject
+	public EgymLogFileWriter(EgymLogFileWriterConfig config) throws IOException {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.config = config;
+		this.archiver = config.getRotationConfig().isEnabled() ? new EgymLogFileArchiver(config.getFile(), config.getRotationConfig())
+				: null;
+		synchronized (commitLock) {
+			openFile();
+		}
+
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = new Thread(runnable, "egym-log-file-writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final long delayMillis = config.getMaxBatchDelayMillis();
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					commit(false);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+
+		this.shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stopAndFlush();
+			}
+		}, "egym-log-file-writer-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Override
+	public void write(String msg) {
+		if (msg == null) {
+			return;
+		}
+
+		final boolean commitNow;
+		synchronized (bufferLock) {
+			checkNotClosed();
+			encodePending(msg);
+			commitNow = isCommitDue();
+		}
+
+		if (commitNow) {
+			commit(false);
+		}
+	}
+
+	@Override
+	public void writeChars(StringBuilder msg) {
+		if (msg == null) {
+			throw new IllegalArgumentException("msg must not be null");
+		}
+
+		final boolean commitNow;
+		synchronized (bufferLock) {
+			checkNotClosed();
+			if (pendingBytes == 0) {
+				oldestPendingNanos = System.nanoTime();
+			}
+			encode(lineEncoder.startLine(msg));
+			commitNow = isCommitDue();
+		}
+
+		if (commitNow) {
+			commit(false);
+		}
+	}
+
+	/**
+	 * Encodes all messages under a single lock acquisition and checks once whether a group commit is due.
+	 */
+	@Override
+	public void writeBatch(List<String> msgs) {
+		final boolean commitNow;
+		synchronized (bufferLock) {
+			checkNotClosed();
+			for (String msg : msgs) {
+				if (msg != null) {
+					encodePending(msg);
+				}
+			}
+			commitNow = isCommitDue();
+		}
+
+		if (commitNow) {
+			commit(false);
+		}
+	}
+
+	/**
+	 * Writes all pending messages and forces them to the storage device, unless the fsync policy is {@link EgymLogFsyncPolicy#NEVER}.
+	 */
+	public void flush() {
+		commit(config.getFsyncPolicy() != EgymLogFsyncPolicy.NEVER);
+	}
+
+	/**
+	 * Writes all pending messages and closes the file. Messages written afterwards are rejected. Closing twice has no effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (bufferLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// The JVM is already shutting down, the hook may run concurrently but only commits.
+		}
+
+		// Wait for a running timer commit, so the final flush is the last commit.
+		stopScheduler();
+
+		try {
+			flush();
+		} finally {
+			synchronized (commitLock) {
+				channelClosed = true;
+				channel.close();
+			}
+			if (archiver != null) {
+				archiver.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Run by the shutdown hook: Stops the timer, writes all pending messages and switches to committing every message right away. The file
+	 * stays open for messages which are still written while the JVM exits.
+	 */
+	private void stopAndFlush() {
+		synchronized (bufferLock) {
+			writeThrough = true;
+		}
+		stopScheduler();
+
+		try {
+			flush();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void stopScheduler() {
+		scheduler.shutdown();
+		try {
+			scheduler.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@GuardedBy("bufferLock")
+	private void checkNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("The writer has already been closed");
+		}
+	}
+
+	@GuardedBy("bufferLock")
+	private void encodePending(String msg) {
+		if (pendingBytes == 0) {
+			oldestPendingNanos = System.nanoTime();
+		}
+		encode(lineEncoder.startLine(msg));
+	}
+
+	@GuardedBy("bufferLock")
+	private boolean isCommitDue() {
+		return writeThrough || pendingBytes >= config.getBatchSize()
+				|| System.nanoTime() - oldestPendingNanos >= TimeUnit.MILLISECONDS.toNanos(config.getMaxBatchDelayMillis());
+	}
+
+	/**
+	 * Encodes the line into the current buffer, taking further buffers as needed.
+	 */
+	@GuardedBy("bufferLock")
+	private void encode(CharBuffer line) {
+		CoderResult result;
+		do {
+			final ByteBuffer buffer = getCurrentBuffer();
+			final int start = buffer.position();
+			result = lineEncoder.encode(line, buffer);
+			pendingBytes += buffer.position() - start;
+			rotateIfFull(result);
+		} while (result.isOverflow());
+
+		do {
+			final ByteBuffer buffer = getCurrentBuffer();
+			final int start = buffer.position();
+			result = lineEncoder.flush(buffer);
+			pendingBytes += buffer.position() - start;
+			rotateIfFull(result);
+		} while (result.isOverflow());
+	}
+
+	@GuardedBy("bufferLock")
+	private ByteBuffer getCurrentBuffer() {
+		if (currentBuffer == null) {
+			// Heap buffers: The encoder is several times faster on arrays than on direct buffers, which outweighs the copy in write().
+			currentBuffer = freeBuffers.isEmpty() ? ByteBuffer.allocate(config.getBufferSize()) : freeBuffers.poll();
+		}
+		return currentBuffer;
+	}
+
+	@GuardedBy("bufferLock")
+	private void rotateIfFull(CoderResult result) {
+		if (result.isOverflow()) {
+			pendingBuffers.add(currentBuffer);
+			currentBuffer = null;
+		}
+	}
+
+	/**
+	 * Writes all pending messages with a single gathering write.
+	 *
+	 * @param force
+	 *            whether to force the data to the storage device regardless of the fsync policy.
+	 */
+	private void commit(boolean force) {
+		synchronized (commitLock) {
+			if (channelClosed) {
+				return;
+			}
+
+			final ByteBuffer[] batch;
+			synchronized (bufferLock) {
+				if (currentBuffer != null && currentBuffer.position() > 0) {
+					pendingBuffers.add(currentBuffer);
+					currentBuffer = null;
+				}
+				batch = pendingBuffers.toArray(new ByteBuffer[pendingBuffers.size()]);
+				pendingBuffers.clear();
+				pendingBytes = 0;
+			}
+
+			try {
+				if (batch.length > 0) {
+					fileSize += writeFully(batch);
+					unsynced = true;
+				}
+				fsync(force, batch.length > 0);
+				if (isRotationDue()) {
+					rotate();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot write to log file " + config.getFile(), e);
+			} finally {
+				recycle(batch);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes written.
+	 */
+	@GuardedBy("commitLock")
+	private long writeFully(ByteBuffer[] batch) throws IOException {
+		long length = 0;
+		for (ByteBuffer buffer : batch) {
+			buffer.flip();
+			length += buffer.remaining();
+		}
+
+		final ByteBuffer last = batch[batch.length - 1];
+		while (last.hasRemaining()) {
+			channel.write(batch);
+		}
+		return length;
+	}
+
+	@GuardedBy("commitLock")
+	private void openFile() throws IOException {
+		channel = FileChannel.open(config.getFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		fileSize = channel.size();
+
+		final EgymLogRotationPeriod period = config.getRotationConfig().getPeriod();
+		if (period != null) {
+			nextRotationMillis = period.nextBoundary(new DateTime()).getMillis();
+		}
+	}
+
+	@GuardedBy("commitLock")
+	private boolean isRotationDue() {
+		if (archiver == null || fileSize == 0) {
+			// Empty files are not worth an archive.
+			return false;
+		}
+
+		final long maxFileSize = config.getRotationConfig().getMaxFileSize();
+		return (maxFileSize > 0 && fileSize >= maxFileSize) || System.currentTimeMillis() >= nextRotationMillis;
+	}
+
+	/**
+	 * Closes the file, hands it over to the archiver and starts a new one.
+	 */
+	@GuardedBy("commitLock")
+	private void rotate() throws IOException {
+		if (unsynced && config.getFsyncPolicy() != EgymLogFsyncPolicy.NEVER) {
+			channel.force(false);
+			unsynced = false;
+		}
+		channel.close();
+
+		try {
+			archiver.archive(System.currentTimeMillis());
+		} finally {
+			// Continue with the old file if it could not be archived.
+			openFile();
+		}
+	}
+
+	@GuardedBy("commitLock")
+	private void fsync(boolean force, boolean written) throws IOException {
+		if (!unsynced) {
+			return;
+		}
+
+		final long now = System.nanoTime();
+
+		final boolean due;
+		switch (config.getFsyncPolicy()) {
+		case NEVER:
+			due = false;
+			break;
+		case PER_BATCH:
+			due = written;
+			break;
+		case INTERVAL:
+			due = now - lastFsyncNanos >= TimeUnit.MILLISECONDS.toNanos(config.getFsyncIntervalMillis());
+			break;
+		default:
+			throw new AssertionError("Unknown fsyncPolicy: " + config.getFsyncPolicy());
+		}
+
+		if (due || force) {
+			channel.force(false);
+			lastFsyncNanos = now;
+			unsynced = false;
+		}
+	}
+
+	private void recycle(ByteBuffer[] batch) {
+		synchronized (bufferLock) {
+			for (ByteBuffer buffer : batch) {
+				if (freeBuffers.size() < MAX_FREE_BUFFERS) {
+					buffer.clear();
+					freeBuffers.offer(buffer);
+				}
+			}
+		}
+	}
+}
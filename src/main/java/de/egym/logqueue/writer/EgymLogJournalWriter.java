@@ -0,0 +1,456 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import de.egym.logqueue.config.EgymLogFsyncPolicy;
+import de.egym.logqueue.config.EgymLogJournalConfig;
+
+/**
+ * A write-ahead journal in front of a slow or unreliable writer. Request threads only append the log messages to a local journal file. A
+ * forwarder thread replays the journal to the actual writer and records its progress in a checkpoint file. If the writer fails, the
+ * forwarder retries the same messages after a delay, so nothing is lost while the writer is down, and messages which were not forwarded
+ * before the process ended are replayed on the next start. Messages may be delivered twice after a crash, but never get lost once they
+ * reached the journal, subject to the fsync policy.
+ * <p>
+ * Each journal entry is the length of the UTF-8 encoded message as an int followed by the message. Once the forwarder has forwarded at
+ * least {@link #COMPACTION_THRESHOLD} bytes, the journal is compacted: The entries which were not forwarded yet are moved to the start of
+ * the journal, as soon as they are fewer bytes than the forwarded ones. So the journal stays bounded even if the forwarder never catches up
+ * completely under load.
+ * </p>
+ * <p>
+ * Usually created by the pipeline, see {@link de.egym.logqueue.config.EgymLogPipelineModule.FormatWith#journalTo(EgymLogJournalConfig)}.
+ * Closing the journal waits for the forwarder to catch up, unless the writer fails, and closes the writer.
+ * </p>
+ */
+@ThreadSafe
+public class EgymLogJournalWriter implements EgymLogBatchWriter<String>, Closeable {
+	static final String JOURNAL_FILE_NAME = "journal.log";
+
+	static final String CHECKPOINT_FILE_NAME = "journal.checkpoint";
+
+	/** The journal is compacted once the forwarder has forwarded at least this many bytes. */
+	static final long COMPACTION_THRESHOLD = 4 * 1024 * 1024;
+
+	/** The size of the buffer the unforwarded entries are moved with. */
+	private static final int COMPACTION_BUFFER_SIZE = 64 * 1024;
+
+	/** Longer entries can only stem from a corrupted journal. */
+	private static final int MAX_ENTRY_LENGTH = 256 * 1024 * 1024;
+
+	/** How long {@link #close()} waits for the forwarder to catch up. */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	private final EgymLogJournalConfig config;
+
+	private final EgymLogWriter<String> logWriter;
+
+	private final File journalFile;
+
+	/** Guards the appends and the compaction of the journal. The forwarder waits on it for new entries. */
+	private final Object appendLock = new Object();
+
+	/** Appended to under {@link #appendLock}, read by the forwarder with positional reads. */
+	private final FileChannel channel;
+
+	/** Only written by the forwarder thread. */
+	private final FileChannel checkpointChannel;
+
+	/** The end of the last complete entry. */
+	@GuardedBy("appendLock")
+	private long appendPosition;
+
+	/** Reused to assemble the entries of an append. */
+	@GuardedBy("appendLock")
+	private ByteBuffer appendBuffer = ByteBuffer.allocate(16 * 1024);
+
+	@GuardedBy("appendLock")
+	private long lastForceNanos = System.nanoTime();
+
+	@GuardedBy("appendLock")
+	private boolean closed;
+
+	/** The start of the first entry which has not been forwarded yet. Only written by the forwarder thread. */
+	private volatile long forwardPosition;
+
+	private final Thread forwarderThread;
+
+	/**
+	 * Opens the journal and starts forwarding the entries which have not been forwarded before.
+	 *
+	 * @param config
+	 *            the journal configuration. Must not be null.
+	 * @param logWriter
+	 *            the writer the journal is forwarded to. Must not be null.
+	 * @throws IOException
+	 *             if the journal cannot be opened.
+	 */
+	public EgymLogJournalWriter(EgymLogJournalConfig config, EgymLogWriter<String> logWriter) throws IOException {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+		if (logWriter == null) {
+			throw new IllegalArgumentException("logWriter must not be null");
+		}
+
+		this.config = config;
+		this.logWriter = logWriter;
+
+		final File directory = config.getDirectory();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create log journal directory " + directory);
+		}
+
+		this.journalFile = new File(directory, JOURNAL_FILE_NAME);
+		this.channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.checkpointChannel = FileChannel.open(new File(directory, CHECKPOINT_FILE_NAME).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		recover();
+
+		this.forwarderThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				forward();
+			}
+		}, "egym-log-journal-forwarder");
+		forwarderThread.setDaemon(true);
+		forwarderThread.start();
+	}
+
+	@Override
+	public void write(String msg) {
+		if (msg == null) {
+			return;
+		}
+
+		final byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+		synchronized (appendLock) {
+			ensureAppendCapacity(4 + bytes.length);
+			appendBuffer.putInt(bytes.length).put(bytes);
+			append();
+		}
+	}
+
+	/**
+	 * Appends all messages with a single write.
+	 */
+	@Override
+	public void writeBatch(List<String> msgs) {
+		final List<byte[]> encodedMsgs = new ArrayList<>(msgs.size());
+		int length = 0;
+		for (String msg : msgs) {
+			if (msg != null) {
+				final byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+				encodedMsgs.add(bytes);
+				length += 4 + bytes.length;
+			}
+		}
+		if (encodedMsgs.isEmpty()) {
+			return;
+		}
+
+		synchronized (appendLock) {
+			ensureAppendCapacity(length);
+			for (byte[] bytes : encodedMsgs) {
+				appendBuffer.putInt(bytes.length).put(bytes);
+			}
+			append();
+		}
+	}
+
+	/**
+	 * @return the number of journal bytes which have not been forwarded to the writer yet.
+	 */
+	public long getPendingBytes() {
+		synchronized (appendLock) {
+			return appendPosition - forwardPosition;
+		}
+	}
+
+	/**
+	 * Stops accepting messages, waits for the forwarder to catch up and closes the journal and the writer. Entries which could not be
+	 * forwarded stay in the journal for the next start. Closing twice has no effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (appendLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			appendLock.notifyAll();
+		}
+
+		try {
+			forwarderThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		try {
+			synchronized (appendLock) {
+				if (config.getFsyncPolicy() != EgymLogFsyncPolicy.NEVER) {
+					channel.force(false);
+				}
+				channel.close();
+				checkpointChannel.close();
+			}
+		} finally {
+			if (logWriter instanceof Closeable) {
+				((Closeable) logWriter).close();
+			}
+		}
+	}
+
+	@GuardedBy("appendLock")
+	private void ensureAppendCapacity(int length) {
+		if (closed) {
+			throw new IllegalStateException("The journal has already been closed");
+		}
+
+		if (appendBuffer.capacity() < length) {
+			appendBuffer = ByteBuffer.allocate(Math.max(length, 2 * appendBuffer.capacity()));
+		}
+		appendBuffer.clear();
+	}
+
+	/**
+	 * Writes the entries in the append buffer to the end of the journal and wakes up the forwarder.
+	 */
+	@GuardedBy("appendLock")
+	private void append() {
+		appendBuffer.flip();
+		try {
+			final long length = appendBuffer.remaining();
+			EgymLogFileChannels.writeFully(channel, appendBuffer, appendPosition);
+			appendPosition += length;
+
+			final boolean forceDue = config.getFsyncPolicy() == EgymLogFsyncPolicy.INTERVAL
+					&& System.nanoTime() - lastForceNanos >= TimeUnit.MILLISECONDS.toNanos(config.getFsyncIntervalMillis());
+			if (config.getFsyncPolicy() == EgymLogFsyncPolicy.PER_BATCH || forceDue) {
+				channel.force(false);
+				lastForceNanos = System.nanoTime();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot append to log journal " + journalFile, e);
+		}
+
+		appendLock.notifyAll();
+	}
+
+	/**
+	 * Restores the forward position from the checkpoint and cuts off an entry which was only partially written when the process ended.
+	 */
+	private void recover() throws IOException {
+		final long size = channel.size();
+
+		long checkpoint = 0;
+		if (checkpointChannel.size() >= 8) {
+			final ByteBuffer buffer = ByteBuffer.allocate(8);
+			EgymLogFileChannels.readFully(checkpointChannel, buffer, 0);
+			checkpoint = buffer.getLong(0);
+		}
+		if (checkpoint < 0 || checkpoint > size) {
+			// The journal was truncated after the forwarder caught up, but the checkpoint was not updated anymore.
+			checkpoint = 0;
+		}
+
+		final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+		long position = checkpoint;
+		while (position + 4 <= size) {
+			lengthBuffer.clear();
+			EgymLogFileChannels.readFully(channel, lengthBuffer, position);
+			final int length = lengthBuffer.getInt(0);
+			if (length < 0 || length > MAX_ENTRY_LENGTH || position + 4 + length > size) {
+				break;
+			}
+			position += 4 + length;
+		}
+		if (position < size) {
+			channel.truncate(position);
+		}
+
+		synchronized (appendLock) {
+			appendPosition = position;
+		}
+		forwardPosition = checkpoint;
+	}
+
+	/**
+	 * The main loop of the forwarder thread.
+	 */
+	private void forward() {
+		final List<String> batch = new ArrayList<>(config.getForwardBatchSize());
+		final long[] entryEnds = new long[config.getForwardBatchSize()];
+		ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+
+		while (true) {
+			final long end;
+			synchronized (appendLock) {
+				while (forwardPosition == appendPosition && !closed) {
+					try {
+						appendLock.wait();
+					} catch (InterruptedException e) {
+						// The forwarder is only stopped via the closed flag.
+					}
+				}
+				if (forwardPosition == appendPosition) {
+					return;
+				}
+				end = appendPosition;
+			}
+
+			batch.clear();
+			int forwarded = 0;
+			try {
+				long position = forwardPosition;
+				while (position < end && batch.size() < entryEnds.length) {
+					readBuffer.clear().limit(4);
+					EgymLogFileChannels.readFully(channel, readBuffer, position);
+					final int length = readBuffer.getInt(0);
+					if (readBuffer.capacity() < length) {
+						readBuffer = ByteBuffer.allocate(Math.max(length, 2 * readBuffer.capacity()));
+					}
+					readBuffer.clear().limit(length);
+					EgymLogFileChannels.readFully(channel, readBuffer, position + 4);
+
+					batch.add(new String(readBuffer.array(), 0, length, StandardCharsets.UTF_8));
+					position += 4 + length;
+					entryEnds[batch.size() - 1] = position;
+				}
+
+				forwarded = deliver(batch);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+
+			if (forwarded > 0) {
+				forwardPosition = entryEnds[forwarded - 1];
+				try {
+					writeCheckpoint();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+
+			if (forwarded < batch.size() || batch.isEmpty()) {
+				if (!awaitRetry()) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands the messages to the writer.
+	 *
+	 * @return the number of messages which were written.
+	 */
+	private int deliver(List<String> batch) {
+		if (logWriter instanceof EgymLogBatchWriter) {
+			try {
+				((EgymLogBatchWriter<String>) logWriter).writeBatch(batch);
+				return batch.size();
+			} catch (Exception e) {
+				e.printStackTrace();
+				return 0;
+			}
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			try {
+				logWriter.write(batch.get(i));
+			} catch (Exception e) {
+				e.printStackTrace();
+				return i;
+			}
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Waits for the retry delay after a failure.
+	 *
+	 * @return true if the forwarder should retry, false if the journal is being closed.
+	 */
+	private boolean awaitRetry() {
+		synchronized (appendLock) {
+			if (closed) {
+				return false;
+			}
+			try {
+				appendLock.wait(config.getRetryDelayMillis());
+			} catch (InterruptedException e) {
+				// The forwarder is only stopped via the closed flag.
+			}
+			return !closed;
+		}
+	}
+
+	/**
+	 * Saves the forward position. Compacts the journal instead if the forwarder has forwarded enough entries.
+	 */
+	private void writeCheckpoint() throws IOException {
+		synchronized (appendLock) {
+			// The unforwarded entries must be strictly smaller than the forwarded ones: Then moving them does not overwrite themselves, and
+			// the old checkpoint lies beyond the end of the compacted journal, which recover() detects.
+			if (forwardPosition >= COMPACTION_THRESHOLD && appendPosition - forwardPosition < forwardPosition) {
+				compact();
+				return;
+			}
+		}
+
+		saveForwardPosition();
+	}
+
+	/**
+	 * Moves the unforwarded entries to the start of the journal and resets the checkpoint. Until the checkpoint is reset, the old
+	 * checkpoint still points to the unforwarded entries at their old place, or beyond the end of the journal once it is truncated. No
+	 * entries must be appended in between.
+	 */
+	@GuardedBy("appendLock")
+	private void compact() throws IOException {
+		final long length = appendPosition - forwardPosition;
+		final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, COMPACTION_BUFFER_SIZE));
+		for (long offset = 0; offset < length; offset += buffer.limit()) {
+			buffer.clear().limit((int) Math.min(length - offset, buffer.capacity()));
+			EgymLogFileChannels.readFully(channel, buffer, forwardPosition + offset);
+			buffer.flip();
+			EgymLogFileChannels.writeFully(channel, buffer, offset);
+		}
+		channel.truncate(length);
+		if (config.getFsyncPolicy() != EgymLogFsyncPolicy.NEVER) {
+			// The compacted journal must be on disk before the checkpoint refers to it.
+			channel.force(false);
+		}
+
+		appendPosition = length;
+		forwardPosition = 0;
+		saveForwardPosition();
+	}
+
+	private void saveForwardPosition() throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(8);
+		buffer.putLong(0, forwardPosition);
+		EgymLogFileChannels.writeFully(checkpointChannel, buffer, 0);
+		if (config.getFsyncPolicy() == EgymLogFsyncPolicy.PER_BATCH) {
+			checkpointChannel.force(false);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Encodes log messages plus a line separator as UTF-8, replacing malformed and unmappable characters. The message is copied into a reused
+ * scratch array first, encoding from an array is much faster than from a string.
+ * <p>
+ * Writers keep one instance per lock which guards their encoding.
+ * </p>
+ */
+@NotThreadSafe
+final class EgymLogLineEncoder {
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/** The characters of the message plus the line separator. */
+	private char[] chars = new char[1024];
+
+	/** The encoded line, see {@link #encodeLine(String)}. */
+	private ByteBuffer bytes = ByteBuffer.allocate(4096);
+
+	/**
+	 * Prepares a line for {@link #encode(CharBuffer, ByteBuffer)}.
+	 *
+	 * @param msg
+	 *            the message. Must not be null.
+	 * @return the characters of the message and the line separator. Only valid until the next line is started.
+	 */
+	CharBuffer startLine(String msg) {
+		final int length = msg.length() + 1;
+		msg.getChars(0, msg.length(), charsFor(length), 0);
+		return endLine(length);
+	}
+
+	/**
+	 * Prepares a line for {@link #encode(CharBuffer, ByteBuffer)}.
+	 *
+	 * @param msg
+	 *            the message. Must not be null.
+	 * @return the characters of the message and the line separator. Only valid until the next line is started.
+	 */
+	CharBuffer startLine(StringBuilder msg) {
+		final int length = msg.length() + 1;
+		msg.getChars(0, msg.length(), charsFor(length), 0);
+		return endLine(length);
+	}
+
+	/**
+	 * Encodes as much of the line as fits into the buffer.
+	 *
+	 * @return the result of the encoder. Overflow if the buffer is full.
+	 */
+	CoderResult encode(CharBuffer line, ByteBuffer out) {
+		return encoder.encode(line, out, true);
+	}
+
+	/**
+	 * Completes the line once {@link #encode(CharBuffer, ByteBuffer)} has consumed all of it.
+	 *
+	 * @return the result of the encoder. Overflow if the buffer is full.
+	 */
+	CoderResult flush(ByteBuffer out) {
+		return encoder.flush(out);
+	}
+
+	/**
+	 * Encodes the message and a line separator as a whole.
+	 *
+	 * @param msg
+	 *            the message. Must not be null.
+	 * @return a heap buffer from position 0 to the end of the line. Only valid until the next line is encoded.
+	 */
+	ByteBuffer encodeLine(String msg) {
+		return encodeLine(startLine(msg));
+	}
+
+	/**
+	 * Encodes the message and a line separator as a whole.
+	 *
+	 * @param msg
+	 *            the message. Must not be null.
+	 * @return a heap buffer from position 0 to the end of the line. Only valid until the next line is encoded.
+	 */
+	ByteBuffer encodeLine(StringBuilder msg) {
+		return encodeLine(startLine(msg));
+	}
+
+	private ByteBuffer encodeLine(CharBuffer line) {
+		// UTF-8 needs at most three bytes per char.
+		final int maxBytes = (int) Math.min(Integer.MAX_VALUE, 3L * line.remaining());
+		if (bytes.capacity() < maxBytes) {
+			bytes = ByteBuffer.allocate(Math.max(maxBytes, 2 * bytes.capacity()));
+		}
+		bytes.clear();
+
+		final CoderResult result = encoder.encode(line, bytes, true);
+		if (!result.isUnderflow() || !encoder.flush(bytes).isUnderflow()) {
+			throw new IllegalStateException("Cannot encode log message: " + result);
+		}
+		bytes.flip();
+		return bytes;
+	}
+
+	private char[] charsFor(int length) {
+		if (chars.length < length) {
+			chars = new char[Math.max(length, 2 * chars.length)];
+		}
+		return chars;
+	}
+
+	private CharBuffer endLine(int length) {
+		chars[length - 1] = '\n';
+		encoder.reset();
+		return CharBuffer.wrap(chars, 0, length);
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.config.EgymLogSegmentWriterConfig;
+
+/**
+ * Appends log messages to pre-allocated, memory-mapped segment files. Writing a message is a plain memory copy, the operating system
+ * writes the pages back to disk. Once a segment is full, it is trimmed to the bytes actually written and the writer moves on to a fresh
+ * segment. The current segment is trimmed on {@link #close()} or, if the writer is not closed, when the JVM exits. Messages which are still
+ * written while the JVM exits are appended to a plain file instead, as no later trim is guaranteed. Segment files are named
+ * <code>&lt;prefix&gt;-&lt;yyyyMMdd-HHmmss&gt;-&lt;sequence&gt;.log</code>, so they sort in the order they were written.
+ * <p>
+ * The messages are written as they are, without separators. See {@link EgymLogMappedSegmentWriter} for text messages.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogMappedSegmentByteWriter implements EgymLogWriter<byte[]>, Closeable {
+	private static final DateTimeFormatter SEGMENT_TIMESTAMP_FORMAT = DateTimeFormat.forPattern("yyyyMMdd-HHmmss");
+
+	private final EgymLogSegmentWriterConfig config;
+
+	/** Trims the current segment if the application exits without calling {@link #close()}. */
+	private final Thread shutdownHook;
+
+	/** The file of the current segment. Null if there is none. */
+	@GuardedBy("this")
+	private RandomAccessFile segmentFile;
+
+	/** The mapped current segment. Null if there is none. */
+	@GuardedBy("this")
+	private MappedByteBuffer segment;
+
+	/** The sequence number of the next segment. */
+	@GuardedBy("this")
+	private int nextSequence;
+
+	@GuardedBy("this")
+	private boolean closed;
+
+	/** True once the shutdown hook has trimmed the current segment. Messages are appended to {@link #appendChannel} afterwards. */
+	@GuardedBy("this")
+	private boolean shuttingDown;
+
+	/** The plain file messages are appended to while the JVM exits. Null if there is none. */
+	@GuardedBy("this")
+	private FileChannel appendChannel;
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 */
+	@Inject
+	public EgymLogMappedSegmentByteWriter(EgymLogSegmentWriterConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.config = config;
+		this.shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				closeSegmentSafely();
+			}
+		}, "egym-log-segment-writer-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Override
+	public void write(byte[] logMessage) {
+		if (logMessage != null) {
+			write(logMessage, 0, logMessage.length);
+		}
+	}
+
+	/**
+	 * Appends a part of a byte array to the current segment, starting a new segment if it does not fit anymore.
+	 *
+	 * @param bytes
+	 *            the bytes to write. Must not be null.
+	 * @param offset
+	 *            the offset of the first byte to write.
+	 * @param length
+	 *            the number of bytes to write.
+	 */
+	public synchronized void write(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			throw new IllegalArgumentException("bytes must not be null");
+		}
+		if (closed) {
+			throw new IllegalStateException("The writer has already been closed");
+		}
+		if (length == 0) {
+			return;
+		}
+		if (shuttingDown) {
+			append(bytes, offset, length);
+			return;
+		}
+
+		try {
+			if (segment == null || segment.remaining() < length) {
+				closeSegment();
+				// A message larger than a segment gets a segment of its own.
+				openSegment(Math.max(length, config.getSegmentSize()));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot create log segment in " + config.getDirectory(), e);
+		}
+
+		segment.put(bytes, offset, length);
+	}
+
+	/**
+	 * Trims and closes the current segment. Messages written afterwards are rejected. Closing twice has no effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				closeSegment();
+			} finally {
+				if (appendChannel != null) {
+					appendChannel.close();
+					appendChannel = null;
+				}
+			}
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// The JVM is already shutting down.
+		}
+	}
+
+	@GuardedBy("this")
+	private void openSegment(int size) throws IOException {
+		final File file = nextSegmentFile();
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			randomAccessFile.close();
+			file.delete();
+			throw e;
+		}
+		segmentFile = randomAccessFile;
+	}
+
+	/**
+	 * Trims the current segment to the bytes actually written and closes it.
+	 */
+	@GuardedBy("this")
+	private void closeSegment() throws IOException {
+		if (segmentFile == null) {
+			return;
+		}
+
+		final int written = segment.position();
+		// There is no way to unmap the buffer explicitly, it is unmapped once it is garbage collected.
+		segment = null;
+		try {
+			segmentFile.getChannel().truncate(written);
+		} finally {
+			segmentFile.close();
+			segmentFile = null;
+		}
+	}
+
+	/**
+	 * Appends the bytes to a plain file, which needs no trimming. Used once the JVM is shutting down, a segment mapped then might never be
+	 * trimmed.
+	 */
+	@GuardedBy("this")
+	private void append(byte[] bytes, int offset, int length) {
+		try {
+			if (appendChannel == null) {
+				appendChannel = new RandomAccessFile(nextSegmentFile(), "rw").getChannel();
+			}
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+			while (buffer.hasRemaining()) {
+				appendChannel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot append to log segment in " + config.getDirectory(), e);
+		}
+	}
+
+	/**
+	 * Trims the current segment from the shutdown hook. The writer stays open, but messages written afterwards, for example while the
+	 * dispatcher drains its queue, are appended to a plain file.
+	 */
+	private synchronized void closeSegmentSafely() {
+		shuttingDown = true;
+		try {
+			closeSegment();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@GuardedBy("this")
+	private File nextSegmentFile() throws IOException {
+		final String timestamp = SEGMENT_TIMESTAMP_FORMAT.print(System.currentTimeMillis());
+		while (true) {
+			final File file = new File(config.getDirectory(), String.format("%s-%s-%04d.log", config.getFilePrefix(), timestamp,
+					nextSequence++));
+			if (file.createNewFile()) {
+				return file;
+			}
+		}
+	}
+}
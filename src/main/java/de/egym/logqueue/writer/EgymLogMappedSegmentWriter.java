@@ -0,0 +1,79 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.config.EgymLogSegmentWriterConfig;
+
+/**
+ * Appends log messages as UTF-8 lines to memory-mapped segment files, see {@link EgymLogMappedSegmentByteWriter}. The segment files are
+ * normal text files once they are closed.
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogMappedSegmentWriter implements EgymLogBatchWriter<String>, EgymLogStreamingWriter, Closeable {
+	private final EgymLogMappedSegmentByteWriter byteWriter;
+
+	/** Each message is encoded as a whole and copied into the segment, so a message never spans two segments. */
+	@GuardedBy("this")
+	private final EgymLogLineEncoder lineEncoder = new EgymLogLineEncoder();
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 */
+	@Inject
+	public EgymLogMappedSegmentWriter(EgymLogSegmentWriterConfig config) {
+		this.byteWriter = new EgymLogMappedSegmentByteWriter(config);
+	}
+
+	@Override
+	public synchronized void write(String msg) {
+		if (msg == null) {
+			return;
+		}
+
+		write(lineEncoder.encodeLine(msg));
+	}
+
+	@Override
+	public synchronized void writeChars(StringBuilder msg) {
+		if (msg == null) {
+			throw new IllegalArgumentException("msg must not be null");
+		}
+
+		write(lineEncoder.encodeLine(msg));
+	}
+
+	@Override
+	public synchronized void writeBatch(List<String> msgs) {
+		for (String msg : msgs) {
+			if (msg != null) {
+				write(lineEncoder.encodeLine(msg));
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		byteWriter.close();
+	}
+
+	@GuardedBy("this")
+	private void write(ByteBuffer line) {
+		byteWriter.write(line.array(), 0, line.limit());
+	}
+}
@@ -0,0 +1,469 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.config.EgymLogNetworkWriterConfig;
+
+/**
+ * Ships log messages to a collector over a persistent TCP connection. Request threads only encode their message to UTF-8 and put it into
+ * a queue. A sender thread takes all queued messages at once and sends them in frames of several blocks each:
+ *
+ * <pre>
+ * frame = int frameLength, int blockCount, block*
+ * block = int blockLength, byte[blockLength] UTF-8 message
+ * </pre>
+ *
+ * All ints are big-endian, the frame length does not include itself. If the connection fails, the sender reconnects with exponential
+ * backoff. Meanwhile the blocks are appended to the spool file, if configured, and sent before any new blocks once the connection is back,
+ * also after a restart. Without a spool file they are dropped, see {@link #getDroppedBlockCount()}. Blocks which were in flight when the
+ * connection broke may be sent twice.
+ * <p>
+ * See {@link EgymLogNetworkWriterConfig} for the settings, which must be bound in Guice. Closed by
+ * {@link de.egym.logqueue.EgymLogQueue#shutdown()}, which sends or spools all pending blocks. If the JVM exits without a shutdown, a
+ * shutdown hook does the same. Blocks which are still written while the JVM exits are sent or spooled right away on the calling thread.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogNetworkWriter implements EgymLogBatchWriter<String>, Closeable {
+	/** How long a request thread waits for free space in the queue before checking whether the writer got closed. */
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	/** How long {@link #close()} waits for the sender thread to send the pending blocks. */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	/** Longer spool entries can only stem from a corrupted spool file. */
+	private static final int MAX_SPOOL_ENTRY_LENGTH = 256 * 1024 * 1024;
+
+	private static final int SOCKET_BUFFER_SIZE = 64 * 1024;
+
+	private final EgymLogNetworkWriterConfig config;
+
+	private final BlockingQueue<byte[]> queue;
+
+	/** The number of blocks which were dropped while the collector was unreachable. */
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final Thread senderThread;
+
+	/** Sends or spools the pending blocks if the application exits without calling {@link #close()}. */
+	private final Thread shutdownHook;
+
+	/** True once the writer rejects new blocks. */
+	private volatile boolean closed;
+
+	/** True once the sender thread is asked to stop. Blocks are delivered on the calling thread afterwards. */
+	private volatile boolean stopping;
+
+	/** True once the connection and the spool file are closed for good. Guarded by the writer once the sender thread has stopped. */
+	private boolean released;
+
+	private volatile boolean connected;
+
+	// The connection state and the spool file are only accessed by the sender thread. Once it has stopped, they are guarded by the writer,
+	// see deliverDirectly().
+
+	/** Only accessed by the sender thread. Null while disconnected. */
+	private Socket socket;
+
+	/** Only accessed by the sender thread. Null while disconnected. */
+	private DataOutputStream out;
+
+	/** The earliest time of the next connection attempt. Only accessed by the sender thread. */
+	private long nextConnectMillis;
+
+	/** The delay after the next failed connection attempt. Only accessed by the sender thread. */
+	private long reconnectDelayMillis;
+
+	/** Null if blocks are dropped while disconnected. Only accessed by the sender thread once it is started. */
+	private final FileChannel spool;
+
+	/** The start of the first spooled block which was not sent yet. Only accessed by the sender thread. */
+	private long spoolReadPosition;
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 * @throws IOException
+	 *             if the spool file cannot be opened.
+	 */
+	@Inject
+	public EgymLogNetworkWriter(EgymLogNetworkWriterConfig config) throws IOException {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.config = config;
+		this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+		this.reconnectDelayMillis = config.getMinReconnectDelayMillis();
+		this.spool = config.getSpoolFile() != null ? FileChannel.open(config.getSpoolFile().toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE) : null;
+
+		this.senderThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				send();
+			}
+		}, "egym-log-network-writer");
+		senderThread.setDaemon(true);
+
+		this.shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stopSender();
+			}
+		}, "egym-log-network-writer-shutdown");
+
+		senderThread.start();
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Override
+	public void write(String msg) {
+		if (msg == null) {
+			return;
+		}
+
+		enqueue(msg.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void writeBatch(List<String> msgs) {
+		for (String msg : msgs) {
+			write(msg);
+		}
+	}
+
+	/**
+	 * @return true if the writer is currently connected to the collector.
+	 */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * @return the number of blocks which were dropped while the collector was unreachable and no spool file was configured, or because they
+	 *         were written while the writer was being closed.
+	 */
+	public long getDroppedBlockCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Sends or spools all pending blocks and closes the connection. Messages written afterwards are rejected. Closing twice has no
+	 * effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// The JVM is already shutting down and the hook stops the sender thread as well.
+		}
+		stopSender();
+
+		synchronized (this) {
+			released = true;
+			disconnect();
+			if (spool != null) {
+				spool.close();
+			}
+		}
+	}
+
+	/**
+	 * Stops the sender thread and waits for it to send or spool the queued blocks. The connection stays open for blocks which are written
+	 * afterwards.
+	 */
+	private void stopSender() {
+		stopping = true;
+		try {
+			senderThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Puts an encoded block into the queue, waiting for free space if necessary. Delivers it directly once the sender thread is stopping.
+	 */
+	private void enqueue(byte[] block) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				if (closed) {
+					throw new IllegalStateException("The writer has already been closed");
+				}
+				if (stopping) {
+					deliverDirectly(block);
+					return;
+				}
+				try {
+					if (queue.offer(block, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+						// If we raced with stopping the sender thread might not pick up the block anymore.
+						if (stopping && queue.remove(block)) {
+							deliverDirectly(block);
+						}
+						return;
+					}
+				} catch (InterruptedException e) {
+					// Do not lose the block, but preserve the interruption for the caller.
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Sends or spools a block on the calling thread once the sender thread has stopped, which hands the connection and the spool file over
+	 * to the writer's lock. Counts the block as dropped if the writer is already released.
+	 */
+	private void deliverDirectly(byte[] block) {
+		try {
+			senderThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (this) {
+			if (released || senderThread.isAlive()) {
+				droppedCount.incrementAndGet();
+				return;
+			}
+
+			if (socket == null && System.currentTimeMillis() >= nextConnectMillis) {
+				connect();
+			}
+			final List<byte[]> blocks = new ArrayList<>(1);
+			blocks.add(block);
+			deliver(blocks);
+		}
+	}
+
+	/**
+	 * The main loop of the sender thread. Leaves the connection open, so blocks written later can still be sent directly.
+	 */
+	private void send() {
+		final List<byte[]> blocks = new ArrayList<>();
+
+		while (!stopping || !queue.isEmpty()) {
+			if (socket == null && System.currentTimeMillis() >= nextConnectMillis) {
+				connect();
+			}
+
+			final byte[] block;
+			try {
+				block = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// The sender thread is only stopped via the closed flag.
+				continue;
+			}
+
+			if (block != null) {
+				// Take whatever else is waiting, so it is sent in as few frames as possible.
+				blocks.add(block);
+				queue.drainTo(blocks);
+				deliver(blocks);
+				blocks.clear();
+			}
+		}
+	}
+
+	/**
+	 * Sends the blocks if connected, otherwise appends them to the spool file or drops them.
+	 */
+	private void deliver(List<byte[]> blocks) {
+		if (socket != null) {
+			try {
+				sendFrames(blocks);
+				return;
+			} catch (IOException e) {
+				System.err.println("WARNING: Lost connection to log collector " + config.getHost() + ":" + config.getPort() + ": " + e);
+				disconnect();
+				scheduleReconnect();
+			}
+		}
+
+		if (spool == null) {
+			droppedCount.addAndGet(blocks.size());
+			return;
+		}
+
+		try {
+			appendToSpool(blocks);
+		} catch (IOException e) {
+			e.printStackTrace();
+			droppedCount.addAndGet(blocks.size());
+		}
+	}
+
+	/**
+	 * Connects to the collector and sends the spooled blocks. Schedules the next attempt if this fails.
+	 */
+	private void connect() {
+		try {
+			final Socket newSocket = new Socket();
+			socket = newSocket;
+			newSocket.setKeepAlive(true);
+			newSocket.setTcpNoDelay(true);
+			newSocket.connect(new InetSocketAddress(config.getHost(), config.getPort()), config.getConnectTimeoutMillis());
+			out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream(), SOCKET_BUFFER_SIZE));
+			connected = true;
+
+			replaySpool();
+			reconnectDelayMillis = config.getMinReconnectDelayMillis();
+		} catch (IOException e) {
+			disconnect();
+			scheduleReconnect();
+		}
+	}
+
+	private void scheduleReconnect() {
+		nextConnectMillis = System.currentTimeMillis() + reconnectDelayMillis;
+		reconnectDelayMillis = Math.min(2 * reconnectDelayMillis, config.getMaxReconnectDelayMillis());
+	}
+
+	private void disconnect() {
+		connected = false;
+		if (socket == null) {
+			return;
+		}
+
+		try {
+			if (out != null) {
+				out.flush();
+			}
+		} catch (IOException e) {
+			// The connection is broken anyway.
+		}
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Nothing left to do.
+		}
+		socket = null;
+		out = null;
+	}
+
+	/**
+	 * Sends the blocks in frames of up to the configured size and flushes the connection.
+	 */
+	private void sendFrames(List<byte[]> blocks) throws IOException {
+		int frameStart = 0;
+		int frameLength = 4;
+		for (int i = 0; i < blocks.size(); i++) {
+			final int blockLength = 4 + blocks.get(i).length;
+			if (i > frameStart && frameLength + blockLength > config.getMaxFrameSize()) {
+				sendFrame(blocks, frameStart, i, frameLength);
+				frameStart = i;
+				frameLength = 4;
+			}
+			frameLength += blockLength;
+		}
+		sendFrame(blocks, frameStart, blocks.size(), frameLength);
+		out.flush();
+	}
+
+	private void sendFrame(List<byte[]> blocks, int from, int to, int frameLength) throws IOException {
+		out.writeInt(frameLength);
+		out.writeInt(to - from);
+		for (int i = from; i < to; i++) {
+			final byte[] block = blocks.get(i);
+			out.writeInt(block.length);
+			out.write(block);
+		}
+	}
+
+	private void appendToSpool(List<byte[]> blocks) throws IOException {
+		int length = 0;
+		for (byte[] block : blocks) {
+			length += 4 + block.length;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		for (byte[] block : blocks) {
+			buffer.putInt(block.length).put(block);
+		}
+		buffer.flip();
+
+		EgymLogFileChannels.writeFully(spool, buffer, spool.size());
+	}
+
+	/**
+	 * Sends all spooled blocks and truncates the spool file. Cuts off an entry which was only partially written when the process ended.
+	 */
+	private void replaySpool() throws IOException {
+		if (spool == null) {
+			return;
+		}
+
+		final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+		final List<byte[]> blocks = new ArrayList<>();
+		long position = spoolReadPosition;
+		while (position < spool.size()) {
+			int frameLength = 4;
+			while (position + 4 <= spool.size() && frameLength < config.getMaxFrameSize()) {
+				lengthBuffer.clear();
+				EgymLogFileChannels.readFully(spool, lengthBuffer, position);
+				final int length = lengthBuffer.getInt(0);
+				if (length < 0 || length > MAX_SPOOL_ENTRY_LENGTH || position + 4 + length > spool.size()) {
+					break;
+				}
+
+				final ByteBuffer block = ByteBuffer.allocate(length);
+				EgymLogFileChannels.readFully(spool, block, position + 4);
+				blocks.add(block.array());
+				position += 4 + length;
+				frameLength += 4 + length;
+			}
+
+			if (blocks.isEmpty()) {
+				spool.truncate(position);
+				break;
+			}
+
+			sendFrames(blocks);
+			blocks.clear();
+			spoolReadPosition = position;
+		}
+
+		spool.truncate(0);
+		spoolReadPosition = 0;
+	}
+}
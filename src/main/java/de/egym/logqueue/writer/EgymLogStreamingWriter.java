@@ -0,0 +1,22 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+/**
+ * A writer which accepts log messages which are still held in a buffer, see
+ * {@link de.egym.logqueue.formatter.EgymLogStreamingFormatter}. Pipelines combining a streaming formatter with a streaming writer skip the
+ * conversion of each request block to a string.
+ */
+public interface EgymLogStreamingWriter extends EgymLogWriter<String> {
+	/**
+	 * Invoked for each log message. Must have the same effect as {@link #write(Object)} with the buffer's content.
+	 *
+	 * @param logMessage
+	 *            the log message. Must not be null. The caller reuses the buffer once this method returns, so implementations must copy
+	 *            whatever they keep.
+	 */
+	void writeChars(StringBuilder logMessage);
+}
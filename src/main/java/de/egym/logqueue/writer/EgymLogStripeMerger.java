@@ -0,0 +1,186 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the stripe files of an {@link EgymLogStripedFileWriter} into a single stream, in the order the messages were logged. The header
+ * lines are removed. Can be run from the command line:
+ *
+ * <pre>
+ * java de.egym.logqueue.writer.EgymLogStripeMerger merged.log app.log.0 app.log.1 app.log.2 app.log.3
+ * </pre>
+ */
+public final class EgymLogStripeMerger {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private EgymLogStripeMerger() {
+		throw new AssertionError("Do not instantiate");
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: EgymLogStripeMerger <output file> <stripe file>...");
+			System.exit(1);
+		}
+
+		final List<File> stripeFiles = new ArrayList<>();
+		for (String arg : Arrays.asList(args).subList(1, args.length)) {
+			stripeFiles.add(new File(arg));
+		}
+
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[0]), UTF8))) {
+			merge(stripeFiles, out);
+		}
+	}
+
+	/**
+	 * Performs a k-way merge of the stripe files by the sequence numbers in the header lines. Lines before the first header line of a file
+	 * are skipped.
+	 *
+	 * @param stripeFiles
+	 *            the stripe files, e.g. all files written by one writer. Must not be null.
+	 * @param out
+	 *            receives the messages without the header lines, each terminated by a newline. Must not be null. Is not closed.
+	 * @throws IOException
+	 *             if a stripe file cannot be read or the output cannot be written.
+	 */
+	public static void merge(List<File> stripeFiles, Writer out) throws IOException {
+		if (stripeFiles == null) {
+			throw new IllegalArgumentException("stripeFiles must not be null");
+		}
+		if (out == null) {
+			throw new IllegalArgumentException("out must not be null");
+		}
+
+		final List<StripeReader> readers = new ArrayList<>(stripeFiles.size());
+		try {
+			final PriorityQueue<StripeReader> queue = new PriorityQueue<>(Math.max(1, stripeFiles.size()), new Comparator<StripeReader>() {
+				@Override
+				public int compare(StripeReader a, StripeReader b) {
+					return Long.compare(a.sequence, b.sequence);
+				}
+			});
+
+			for (File stripeFile : stripeFiles) {
+				final StripeReader reader = new StripeReader(stripeFile);
+				readers.add(reader);
+				if (reader.nextHeader()) {
+					queue.add(reader);
+				}
+			}
+
+			while (!queue.isEmpty()) {
+				final StripeReader reader = queue.poll();
+				if (reader.copyBlock(out)) {
+					queue.add(reader);
+				}
+			}
+			out.flush();
+		} finally {
+			for (StripeReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the blocks of a single stripe file.
+	 */
+	private static class StripeReader implements Closeable {
+		private final File file;
+
+		private final BufferedReader reader;
+
+		private final StringBuilder line = new StringBuilder();
+
+		/** The sequence number of the current block. */
+		private long sequence;
+
+		StripeReader(File file) throws IOException {
+			this.file = file;
+			this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+		}
+
+		/**
+		 * Skips to the next header line and parses it.
+		 *
+		 * @return false if the end of the file was reached.
+		 */
+		boolean nextHeader() throws IOException {
+			while (readLine()) {
+				if (line.length() > 0 && line.charAt(0) == EgymLogStripedFileWriter.HEADER_MARKER) {
+					parseHeader();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Copies the lines of the current block to the output and reads the header of the next block.
+		 *
+		 * @return false if the end of the file was reached.
+		 */
+		boolean copyBlock(Writer out) throws IOException {
+			while (readLine()) {
+				if (line.length() > 0 && line.charAt(0) == EgymLogStripedFileWriter.HEADER_MARKER) {
+					parseHeader();
+					return true;
+				}
+				out.append(line).append('\n');
+			}
+			return false;
+		}
+
+		private void parseHeader() throws IOException {
+			final int end = line.indexOf(" ");
+			try {
+				sequence = Long.parseLong(line.substring(1, end < 0 ? line.length() : end));
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid header line in " + file + ": " + line.substring(1), e);
+			}
+		}
+
+		/**
+		 * Reads the next line into {@link #line}. Only '\n' terminates a line, so carriage returns in messages are preserved.
+		 *
+		 * @return false if the end of the file was reached.
+		 */
+		private boolean readLine() throws IOException {
+			line.setLength(0);
+			int c;
+			while ((c = reader.read()) >= 0) {
+				if (c == '\n') {
+					return true;
+				}
+				line.append((char) c);
+			}
+			return line.length() > 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.EgymLogThreadLocalBuffer;
+import de.egym.logqueue.config.EgymLogFileWriterConfig;
+import de.egym.logqueue.config.EgymLogStripedFileWriterConfig;
+
+/**
+ * Spreads the log messages over several files, each written by its own {@link EgymLogFileWriter} with its own buffers and locks, so
+ * request threads do not contend on a single writer. Each thread always writes to the same stripe, chosen by its thread id.
+ * <p>
+ * Each message is preceded by a header line, which starts with {@link #HEADER_MARKER} followed by a global sequence number and the
+ * timestamp in milliseconds, separated by a space. {@link EgymLogStripeMerger} uses them to merge the stripes into a single stream in the
+ * original order.
+ * </p>
+ * <p>
+ * See {@link EgymLogStripedFileWriterConfig} for the settings, which must be bound in Guice. Closed by
+ * {@link de.egym.logqueue.EgymLogQueue#shutdown()}, which writes all pending messages.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class EgymLogStripedFileWriter implements EgymLogBatchWriter<String>, EgymLogStreamingWriter, Closeable {
+	/** Starts each header line: The ASCII record separator, which does not occur in regular log output. */
+	public static final char HEADER_MARKER = '\u001e';
+
+	private final EgymLogFileWriter[] stripes;
+
+	/** Held while a message is numbered and handed to the stripe, one per stripe. */
+	private final Object[] stripeLocks;
+
+	/**
+	 * The sequence number of the next message, across all stripes. Only taken while holding a stripe lock, so that each stripe file is
+	 * sorted by sequence number, which {@link EgymLogStripeMerger} relies on.
+	 */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/** The header and the message are assembled here. */
+	private final EgymLogThreadLocalBuffer buffer = new EgymLogThreadLocalBuffer();
+
+	/**
+	 * @param config
+	 *            the writer configuration. Must not be null.
+	 * @throws IOException
+	 *             if a stripe file cannot be opened.
+	 */
+	@Inject
+	public EgymLogStripedFileWriter(EgymLogStripedFileWriterConfig config) throws IOException {
+		if (config == null) {
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		final EgymLogFileWriterConfig fileWriterConfig = config.getFileWriterConfig();
+		this.stripes = new EgymLogFileWriter[config.getStripes()];
+		this.stripeLocks = new Object[stripes.length];
+		for (int i = 0; i < stripeLocks.length; i++) {
+			stripeLocks[i] = new Object();
+		}
+		try {
+			for (int i = 0; i < stripes.length; i++) {
+				stripes[i] = new EgymLogFileWriter(fileWriterConfig.withFile(getStripeFile(fileWriterConfig.getFile(), i)));
+			}
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param file
+	 *            the configured file. Must not be null.
+	 * @param stripe
+	 *            the index of the stripe.
+	 * @return the file the stripe is written to.
+	 */
+	public static File getStripeFile(File file, int stripe) {
+		if (file == null) {
+			throw new IllegalArgumentException("file must not be null");
+		}
+		return new File(file.getPath() + "." + stripe);
+	}
+
+	@Override
+	public void write(String msg) {
+		if (msg == null) {
+			return;
+		}
+
+		writeToStripe(msg);
+	}
+
+	@Override
+	public void writeChars(StringBuilder msg) {
+		if (msg == null) {
+			throw new IllegalArgumentException("msg must not be null");
+		}
+
+		writeToStripe(msg);
+	}
+
+	/**
+	 * Writes all messages to the stripe with a single call. The header lines keep the messages apart.
+	 */
+	@Override
+	public void writeBatch(List<String> msgs) {
+		final int index = getStripeIndex();
+		final StringBuilder str = buffer.acquire();
+		try {
+			synchronized (stripeLocks[index]) {
+				for (String msg : msgs) {
+					if (msg != null) {
+						if (str.length() > 0) {
+							str.append('\n');
+						}
+						appendHeader(str).append(msg);
+					}
+				}
+
+				if (str.length() > 0) {
+					stripes[index].writeChars(str);
+				}
+			}
+		} finally {
+			buffer.release(str);
+		}
+	}
+
+	/**
+	 * Writes all pending messages of all stripes.
+	 */
+	public void flush() {
+		for (EgymLogFileWriter stripe : stripes) {
+			stripe.flush();
+		}
+	}
+
+	/**
+	 * Closes all stripes. Closing twice has no effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (EgymLogFileWriter stripe : stripes) {
+			if (stripe == null) {
+				continue;
+			}
+			try {
+				stripe.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Numbers the message and writes it while holding the stripe's lock, so the sequence numbers in each stripe file are ascending.
+	 */
+	private void writeToStripe(CharSequence msg) {
+		final int index = getStripeIndex();
+		final StringBuilder str = buffer.acquire();
+		try {
+			synchronized (stripeLocks[index]) {
+				appendHeader(str).append(msg);
+				stripes[index].writeChars(str);
+			}
+		} finally {
+			buffer.release(str);
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock of the stripe the message is written to.
+	 */
+	private StringBuilder appendHeader(StringBuilder str) {
+		return str.append(HEADER_MARKER).append(sequence.getAndIncrement()).append(' ').append(System.currentTimeMillis()).append('\n');
+	}
+
+	private int getStripeIndex() {
+		return (int) (Thread.currentThread().getId() % stripes.length);
+	}
+}
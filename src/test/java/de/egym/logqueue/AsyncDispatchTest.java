@@ -0,0 +1,128 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.egym.logqueue.config.EgymLogDispatchConfig;
+import de.egym.logqueue.config.EgymLogPipelineModule;
+import de.egym.logqueue.config.EgymLogQueueConfig;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+
+/**
+ * Tests the asynchronous dispatch mode.
+ */
+@Test
+public class AsyncDispatchTest {
+	/**
+	 * The test configuration.
+	 */
+	private static class EgymTestLogPipelineModule extends EgymLogPipelineModule {
+		@Override
+		protected void configure() {
+			skipDecoration().formatWith(EgymLogPlainTextFormatter.class).writeTo(InMemoryWriter.class);
+		}
+	}
+
+	/**
+	 * The test configuration with a batch writer.
+	 */
+	private static class EgymTestBatchLogPipelineModule extends EgymLogPipelineModule {
+		@Override
+		protected void configure() {
+			skipDecoration().formatWith(EgymLogPlainTextFormatter.class).writeTo(InMemoryBatchWriter.class);
+		}
+	}
+
+	private static final Logger log = LoggerFactory.getLogger(AsyncDispatchTest.class);
+
+	private EgymLogQueue logQueue;
+
+	private InMemoryWriter writer;
+
+	@Test
+	public void testAllRequestsWrittenOnShutdown() {
+		givenAsyncPipelineConfiguration(4, 2);
+		whenLoggingRequests(500);
+		whenShuttingDown();
+		thenEnsureRequestsWritten(500);
+	}
+
+	@Test
+	public void testLoggingAfterShutdown() {
+		givenAsyncPipelineConfiguration(4, 1);
+		whenShuttingDown();
+		whenLoggingRequests(3);
+		thenEnsureRequestsWritten(3);
+	}
+
+	@Test
+	public void testBatchWriterReceivesRequestsInOrder() {
+		givenAsyncBatchPipelineConfiguration(1024, 1);
+		whenLoggingRequests(500);
+		whenShuttingDown();
+		thenEnsureRequestsWritten(500);
+		thenEnsureRequestsWrittenInOrder();
+	}
+
+	private void givenAsyncBatchPipelineConfiguration(int queueCapacity, int dispatcherThreads) {
+		final EgymLogQueueConfig config = EgymLogQueueConfig.defaults().withDispatch(
+				EgymLogDispatchConfig.async(queueCapacity, dispatcherThreads));
+		final Injector injector = Guice.createInjector(new EgymLogModule(config), new EgymTestBatchLogPipelineModule());
+		logQueue = injector.getInstance(EgymLogQueue.class);
+		writer = injector.getInstance(InMemoryBatchWriter.class);
+	}
+
+	private void givenAsyncPipelineConfiguration(int queueCapacity, int dispatcherThreads) {
+		final EgymLogQueueConfig config = EgymLogQueueConfig.defaults().withDispatch(
+				EgymLogDispatchConfig.async(queueCapacity, dispatcherThreads));
+		final Injector injector = Guice.createInjector(new EgymLogModule(config), new EgymTestLogPipelineModule());
+		logQueue = injector.getInstance(EgymLogQueue.class);
+		writer = injector.getInstance(InMemoryWriter.class);
+	}
+
+	private void whenLoggingRequests(int numRequests) {
+		for (int i = 0; i < numRequests; i++) {
+			logQueue.startRequest();
+			log.info("Request {}", i);
+			log.info("Done");
+			logQueue.endRequest();
+		}
+	}
+
+	private void whenShuttingDown() {
+		logQueue.shutdown();
+	}
+
+	private void thenEnsureRequestsWritten(int numRequests) {
+		final List<String> logMessages = writer.getLogMessages();
+		assertEquals(logMessages.size(), numRequests);
+
+		for (String logMessage : logMessages) {
+			// Each request must be written as one atomic block.
+			final String[] lines = logMessage.split("\n");
+			assertEquals(lines.length, 2);
+			assertTrue(lines[0].contains("Request "));
+			assertTrue(lines[1].endsWith("Done"));
+		}
+	}
+
+	private void thenEnsureRequestsWrittenInOrder() {
+		final List<String> logMessages = writer.getLogMessages();
+		for (int i = 0; i < logMessages.size(); i++) {
+			assertTrue(logMessages.get(i).contains("Request " + i + "\n"), logMessages.get(i));
+		}
+	}
+}
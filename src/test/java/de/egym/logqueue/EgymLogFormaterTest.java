@@ -5,12 +5,22 @@
  */
 package de.egym.logqueue;
 
+import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
 import org.testng.annotations.Test;
 
+import de.egym.logqueue.config.EgymLogRequestLimits;
 import de.egym.logqueue.formatter.EgymLogFormatterUtil;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+import de.egym.logqueue.slf4j.EgymLogger;
 
 @Test
 public class EgymLogFormaterTest {
@@ -40,6 +50,116 @@ public class EgymLogFormaterTest {
 		assertEquals(str, "2013-12-15 17:23:42.073");
 	}
 
+	@Test
+	public void testAppendTimestamp() {
+		final long timestampMillis = new DateTime(2013, 12, 15, 17, 23, 42, 73).getMillis();
+		for (long millis : new long[] { timestampMillis, timestampMillis + 1, timestampMillis + 926, timestampMillis + 927,
+				timestampMillis - 74, timestampMillis, -1, 0, -1001 }) {
+			// when
+			final StringBuilder str = new StringBuilder("prefix ");
+			EgymLogFormatterUtil.appendTimestamp(millis, str);
+
+			// then
+			final String expected = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss.SSS").print(millis);
+			assertEquals(str.toString(), "prefix " + expected);
+			assertEquals(EgymLogFormatterUtil.formatTimestamp(millis), expected);
+		}
+	}
+
+	@Test
+	public void testAppendTimestampAfterTimeZoneChange() {
+		final DateTimeZone defaultZone = DateTimeZone.getDefault();
+		final long timestampMillis = new DateTime(2013, 12, 15, 17, 23, 42, 73, DateTimeZone.UTC).getMillis();
+		try {
+			// given
+			DateTimeZone.setDefault(DateTimeZone.UTC);
+			assertEquals(EgymLogFormatterUtil.formatTimestamp(timestampMillis), "2013-12-15 17:23:42.073");
+
+			// when
+			DateTimeZone.setDefault(DateTimeZone.forOffsetHours(1));
+
+			// then
+			assertEquals(EgymLogFormatterUtil.formatTimestamp(timestampMillis), "2013-12-15 18:23:42.073");
+		} finally {
+			DateTimeZone.setDefault(defaultZone);
+		}
+	}
+
+	@Test
+	public void testFormatMultiLineMessageAndStackTrace() {
+		// given
+		final EgymLogger logger = mock(EgymLogger.class);
+		when(logger.getName()).thenReturn("Test");
+		final StackTraceElement b = new StackTraceElement("B", "b", "B.java", 2);
+		final StackTraceElement c = new StackTraceElement("C", "c", "C.java", 3);
+		final RuntimeException outer = new RuntimeException("Outer\nsecond line");
+		outer.setStackTrace(new StackTraceElement[] { new StackTraceElement("A", "a", "A.java", 1), b, c });
+		final IOException suppressed = new IOException("Disk full");
+		suppressed.setStackTrace(new StackTraceElement[] { new StackTraceElement("E", "e", "E.java", 5), c });
+		outer.addSuppressed(suppressed);
+		final IllegalStateException inner = new IllegalStateException("Inner");
+		inner.setStackTrace(new StackTraceElement[] { new StackTraceElement("D", "d", null, -2), b, c });
+		outer.initCause(inner);
+		inner.initCause(outer);
+		final EgymLogRecord logRecord = new EgymLogRecord(1000, 0, logger, EgymLogLevel.ERROR, "Hello\n\nWorld\n\n", outer);
+
+		// when
+		final String output = EgymLogFormatterUtil.formatLogRecord(logRecord, "|");
+
+		// then
+		final String stackTrace = "\n||java.lang.RuntimeException: Outer\n||second line"
+				+ "\n||\tat A.a(A.java:1)"
+				+ "\n||\tat B.b(B.java:2)"
+				+ "\n||\tat C.c(C.java:3)"
+				+ "\n||\tSuppressed: java.io.IOException: Disk full"
+				+ "\n||\t\tat E.e(E.java:5)"
+				+ "\n||\t\t... 1 more"
+				+ "\n||Caused by: java.lang.IllegalStateException: Inner"
+				+ "\n||\tat D.d(Native Method)"
+				+ "\n||\t... 2 more"
+				+ "\n||Caused by: [CIRCULAR REFERENCE:java.lang.RuntimeException: Outer\n||second line]";
+		assertEquals(output, "|" + EgymLogFormatterUtil.formatTimestamp(1000) + " ERROR Test: Hello\n||\n||World" + stackTrace);
+
+		// Same output as Throwable.printStackTrace().
+		final StringWriter printed = new StringWriter();
+		outer.printStackTrace(new PrintWriter(printed));
+		// Except for the circular reference marker, which differs between Java versions.
+		final String printedStackTrace = "\n||" + printed.toString().trim().replace(System.lineSeparator(), "\n||");
+		final int circularReference = stackTrace.indexOf("\n||Caused by: [CIRCULAR REFERENCE:");
+		assertEquals(printedStackTrace.substring(0, circularReference), stackTrace.substring(0, circularReference));
+	}
+
+	@Test
+	public void testDroppedRecordsAreReported() {
+		// given
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited()
+				.withMaxRecords(1));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, mock(EgymLogger.class), EgymLogLevel.INFO, "printed", null));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, mock(EgymLogger.class), EgymLogLevel.INFO, "dropped", null));
+
+		// when
+		final String output = new EgymLogPlainTextFormatter().format(builder.build());
+
+		// then
+		assertTrue(output.contains("printed"));
+		assertTrue(output.endsWith("\t... 1 log records dropped because the request exceeded its log limits\n"));
+	}
+
+	@Test
+	public void testDroppedRecordsOfSilentRequestAreNotReported() {
+		// given
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited()
+				.withMaxRecords(1));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, mock(EgymLogger.class), EgymLogLevel.DEBUG, "kept", null));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, mock(EgymLogger.class), EgymLogLevel.DEBUG, "dropped", null));
+
+		// when
+		final String output = new EgymLogPlainTextFormatter().format(builder.build());
+
+		// then
+		assertEquals(output, "");
+	}
+
 	@Test
 	public void testFormatLogLevel1() {
 		testFormatLogLevel(EgymLogLevel.TRACE, "TRACE");
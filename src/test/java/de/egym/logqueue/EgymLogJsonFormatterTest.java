@@ -0,0 +1,109 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.formatter.EgymLogJsonFormatter;
+import de.egym.logqueue.slf4j.EgymLogger;
+
+@Test
+public class EgymLogJsonFormatterTest {
+	private final EgymLogJsonFormatter formatter = new EgymLogJsonFormatter();
+
+	@Test
+	public void testFormatFiltersRecordsBelowThreshold() {
+		// given
+		final EgymLogger logger = mock(EgymLogger.class);
+		when(logger.getName()).thenReturn("com.example.Service");
+		final EgymLogRequestRecord requestRecord = createRequestRecord(
+				new EgymLogRecord(1001, 0, logger, EgymLogLevel.DEBUG, "Hidden", null),
+				new EgymLogRecord(1002, 0, logger, EgymLogLevel.INFO, "Hello \"World\"\n\tC:\\temp \u0001\u2028", null),
+				new EgymLogRecord(1003, 0, logger, EgymLogLevel.INFO, null, null));
+
+		// when
+		final String output = formatter.format(requestRecord);
+
+		// then
+		assertEquals(output, "{\"timestampMillis\":1000,\"maxLevel\":\"INFO\",\"audit\":false,\"droppedRecords\":0,\"records\":["
+				+ "{\"timestampMillis\":1002,\"level\":\"INFO\",\"logger\":\"com.example.Service\","
+				+ "\"message\":\"Hello \\\"World\\\"\\n\\tC:\\\\temp \\u0001\\u2028\"},"
+				+ "{\"timestampMillis\":1003,\"level\":\"INFO\",\"logger\":\"com.example.Service\"}]}");
+	}
+
+	@Test
+	public void testFormatAuditRequestWithThrowable() {
+		// given
+		final Exception cause = new IllegalStateException("Root cause");
+		cause.setStackTrace(new StackTraceElement[] { new StackTraceElement("com.example.Dao", "load", "Dao.java", 42) });
+		final Exception exception = new RuntimeException("Failed", cause);
+		exception.setStackTrace(new StackTraceElement[] { new StackTraceElement("com.example.Service", "run", null, -1) });
+		final EgymLogger logger = mock(EgymLogger.class);
+		when(logger.getName()).thenReturn("Test");
+		final EgymLogRequestRecord requestRecord = createRequestRecord(
+				new EgymLogRecord(1001, 0, logger, EgymLogLevel.DEBUG, "Visible", null),
+				new EgymLogRecord(1002, 0, logger, EgymLogLevel.ERROR, "Boom", exception));
+
+		// when
+		final StringBuilder str = new StringBuilder("prefix ");
+		final boolean formatted = formatter.formatTo(requestRecord, str);
+
+		// then
+		assertTrue(formatted);
+		assertEquals(str.toString(), "prefix {\"timestampMillis\":1000,\"maxLevel\":\"ERROR\",\"audit\":true,\"droppedRecords\":0,"
+				+ "\"records\":[{\"timestampMillis\":1001,\"level\":\"DEBUG\",\"logger\":\"Test\",\"message\":\"Visible\"},"
+				+ "{\"timestampMillis\":1002,\"level\":\"ERROR\",\"logger\":\"Test\",\"message\":\"Boom\","
+				+ "\"stackTrace\":\"java.lang.RuntimeException: Failed"
+				+ "\\n\\tat com.example.Service.run(Unknown Source)"
+				+ "\\nCaused by: java.lang.IllegalStateException: Root cause"
+				+ "\\n\\tat com.example.Dao.load(Dao.java:42)\"}]}");
+		assertEquals(formatter.format(requestRecord), str.substring("prefix ".length()));
+	}
+
+	@Test
+	public void testStackTraceWithSuppressedAndCircularCause() {
+		// given
+		final StackTraceElement main = new StackTraceElement("com.example.Main", "main", "Main.java", 9);
+		final Exception exception = new RuntimeException("Failed");
+		exception.setStackTrace(new StackTraceElement[] { new StackTraceElement("com.example.Service", "run", "Service.java", 7), main });
+		final Exception suppressed = new IllegalStateException("Close failed");
+		suppressed.setStackTrace(new StackTraceElement[] { new StackTraceElement("com.example.Dao", "close", "Dao.java", 3), main });
+		exception.addSuppressed(suppressed);
+		final Exception cause = new IllegalArgumentException("Bad input", exception);
+		cause.setStackTrace(new StackTraceElement[0]);
+		exception.initCause(cause);
+		final EgymLogger logger = mock(EgymLogger.class);
+		when(logger.getName()).thenReturn("Test");
+		final EgymLogRequestRecord requestRecord = createRequestRecord(new EgymLogRecord(1001, 0, logger, EgymLogLevel.ERROR, null,
+				exception));
+
+		// when
+		final String output = formatter.format(requestRecord);
+
+		// then
+		assertEquals(output, "{\"timestampMillis\":1000,\"maxLevel\":\"ERROR\",\"audit\":true,\"droppedRecords\":0,\"records\":["
+				+ "{\"timestampMillis\":1001,\"level\":\"ERROR\",\"logger\":\"Test\",\"stackTrace\":\"java.lang.RuntimeException: Failed"
+				+ "\\n\\tat com.example.Service.run(Service.java:7)"
+				+ "\\n\\tat com.example.Main.main(Main.java:9)"
+				+ "\\n\\tSuppressed: java.lang.IllegalStateException: Close failed"
+				+ "\\n\\t\\tat com.example.Dao.close(Dao.java:3)"
+				+ "\\n\\t\\t... 1 more"
+				+ "\\nCaused by: java.lang.IllegalArgumentException: Bad input"
+				+ "\\nCaused by: [CIRCULAR REFERENCE:java.lang.RuntimeException: Failed]\"}]}");
+	}
+
+	private static EgymLogRequestRecord createRequestRecord(EgymLogRecord... logRecords) {
+		final List<EgymLogRecord> list = new ArrayList<>(Arrays.asList(logRecords));
+		return new EgymLogRequestRecord(1000, 0, list);
+	}
+}
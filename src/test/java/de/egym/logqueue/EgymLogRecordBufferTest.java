@@ -0,0 +1,111 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogRequestLimits;
+import de.egym.logqueue.slf4j.EgymLogger;
+
+@Test
+public class EgymLogRecordBufferTest {
+	private final EgymLogger logger = mock(EgymLogger.class);
+
+	@Test
+	public void testEncodedRecordsAreDecoded() {
+		// given
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited()
+				.withOffHeapBuffer(64));
+		final List<EgymLogRecord> expected = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			expected.add(new EgymLogRecord(1000L + i, i, logger, EgymLogLevel.INFO, "Record {}", new Object[] { i }, null));
+		}
+		expected.add(new EgymLogRecord(2000L, 100L, logger, EgymLogLevel.ERROR, "Failed", new IllegalStateException("broken")));
+
+		// when
+		for (EgymLogRecord logRecord : expected) {
+			builder.addLogRecord(logRecord);
+		}
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		assertEquals(requestRecord.getLogRecords().size(), expected.size());
+		assertEquals(requestRecord.getMaxLogLevel(), EgymLogLevel.ERROR);
+
+		int i = 0;
+		for (EgymLogRecord actual : requestRecord.getLogRecords()) {
+			assertEquals(actual.getTimestampMillis(), expected.get(i).getTimestampMillis());
+			assertEquals(actual.getLogLevel(), expected.get(i).getLogLevel());
+			assertSame(actual.getSource(), logger);
+			assertEquals(actual.getMessage(), expected.get(i).getMessage());
+			i++;
+		}
+		assertEquals(requestRecord.getLogRecords().get(42).getMessage(), "Record 42");
+		assertEquals(requestRecord.getLogRecords().get(100).getThrowable().toString(), "java.lang.IllegalStateException: broken");
+	}
+
+	@Test
+	public void testParameterizedMessagesAreNotRenderedWhenEncoded() {
+		// given
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited()
+				.withOffHeapBuffer(1024));
+		final EgymLogRecord logRecord = spy(new EgymLogRecord(1000L, 0L, logger, EgymLogLevel.INFO, "{} {} {} {} {} {} {}", new Object[] {
+				"text", 42, 43L, true, 1.5d, EgymLogLevel.WARN, null, new IllegalStateException("unreferenced") }, null));
+
+		// when
+		builder.addLogRecord(logRecord);
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		verify(logRecord, never()).getMessage();
+		final EgymLogRecord decoded = requestRecord.getLogRecords().get(0);
+		assertEquals(decoded.getMessagePattern(), "{} {} {} {} {} {} {}");
+		assertEquals(decoded.getArguments()[1], 42);
+		assertEquals(decoded.getArguments()[2], 43L);
+		assertEquals(decoded.getMessage(), "text 42 43 true 1.5 WARN null");
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testReleasedRecordsCannotBeAccessed() {
+		// given
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited()
+				.withOffHeapBuffer(1024));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, logger, EgymLogLevel.INFO, "Hello", null));
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// when
+		requestRecord.release();
+
+		// then
+		requestRecord.getLogRecords().iterator();
+	}
+
+	@Test
+	public void testLimitsApplyToEncodedRecords() {
+		// given
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited()
+				.withOffHeapBuffer(1024).withMaxRecords(2));
+
+		// when
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, logger, EgymLogLevel.INFO, "first", null));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, logger, EgymLogLevel.INFO, "second", null));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, logger, EgymLogLevel.INFO, "dropped", null));
+		builder.addLogRecord(new EgymLogRecord(1000L, 0L, logger, EgymLogLevel.WARN, "warning", null));
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		assertEquals(requestRecord.getLogRecords().size(), 3);
+		assertEquals(requestRecord.getLogRecords().get(1).getMessage(), "second");
+		assertEquals(requestRecord.getLogRecords().get(2).getMessage(), "warning");
+		assertEquals(requestRecord.getDroppedRecordCount(), 1L);
+	}
+}
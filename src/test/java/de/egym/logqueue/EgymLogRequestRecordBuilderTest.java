@@ -0,0 +1,172 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.Arrays;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogRequestLimits;
+import de.egym.logqueue.slf4j.EgymLogger;
+
+@Test
+public class EgymLogRequestRecordBuilderTest {
+	private final EgymLogger logger = mock(EgymLogger.class);
+
+	private EgymLogRequestRecordBuilder builder;
+
+	@BeforeMethod
+	public void init() {
+		builder = new EgymLogRequestRecordBuilder(1387139060000L, 0L);
+	}
+
+	@Test
+	public void testBuild() {
+		final EgymLogRecord logRecord1 = createLogRecord("Hello");
+		final EgymLogRecord logRecord2 = createLogRecord("World");
+		builder.addLogRecord(logRecord1);
+		builder.addLogRecord(logRecord2);
+
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		assertEquals(requestRecord.getTimestampMillis(), 1387139060000L);
+		assertEquals(requestRecord.getLogRecords().size(), 2);
+		assertSame(requestRecord.getLogRecords().get(0), logRecord1);
+		assertSame(requestRecord.getLogRecords().get(1), logRecord2);
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testBuiltRecordIsImmutable() {
+		builder.addLogRecord(createLogRecord("Hello"));
+		builder.build().getLogRecords().clear();
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testAddAfterBuild() {
+		builder.build();
+		builder.addLogRecord(createLogRecord("Hello"));
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testBuildTwice() {
+		builder.build();
+		builder.build();
+	}
+
+	@Test
+	public void testLimitKeepsSevereAndMostRecentRecords() {
+		// given
+		builder = new EgymLogRequestRecordBuilder(1387139060000L, 0L, EgymLogRequestLimits.unlimited().withMaxRecords(2)
+				.withRetainedRecords(2));
+		final EgymLogRecord first = createLogRecord("first");
+		final EgymLogRecord second = createLogRecord("second");
+		final EgymLogRecord warning = createLogRecord(EgymLogLevel.WARN, "warning");
+		final EgymLogRecord error = createLogRecord(EgymLogLevel.ERROR, "error");
+		final EgymLogRecord recent1 = createLogRecord("recent1");
+		final EgymLogRecord recent2 = createLogRecord("recent2");
+
+		// when
+		builder.addLogRecord(first);
+		builder.addLogRecord(second);
+		builder.addLogRecord(createLogRecord("dropped1"));
+		builder.addLogRecord(warning);
+		builder.addLogRecord(createLogRecord("dropped2"));
+		builder.addLogRecord(recent1);
+		builder.addLogRecord(error);
+		builder.addLogRecord(recent2);
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		assertEquals(requestRecord.getLogRecords(), Arrays.asList(first, second, warning, recent1, error, recent2));
+		assertEquals(requestRecord.getDroppedRecordCount(), 2L);
+	}
+
+	@Test
+	public void testByteLimitWithoutRetainedRecords() {
+		// given
+		builder = new EgymLogRequestRecordBuilder(1387139060000L, 0L, EgymLogRequestLimits.unlimited().withMaxBytes(1));
+		final EgymLogRecord first = createLogRecord("first");
+		final EgymLogRecord error = createLogRecord(EgymLogLevel.ERROR, "error");
+
+		// when
+		builder.addLogRecord(first);
+		builder.addLogRecord(createLogRecord("dropped1"));
+		builder.addLogRecord(error);
+		builder.addLogRecord(createLogRecord("dropped2"));
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		assertEquals(requestRecord.getLogRecords(), Arrays.asList(first, error));
+		assertEquals(requestRecord.getDroppedRecordCount(), 2L);
+	}
+
+	@Test
+	public void testUnlimitedDropsNothing() {
+		for (int i = 0; i < 100; i++) {
+			builder.addLogRecord(createLogRecord("record" + i));
+		}
+
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		assertEquals(requestRecord.getLogRecords().size(), 100);
+		assertEquals(requestRecord.getDroppedRecordCount(), 0L);
+	}
+
+	@Test
+	public void testLogLevelStatistics() {
+		// given
+		builder.addLogRecord(createLogRecord(EgymLogLevel.DEBUG, "debug"));
+		builder.addLogRecord(createLogRecord("info1"));
+		builder.addLogRecord(createLogRecord("info2"));
+		builder.addLogRecord(createLogRecord(EgymLogLevel.WARN, "warning"));
+
+		// when
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		assertEquals(requestRecord.getMaxLogLevel(), EgymLogLevel.WARN);
+		assertEquals(requestRecord.getLogRecordCount(EgymLogLevel.INFO), 2);
+		assertEquals(requestRecord.getLogRecordCount(EgymLogLevel.ERROR), 0);
+		assertEquals(requestRecord.getLogRecordCountAtLeast(EgymLogLevel.INFO), 3);
+		assertTrue(EgymLogLevels.isAudit(requestRecord));
+	}
+
+	@Test
+	public void testLogLevelStatisticsExcludeDroppedRecords() {
+		// given
+		builder = new EgymLogRequestRecordBuilder(1387139060000L, 0L, EgymLogRequestLimits.unlimited().withMaxRecords(1));
+		builder.addLogRecord(createLogRecord(EgymLogLevel.TRACE, "trace"));
+		builder.addLogRecord(createLogRecord(EgymLogLevel.DEBUG, "dropped"));
+
+		// when
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		assertEquals(requestRecord.getMaxLogLevel(), EgymLogLevel.TRACE);
+		assertEquals(requestRecord.getLogRecordCount(EgymLogLevel.DEBUG), 0);
+		assertFalse(EgymLogLevels.isAudit(requestRecord));
+	}
+
+	@Test
+	public void testEmptyRequestStatistics() {
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		assertEquals(requestRecord.getMaxLogLevel(), EgymLogLevel.TRACE);
+		assertEquals(requestRecord.getLogRecordCountAtLeast(EgymLogLevel.TRACE), 0);
+	}
+
+	private EgymLogRecord createLogRecord(String message) {
+		return createLogRecord(EgymLogLevel.INFO, message);
+	}
+
+	private EgymLogRecord createLogRecord(EgymLogLevel level, String message) {
+		return new EgymLogRecord(1387139060000L, 0L, logger, level, message, null);
+	}
+}
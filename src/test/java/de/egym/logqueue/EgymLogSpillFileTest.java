@@ -0,0 +1,164 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogRequestLimits;
+import de.egym.logqueue.slf4j.EgymLogger;
+
+@Test
+public class EgymLogSpillFileTest {
+	private final EgymLogger logger1 = mock(EgymLogger.class);
+
+	private final EgymLogger logger2 = mock(EgymLogger.class);
+
+	private File spillDirectory;
+
+	@BeforeMethod
+	public void init() throws IOException {
+		spillDirectory = File.createTempFile("egym-log-test-", "");
+		assertTrue(spillDirectory.delete());
+		assertTrue(spillDirectory.mkdir());
+	}
+
+	@AfterMethod
+	public void cleanUp() {
+		for (File file : spillDirectory.listFiles()) {
+			file.delete();
+		}
+		spillDirectory.delete();
+	}
+
+	@Test
+	public void testSpilledRecordsAreStreamedBack() {
+		// given
+		final EgymLogRequestRecordBuilder builder = createBuilder();
+		final IllegalStateException exception = new IllegalStateException("outer", new IllegalArgumentException("inner"));
+		final List<EgymLogRecord> expected = new ArrayList<>();
+		expected.add(new EgymLogRecord(1000L, 1L, logger1, EgymLogLevel.INFO, "Hello", null));
+		expected.add(new EgymLogRecord(2000L, 2L, logger2, EgymLogLevel.ERROR, "Failed", exception));
+		expected.add(new EgymLogRecord(3000L, 3L, logger1, EgymLogLevel.DEBUG, "{} {}", new Object[] { "Hello", 42 }, null));
+
+		// when
+		for (EgymLogRecord logRecord : expected) {
+			builder.addLogRecord(logRecord);
+		}
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		// then
+		assertTrue(requestRecord.isSpilled());
+		assertEquals(spillDirectory.listFiles().length, 1);
+		assertEquals(requestRecord.getMaxLogLevel(), EgymLogLevel.ERROR);
+
+		final List<EgymLogRecord> actual = new ArrayList<>(requestRecord.getLogRecords());
+		assertEquals(actual.size(), expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertRecordEquals(actual.get(i), expected.get(i));
+			assertRecordEquals(requestRecord.getLogRecords().get(i), expected.get(i));
+		}
+
+		final Throwable throwable = actual.get(1).getThrowable();
+		assertEquals(throwable.toString(), exception.toString());
+		assertEquals(throwable.getCause().toString(), exception.getCause().toString());
+		assertStackTraceEquals(throwable.getStackTrace(), exception.getStackTrace());
+		assertStackTraceEquals(throwable.getCause().getStackTrace(), exception.getCause().getStackTrace());
+		assertTrue(ExceptionUtils.getFullStackTrace(throwable).startsWith(exception.toString()));
+	}
+
+	@Test
+	public void testFileIsDeletedWithLastReference() {
+		// given
+		final EgymLogRequestRecordBuilder builder = createBuilder();
+		builder.addLogRecord(new EgymLogRecord(1000L, 1L, logger1, EgymLogLevel.INFO, "Hello", null));
+		final EgymLogRequestRecord requestRecord = builder.build();
+		requestRecord.retain(2);
+
+		// when
+		requestRecord.release();
+		new EgymLogRequestRecord(requestRecord).release();
+
+		// then
+		assertEquals(spillDirectory.listFiles().length, 1);
+
+		// when
+		requestRecord.release();
+
+		// then
+		assertEquals(spillDirectory.listFiles().length, 0);
+	}
+
+	@Test
+	public void testReleaseClosesStreamOfPartialIteration() {
+		// given
+		final EgymLogRequestRecordBuilder builder = createBuilder();
+		for (int i = 0; i < 3; i++) {
+			builder.addLogRecord(new EgymLogRecord(1000L + i, i, logger1, EgymLogLevel.INFO, "Hello " + i, null));
+		}
+		final EgymLogRequestRecord requestRecord = builder.build();
+		final Iterator<EgymLogRecord> iterator = requestRecord.getLogRecords().iterator();
+		assertEquals(iterator.next().getMessage(), "Hello 0");
+
+		// when
+		requestRecord.release();
+
+		// then
+		assertEquals(spillDirectory.listFiles().length, 0);
+		try {
+			iterator.next();
+			fail("The stream of the iterator must be closed");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+	}
+
+	@Test
+	public void testBelowThresholdIsNotSpilled() {
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited()
+				.withSpillThreshold(1024 * 1024).withSpillDirectory(spillDirectory));
+		builder.addLogRecord(new EgymLogRecord(1000L, 1L, logger1, EgymLogLevel.INFO, "Hello", null));
+
+		final EgymLogRequestRecord requestRecord = builder.build();
+
+		assertFalse(requestRecord.isSpilled());
+		assertEquals(spillDirectory.listFiles().length, 0);
+	}
+
+	private EgymLogRequestRecordBuilder createBuilder() {
+		return new EgymLogRequestRecordBuilder(1000L, 0L, EgymLogRequestLimits.unlimited().withSpillThreshold(1)
+				.withSpillDirectory(spillDirectory));
+	}
+
+	private static void assertRecordEquals(EgymLogRecord actual, EgymLogRecord expected) {
+		assertEquals(actual.getTimestampMillis(), expected.getTimestampMillis());
+		assertEquals(actual.getNanoTime(), expected.getNanoTime());
+		assertSame(actual.getSource(), expected.getSource());
+		assertEquals(actual.getLogLevel(), expected.getLogLevel());
+		assertEquals(actual.getMessage(), expected.getMessage());
+	}
+
+	private static void assertStackTraceEquals(StackTraceElement[] actual, StackTraceElement[] expected) {
+		assertEquals(actual.length, expected.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(actual[i].getClassName(), expected[i].getClassName());
+			assertEquals(actual[i].getMethodName(), expected[i].getMethodName());
+			assertEquals(actual[i].getFileName(), expected[i].getFileName());
+			assertEquals(actual[i].getLineNumber(), expected[i].getLineNumber());
+		}
+	}
+}
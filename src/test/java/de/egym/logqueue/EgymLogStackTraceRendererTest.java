@@ -0,0 +1,165 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogStackTraceConfig;
+import de.egym.logqueue.formatter.EgymLogStackTraceRenderer;
+import de.egym.logqueue.slf4j.EgymLogger;
+
+@Test
+public class EgymLogStackTraceRendererTest {
+	private static final Pattern FULL = Pattern.compile("\n\\|\\|Stack trace ([0-9a-f]{16}):\n\\|\\|(.*)\n\\|\\|\tat (?s:.*)");
+
+	private static final Pattern REFERENCE = Pattern
+			.compile("\n\\|\\|(.*)\n\\|\\|\t\\.\\.\\. stack trace ([0-9a-f]{16}), occurrence (\\d+)");
+
+	@Test
+	public void testPrintsFullStackTraceByDefault() {
+		// given
+		final EgymLogStackTraceRenderer renderer = new EgymLogStackTraceRenderer(EgymLogStackTraceConfig.defaults());
+		final Exception exception = createException("Failed", 1);
+
+		// when
+		final String first = render(renderer, exception, 1000);
+		final String second = render(renderer, exception, 1001);
+
+		// then
+		assertEquals(first, "\n||java.lang.IllegalStateException: Failed\n||\tat A.a(A.java:1)\n||\tat B.b(B.java:2)");
+		assertEquals(second, first);
+	}
+
+	@Test
+	public void testReferencesRepeatedStackTraceWithinWindow() {
+		// given
+		final EgymLogStackTraceRenderer renderer = new EgymLogStackTraceRenderer(EgymLogStackTraceConfig.defaults().withDeduplication(
+				60000));
+
+		// when
+		final String first = render(renderer, createException("Failed", 1), 1000);
+		final String second = render(renderer, createException("Failed again", 1), 2000);
+		final String third = render(renderer, createException("Failed", 1), 3000);
+		final String otherLine = render(renderer, createException("Failed", 7), 4000);
+		final String nextWindow = render(renderer, createException("Failed", 1), 61000);
+
+		// then
+		final Matcher full = matchFull(first);
+		final String fingerprint = full.group(1);
+		assertEquals(full.group(2), "java.lang.IllegalStateException: Failed");
+		assertReference(second, "java.lang.IllegalStateException: Failed again", fingerprint, 2);
+		assertReference(third, "java.lang.IllegalStateException: Failed", fingerprint, 3);
+		assertNotEquals(matchFull(otherLine).group(1), fingerprint);
+		assertEquals(matchFull(nextWindow).group(1), fingerprint);
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsedFingerprint() {
+		// given
+		final EgymLogStackTraceRenderer renderer = new EgymLogStackTraceRenderer(EgymLogStackTraceConfig.defaults()
+				.withDeduplication(60000).withFingerprintCacheSize(2));
+		render(renderer, createException("A", 1), 1000);
+		render(renderer, createException("B", 2), 1000);
+
+		// when
+		render(renderer, createException("A", 1), 1000);
+		render(renderer, createException("C", 3), 1000);
+
+		// then
+		matchFull(render(renderer, createException("B", 2), 1000));
+		assertTrue(REFERENCE.matcher(render(renderer, createException("C", 3), 1000)).matches());
+	}
+
+	@Test
+	public void testTruncatesAndCollapsesFrames() {
+		// given
+		final EgymLogStackTraceRenderer renderer = new EgymLogStackTraceRenderer(EgymLogStackTraceConfig.defaults()
+				.withMaxFramesPerCause(3).withCollapsedPackages("org.framework.", "sun.reflect."));
+		final StackTraceElement reflection = new StackTraceElement("sun.reflect.R", "r", "R.java", 3);
+		final StackTraceElement main = new StackTraceElement("app.Main", "main", "Main.java", 9);
+		final Exception cause = new IllegalArgumentException("Inner");
+		cause.setStackTrace(new StackTraceElement[] { reflection, new StackTraceElement("app.E", "e", "E.java", 5), main });
+		final Exception exception = new IllegalStateException("Outer", cause);
+		exception.setStackTrace(new StackTraceElement[] { new StackTraceElement("app.A", "a", "A.java", 1),
+				new StackTraceElement("org.framework.X", "x", "X.java", 1), new StackTraceElement("org.framework.Y", "y", "Y.java", 2),
+				new StackTraceElement("app.B", "b", "B.java", 2), reflection, new StackTraceElement("app.C", "c", "C.java", 3),
+				new StackTraceElement("app.D", "d", "D.java", 4), main });
+
+		// when
+		final String output = render(renderer, exception, 1000);
+
+		// then
+		assertEquals(output, "\n||java.lang.IllegalStateException: Outer"
+				+ "\n||\tat app.A.a(A.java:1)"
+				+ "\n||\t... 2 frames collapsed"
+				+ "\n||\tat app.B.b(B.java:2)"
+				+ "\n||\t... 4 frames truncated"
+				+ "\n||Caused by: java.lang.IllegalArgumentException: Inner"
+				+ "\n||\tat sun.reflect.R.r(R.java:3)"
+				+ "\n||\tat app.E.e(E.java:5)"
+				+ "\n||\t... 1 more");
+	}
+
+	@Test
+	public void testDecodedThrowableSharesFingerprint() throws IOException {
+		// given
+		final EgymLogStackTraceRenderer renderer = new EgymLogStackTraceRenderer(EgymLogStackTraceConfig.defaults().withDeduplication(
+				60000));
+		final Exception exception = createException("Failed", 1);
+		exception.initCause(createException("Cause", 3));
+		final EgymLogRecordCodec codec = new EgymLogRecordCodec();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		codec.encode(new DataOutputStream(bytes), new EgymLogRecord(1000L, 0L, mock(EgymLogger.class), EgymLogLevel.ERROR, "Failed",
+				exception));
+
+		// when
+		final Throwable decoded = codec.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))).getThrowable();
+		final String first = render(renderer, exception, 1000);
+		final String second = render(renderer, decoded, 2000);
+
+		// then
+		assertNotSame(decoded.getClass(), exception.getClass());
+		assertReference(second, "java.lang.IllegalStateException: Failed", matchFull(first).group(1), 2);
+	}
+
+	private static String render(EgymLogStackTraceRenderer renderer, Throwable throwable, long timestampMillis) {
+		final StringBuilder str = new StringBuilder();
+		renderer.appendStackTrace(throwable, timestampMillis, "|", str);
+		return str.toString();
+	}
+
+	private static Exception createException(String message, int lineNumber) {
+		final Exception exception = new IllegalStateException(message);
+		exception.setStackTrace(new StackTraceElement[] { new StackTraceElement("A", "a", "A.java", lineNumber),
+				new StackTraceElement("B", "b", "B.java", 2) });
+		return exception;
+	}
+
+	private static Matcher matchFull(String output) {
+		final Matcher matcher = FULL.matcher(output);
+		assertTrue(matcher.matches(), output);
+		return matcher;
+	}
+
+	private static void assertReference(String output, String description, String fingerprint, int occurrence) {
+		final Matcher matcher = REFERENCE.matcher(output);
+		assertTrue(matcher.matches(), output);
+		assertEquals(matcher.group(1), description);
+		assertEquals(matcher.group(2), fingerprint);
+		assertEquals(Integer.parseInt(matcher.group(3)), occurrence);
+	}
+}
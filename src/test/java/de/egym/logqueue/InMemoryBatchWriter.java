@@ -0,0 +1,27 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import java.util.List;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Singleton;
+import de.egym.logqueue.writer.EgymLogBatchWriter;
+
+/**
+ * In-memory writer which also accepts batches.
+ */
+@Singleton
+@ThreadSafe
+class InMemoryBatchWriter extends InMemoryWriter implements EgymLogBatchWriter<String> {
+	@Override
+	public synchronized void writeBatch(List<String> logMessages) {
+		for (String logMessage : logMessages) {
+			write(logMessage);
+		}
+	}
+}
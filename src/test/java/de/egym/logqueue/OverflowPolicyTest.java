@@ -0,0 +1,159 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.joda.time.DateTime;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogDispatchConfig;
+import de.egym.logqueue.config.EgymLogOverflowPolicy;
+import de.egym.logqueue.slf4j.EgymLogger;
+
+/**
+ * Tests the overflow policies of the {@link EgymLogAsyncDispatcher}.
+ */
+@Test
+public class OverflowPolicyTest {
+	/**
+	 * Records all dispatched request records. Blocks on the first one until it is released.
+	 */
+	private static class BlockingDispatcher implements EgymLogDispatcher {
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		private final List<EgymLogRequestRecord> requestRecords = new ArrayList<>();
+
+		@Override
+		public void dispatch(EgymLogRequestRecord requestRecord) {
+			started.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			synchronized (requestRecords) {
+				requestRecords.add(requestRecord);
+			}
+		}
+
+		@Override
+		public void dispatchAll(List<EgymLogRequestRecord> requestRecords) {
+			for (EgymLogRequestRecord requestRecord : requestRecords) {
+				dispatch(requestRecord);
+			}
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		@Override
+		public long getDroppedRequestRecordCount() {
+			return 0;
+		}
+	}
+
+	private final EgymLogger logger = mock(EgymLogger.class);
+
+	private BlockingDispatcher delegate;
+
+	private EgymLogAsyncDispatcher dispatcher;
+
+	@AfterMethod
+	public void cleanup() {
+		delegate.released.countDown();
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testDropNewest() throws InterruptedException {
+		givenFullQueue(EgymLogDispatchConfig.async(2, 1).withOverflowPolicy(EgymLogOverflowPolicy.DROP_NEWEST));
+
+		final EgymLogRequestRecord r1 = whenDispatching(EgymLogLevel.INFO);
+		final EgymLogRequestRecord r2 = whenDispatching(EgymLogLevel.INFO);
+		final EgymLogRequestRecord r3 = whenDispatching(EgymLogLevel.INFO);
+		whenDispatching(EgymLogLevel.ERROR);
+
+		thenEnsureDispatched(1, r1, r2, r3);
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		givenFullQueue(EgymLogDispatchConfig.async(2, 1).withOverflowPolicy(EgymLogOverflowPolicy.DROP_OLDEST));
+
+		final EgymLogRequestRecord r1 = whenDispatching(EgymLogLevel.INFO);
+		whenDispatching(EgymLogLevel.ERROR);
+		final EgymLogRequestRecord r3 = whenDispatching(EgymLogLevel.INFO);
+		final EgymLogRequestRecord r4 = whenDispatching(EgymLogLevel.INFO);
+
+		thenEnsureDispatched(1, r1, r3, r4);
+	}
+
+	@Test
+	public void testDropBelowAudit() throws InterruptedException {
+		givenFullQueue(EgymLogDispatchConfig.async(2, 1).withOverflowPolicy(EgymLogOverflowPolicy.DROP_BELOW_AUDIT));
+
+		final EgymLogRequestRecord r1 = whenDispatching(EgymLogLevel.INFO);
+		whenDispatching(EgymLogLevel.INFO);
+		final EgymLogRequestRecord r3 = whenDispatching(EgymLogLevel.WARN);
+		whenDispatching(EgymLogLevel.DEBUG);
+		final EgymLogRequestRecord r5 = whenDispatching(EgymLogLevel.ERROR);
+
+		thenEnsureDispatched(2, r1, r3, r5);
+	}
+
+	@Test
+	public void testBlockWithTimeout() throws InterruptedException {
+		givenFullQueue(EgymLogDispatchConfig.async(2, 1).withBlockTimeout(50));
+
+		final EgymLogRequestRecord r1 = whenDispatching(EgymLogLevel.INFO);
+		final EgymLogRequestRecord r2 = whenDispatching(EgymLogLevel.INFO);
+		final EgymLogRequestRecord r3 = whenDispatching(EgymLogLevel.INFO);
+		whenDispatching(EgymLogLevel.ERROR);
+
+		thenEnsureDispatched(1, r1, r2, r3);
+	}
+
+	private void givenFullQueue(EgymLogDispatchConfig config) {
+		delegate = new BlockingDispatcher();
+		dispatcher = new EgymLogAsyncDispatcher(delegate, config, "overflow-test");
+	}
+
+	private EgymLogRequestRecord whenDispatching(EgymLogLevel logLevel) throws InterruptedException {
+		final EgymLogRequestRecordBuilder builder = new EgymLogRequestRecordBuilder(DateTime.now());
+		builder.addLogRecord(new EgymLogRecord(DateTime.now(), logger, logLevel, "Hello World", null));
+
+		final EgymLogRequestRecord requestRecord = builder.build();
+		dispatcher.dispatch(requestRecord);
+
+		// Make sure the first record is taken off the queue by the dispatcher thread, so the queue's capacity is left for the others.
+		delegate.started.await();
+
+		return requestRecord;
+	}
+
+	private void thenEnsureDispatched(long expectedDroppedCount, EgymLogRequestRecord... expectedRequestRecords) {
+		assertEquals(dispatcher.getDroppedRequestRecordCount(), expectedDroppedCount);
+
+		delegate.released.countDown();
+		dispatcher.shutdown();
+
+		synchronized (delegate.requestRecords) {
+			assertEquals(delegate.requestRecords, Arrays.asList(expectedRequestRecords));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.config.EgymLogDispatchConfig;
+import de.egym.logqueue.config.EgymLogPipelineModule;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+import de.egym.logqueue.writer.EgymLogWriter;
+
+/**
+ * Ensures that pipelines with their own dispatch configuration do not slow each other down.
+ */
+@Test
+public class PipelineIsolationTest {
+	/**
+	 * Writer which blocks until it is released.
+	 */
+	@Singleton
+	@ThreadSafe
+	static class BlockingWriter implements EgymLogWriter<String> {
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		@Override
+		public void write(String logMessage) {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void release() {
+			latch.countDown();
+		}
+	}
+
+	/**
+	 * The test configuration.
+	 */
+	private static class EgymTestLogPipelineModule extends EgymLogPipelineModule {
+		@Override
+		protected void configure() {
+			skipDecoration().formatWith(EgymLogPlainTextFormatter.class).dispatchWith(EgymLogDispatchConfig.async(16, 1))
+					.writeTo(BlockingWriter.class);
+			skipDecoration().formatWith(EgymLogPlainTextFormatter.class).dispatchWith(EgymLogDispatchConfig.async(16, 1))
+					.writeTo(InMemoryWriter.class);
+		}
+	}
+
+	private static final Logger log = LoggerFactory.getLogger(PipelineIsolationTest.class);
+
+	private EgymLogQueue logQueue;
+
+	private BlockingWriter blockingWriter;
+
+	private InMemoryWriter writer;
+
+	@Test
+	public void testBlockedPipelineDoesNotStallOthers() throws InterruptedException {
+		givenPipelineConfiguration();
+		whenLoggingRequests(10);
+		thenEnsureRequestsWrittenWhileOtherPipelineIsBlocked(10);
+		whenReleasingAndShuttingDown();
+	}
+
+	private void givenPipelineConfiguration() {
+		final Injector injector = Guice.createInjector(new EgymLogModule(), new EgymTestLogPipelineModule());
+		logQueue = injector.getInstance(EgymLogQueue.class);
+		blockingWriter = injector.getInstance(BlockingWriter.class);
+		writer = injector.getInstance(InMemoryWriter.class);
+	}
+
+	private void whenLoggingRequests(int numRequests) {
+		for (int i = 0; i < numRequests; i++) {
+			logQueue.startRequest();
+			log.info("Request {}", i);
+			logQueue.endRequest();
+		}
+	}
+
+	private void whenReleasingAndShuttingDown() {
+		blockingWriter.release();
+		logQueue.shutdown();
+	}
+
+	private void thenEnsureRequestsWrittenWhileOtherPipelineIsBlocked(int numRequests) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10000;
+		List<String> logMessages = writer.getLogMessages();
+
+		while (logMessages.size() < numRequests && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			logMessages = writer.getLogMessages();
+		}
+
+		assertEquals(logMessages.size(), numRequests);
+	}
+}
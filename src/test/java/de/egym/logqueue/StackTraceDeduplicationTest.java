@@ -0,0 +1,69 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.egym.logqueue.config.EgymLogPipelineModule;
+import de.egym.logqueue.config.EgymLogQueueConfig;
+import de.egym.logqueue.config.EgymLogStackTraceConfig;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+
+/**
+ * Ensures that each pipeline deduplicates stack traces on its own, so every output contains the full stack trace before referencing it.
+ */
+@Test
+public class StackTraceDeduplicationTest {
+	/**
+	 * The test configuration.
+	 */
+	private static class EgymTestLogPipelineModule extends EgymLogPipelineModule {
+		@Override
+		protected void configure() {
+			skipDecoration().formatWith(EgymLogPlainTextFormatter.class).writeTo(InMemoryWriter.class);
+			skipDecoration().formatWith(EgymLogPlainTextFormatter.class).writeTo(InMemoryBatchWriter.class);
+		}
+	}
+
+	private static final Logger log = LoggerFactory.getLogger(StackTraceDeduplicationTest.class);
+
+	@Test
+	public void testEachPipelinePrintsFullStackTraceFirst() {
+		// given
+		final Injector injector = Guice.createInjector(new EgymLogModule(EgymLogQueueConfig.defaults().withStackTraces(
+				EgymLogStackTraceConfig.defaults().withDeduplication(60000))), new EgymTestLogPipelineModule());
+		final EgymLogQueue logQueue = injector.getInstance(EgymLogQueue.class);
+		final Exception exception = new IllegalStateException("Failed");
+
+		// when
+		for (int i = 0; i < 2; i++) {
+			logQueue.startRequest();
+			log.error("Request failed", exception);
+			logQueue.endRequest();
+		}
+		logQueue.shutdown();
+
+		// then
+		thenFullStackTraceThenReference(injector.getInstance(InMemoryWriter.class).getLogMessages());
+		thenFullStackTraceThenReference(injector.getInstance(InMemoryBatchWriter.class).getLogMessages());
+	}
+
+	private void thenFullStackTraceThenReference(List<String> logMessages) {
+		assertEquals(logMessages.size(), 2);
+		assertTrue(logMessages.get(0).contains("\tat "), logMessages.get(0));
+		assertTrue(logMessages.get(1).contains("... stack trace "), logMessages.get(1));
+		assertFalse(logMessages.get(1).contains("\tat "), logMessages.get(1));
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Minimal single-threaded micro benchmark harness. Measures the CPU time and the number of allocated bytes per operation of the current
+ * thread. Benchmarks are plain main() classes and are not executed as part of the test suite.
+ */
+final class Benchmark {
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	private Benchmark() {
+		throw new AssertionError("Do not instantiate");
+	}
+
+	/**
+	 * Runs the operation repeatedly and prints the results to stdout.
+	 *
+	 * @param name
+	 *            the name to print. Must not be null.
+	 * @param warmupIterations
+	 *            the number of iterations which are not measured.
+	 * @param iterations
+	 *            the number of measured iterations. Must be positive.
+	 * @param operation
+	 *            the operation to measure. Must not be null.
+	 */
+	static void run(String name, int warmupIterations, int iterations, Runnable operation) {
+		if (iterations <= 0) {
+			throw new IllegalArgumentException("iterations must be positive but is: " + iterations);
+		}
+
+		for (int i = 0; i < warmupIterations; i++) {
+			operation.run();
+		}
+
+		final long startCpuNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+		final long startBytes = getAllocatedBytes();
+		final long startNanos = System.nanoTime();
+
+		for (int i = 0; i < iterations; i++) {
+			operation.run();
+		}
+
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		final long cpuNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpuNanos;
+		final long allocatedBytes = getAllocatedBytes() - startBytes;
+
+		System.out.printf("%-40s %12.0f ns/op (cpu) %12.0f ns/op (wall) %12s bytes/op%n", name, (double) cpuNanos / iterations,
+				(double) elapsedNanos / iterations, startBytes < 0 ? "n/a" : String.valueOf(allocatedBytes / iterations));
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread or -1 if the JVM does not support allocation measurement.
+	 */
+	private static long getAllocatedBytes() {
+		if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
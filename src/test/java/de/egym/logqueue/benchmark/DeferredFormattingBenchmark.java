@@ -0,0 +1,87 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.benchmark;
+
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.egym.logqueue.EgymLogModule;
+import de.egym.logqueue.EgymLogQueue;
+import de.egym.logqueue.config.EgymLogPipelineModule;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+
+/**
+ * Compares eager and deferred message formatting for a request which logs many DEBUG lines and is never audited, ie. the DEBUG lines are
+ * thrown away by the formatter. The eager variant formats the message before calling the logger, which is what the logger itself did
+ * before formatting was deferred.
+ * <p>
+ * The last variant passes a UUID, which is not on the whitelist of immutable argument types and therefore still rendered at log time.
+ * </p>
+ */
+public class DeferredFormattingBenchmark {
+	private static final int DEBUG_LINES_PER_REQUEST = 200;
+
+	private static final Logger log = LoggerFactory.getLogger(DeferredFormattingBenchmark.class);
+
+	public static void main(String[] args) {
+		final Injector injector = Guice.createInjector(new EgymLogModule(), new EgymLogPipelineModule() {
+			@Override
+			protected void configure() {
+				skipDecoration().formatWith(EgymLogPlainTextFormatter.class).writeTo(NullWriter.class);
+			}
+		});
+		final EgymLogQueue logQueue = injector.getInstance(EgymLogQueue.class);
+
+		final Runnable eager = new Runnable() {
+			@Override
+			public void run() {
+				logQueue.startRequest();
+				log.info("Processing request");
+				for (int i = 0; i < DEBUG_LINES_PER_REQUEST; i++) {
+					log.debug(MessageFormatter.format("Loaded entity {} with state {}", i, "ACTIVE").getMessage());
+				}
+				logQueue.endRequest();
+			}
+		};
+
+		final Runnable deferred = new Runnable() {
+			@Override
+			public void run() {
+				logQueue.startRequest();
+				log.info("Processing request");
+				for (int i = 0; i < DEBUG_LINES_PER_REQUEST; i++) {
+					log.debug("Loaded entity {} with state {}", i, "ACTIVE");
+				}
+				logQueue.endRequest();
+			}
+		};
+
+		final UUID entityId = UUID.randomUUID();
+		final Runnable deferredNonWhitelisted = new Runnable() {
+			@Override
+			public void run() {
+				logQueue.startRequest();
+				log.info("Processing request");
+				for (int i = 0; i < DEBUG_LINES_PER_REQUEST; i++) {
+					log.debug("Loaded entity {} with state {}", entityId, "ACTIVE");
+				}
+				logQueue.endRequest();
+			}
+		};
+
+		for (int round = 0; round < 3; round++) {
+			Benchmark.run("eager formatting", 2000, 5000, eager);
+			Benchmark.run("deferred formatting", 2000, 5000, deferred);
+			Benchmark.run("deferred formatting, UUID argument", 2000, 5000, deferredNonWhitelisted);
+		}
+	}
+}
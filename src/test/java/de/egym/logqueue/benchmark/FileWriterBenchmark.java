@@ -0,0 +1,217 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import de.egym.logqueue.config.EgymLogFileWriterConfig;
+import de.egym.logqueue.config.EgymLogFsyncPolicy;
+import de.egym.logqueue.config.EgymLogSegmentWriterConfig;
+import de.egym.logqueue.config.EgymLogStripedFileWriterConfig;
+import de.egym.logqueue.writer.EgymLogFileWriter;
+import de.egym.logqueue.writer.EgymLogMappedSegmentWriter;
+import de.egym.logqueue.writer.EgymLogStdOutWriter;
+import de.egym.logqueue.writer.EgymLogStripedFileWriter;
+import de.egym.logqueue.writer.EgymLogWriter;
+
+/**
+ * Compares the throughput of the stdout writer, the file writer and the memory-mapped segment writer for typical request blocks. Stdout is redirected to a file, so both
+ * writers hit the same kind of storage. Then compares a single file writer with a striped file writer of one stripe per thread, with
+ * several threads writing concurrently.
+ */
+public class FileWriterBenchmark {
+	private static final int LINES_PER_BLOCK = 20;
+
+	private static final int BLOCKS = 200000;
+
+	private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16 };
+
+	public static void main(String[] args) throws IOException {
+		final String block = createBlock();
+		final long blockBytes = block.getBytes(StandardCharsets.UTF_8).length + 1;
+
+		final PrintStream originalOut = System.out;
+		final File stdOutFile = File.createTempFile("egym-log-benchmark-", ".out");
+		final PrintStream redirectedOut = new PrintStream(new BufferedOutputStream(new FileOutputStream(stdOutFile), 8192), false, "UTF-8");
+
+		final File logFile = File.createTempFile("egym-log-benchmark-", ".log");
+		final EgymLogFileWriter batchFileWriter = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(logFile));
+		final EgymLogFileWriter syncFileWriter = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(logFile).withFsyncPolicy(
+				EgymLogFsyncPolicy.PER_BATCH));
+
+		final File segmentDirectory = File.createTempFile("egym-log-benchmark-", "");
+		segmentDirectory.delete();
+		segmentDirectory.mkdir();
+		final EgymLogMappedSegmentWriter segmentWriter = new EgymLogMappedSegmentWriter(EgymLogSegmentWriterConfig
+				.toDirectory(segmentDirectory));
+
+		try {
+			for (int round = 0; round < 3; round++) {
+				System.setOut(redirectedOut);
+				final long stdOutNanos = measure(new EgymLogStdOutWriter(), block, new Runnable() {
+					@Override
+					public void run() {
+						redirectedOut.flush();
+					}
+				});
+				System.setOut(originalOut);
+				print("stdout writer", stdOutNanos, blockBytes);
+
+				print("file writer, fsync never", measure(batchFileWriter, block, new Runnable() {
+					@Override
+					public void run() {
+						batchFileWriter.flush();
+					}
+				}), blockBytes);
+
+				print("file writer, fsync per batch", measure(syncFileWriter, block, new Runnable() {
+					@Override
+					public void run() {
+						syncFileWriter.flush();
+					}
+				}), blockBytes);
+
+				print("mapped segment writer", measure(segmentWriter, block, new Runnable() {
+					@Override
+					public void run() {
+						// Nothing to flush, the operating system writes the pages back.
+					}
+				}), blockBytes);
+			}
+
+			for (int round = 0; round < 3; round++) {
+				for (int threads : THREAD_COUNTS) {
+					print("file writer, " + threads + " threads", measureConcurrently(batchFileWriter, block, threads, new Runnable() {
+						@Override
+						public void run() {
+							batchFileWriter.flush();
+						}
+					}), blockBytes);
+
+					final EgymLogStripedFileWriter stripedWriter = new EgymLogStripedFileWriter(EgymLogStripedFileWriterConfig.of(
+							EgymLogFileWriterConfig.toFile(logFile)).withStripes(threads));
+					try {
+						print("striped file writer, " + threads + " stripes", measureConcurrently(stripedWriter, block, threads,
+								new Runnable() {
+									@Override
+									public void run() {
+										stripedWriter.flush();
+									}
+								}), blockBytes);
+					} finally {
+						stripedWriter.close();
+						for (int stripe = 0; stripe < threads; stripe++) {
+							EgymLogStripedFileWriter.getStripeFile(logFile, stripe).delete();
+						}
+					}
+				}
+			}
+		} finally {
+			System.setOut(originalOut);
+			batchFileWriter.close();
+			syncFileWriter.close();
+			segmentWriter.close();
+			for (File segmentFile : segmentDirectory.listFiles()) {
+				segmentFile.delete();
+			}
+			segmentDirectory.delete();
+			redirectedOut.close();
+			stdOutFile.delete();
+			logFile.delete();
+		}
+	}
+
+	/**
+	 * Measured here rather than with {@link Benchmark}, which prints to the redirected stdout.
+	 *
+	 * @return the elapsed nanoseconds of the measured run.
+	 */
+	private static long measure(EgymLogWriter<String> writer, String block, Runnable completion) {
+		for (int i = 0; i < BLOCKS / 10; i++) {
+			writer.write(block);
+		}
+		completion.run();
+
+		final long startNanos = System.nanoTime();
+		for (int i = 0; i < BLOCKS; i++) {
+			writer.write(block);
+		}
+		completion.run();
+		return System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Like {@link #measure(EgymLogWriter, String, Runnable)}, but the blocks are split over several threads which start at the same time.
+	 *
+	 * @return the elapsed nanoseconds of the measured run, until all threads are done.
+	 */
+	private static long measureConcurrently(final EgymLogWriter<String> writer, final String block, int threads, Runnable completion) {
+		for (int i = 0; i < BLOCKS / 10; i++) {
+			writer.write(block);
+		}
+		completion.run();
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> writerThreads = new ArrayList<>(threads);
+		for (int t = 0; t < threads; t++) {
+			final int blocks = BLOCKS / threads + (t < BLOCKS % threads ? 1 : 0);
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					for (int i = 0; i < blocks; i++) {
+						writer.write(block);
+					}
+				}
+			});
+			thread.start();
+			writerThreads.add(thread);
+		}
+
+		final long startNanos = System.nanoTime();
+		start.countDown();
+		for (Thread thread : writerThreads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		completion.run();
+		return System.nanoTime() - startNanos;
+	}
+
+	private static void print(String name, long elapsedNanos, long blockBytes) {
+		final double elapsedSeconds = elapsedNanos / 1e9;
+		System.out.printf("%-40s %12.0f blocks/s %12.1f MB/s%n", name, BLOCKS / elapsedSeconds, BLOCKS * blockBytes / elapsedSeconds
+				/ (1024 * 1024));
+	}
+
+	private static String createBlock() {
+		final StringBuilder block = new StringBuilder();
+		for (int i = 0; i < LINES_PER_BLOCK; i++) {
+			if (i > 0) {
+				block.append('\n');
+			}
+			block.append("\t2013-12-15 21:24:20.123 INFO  [de.egym.service.WorkoutService] Loaded workout ").append(i)
+					.append(" for user 4711");
+		}
+		return block.toString();
+	}
+}
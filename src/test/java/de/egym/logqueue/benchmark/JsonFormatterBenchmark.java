@@ -0,0 +1,68 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.egym.logqueue.EgymLogModule;
+import de.egym.logqueue.EgymLogQueue;
+import de.egym.logqueue.EgymLogRequestRecord;
+import de.egym.logqueue.config.EgymLogPipelineModule;
+import de.egym.logqueue.formatter.EgymLogFormatter;
+import de.egym.logqueue.formatter.EgymLogJsonFormatter;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+import de.egym.logqueue.writer.EgymLogWriter;
+
+/**
+ * Compares the allocations of the JSON formatter and the plain-text formatter for a typical request, once with a writer that takes
+ * strings and once with a streaming writer, which lets the pipeline format into its reused per-thread buffer. The remaining allocations
+ * of the streaming variants are those of the request itself, ie. the log records.
+ */
+public class JsonFormatterBenchmark {
+	private static final int LINES_PER_REQUEST = 20;
+
+	private static final Logger log = LoggerFactory.getLogger(JsonFormatterBenchmark.class);
+
+	public static void main(String[] args) {
+		final Runnable plainText = createRequest(EgymLogPlainTextFormatter.class, NullWriter.class);
+		final Runnable plainTextStreaming = createRequest(EgymLogPlainTextFormatter.class, NullStreamingWriter.class);
+		final Runnable json = createRequest(EgymLogJsonFormatter.class, NullWriter.class);
+		final Runnable jsonStreaming = createRequest(EgymLogJsonFormatter.class, NullStreamingWriter.class);
+
+		for (int round = 0; round < 3; round++) {
+			Benchmark.run("plain text, string writer", 2000, 5000, plainText);
+			Benchmark.run("plain text, streaming writer", 2000, 5000, plainTextStreaming);
+			Benchmark.run("json, string writer", 2000, 5000, json);
+			Benchmark.run("json, streaming writer", 2000, 5000, jsonStreaming);
+		}
+	}
+
+	private static Runnable createRequest(final Class<? extends EgymLogFormatter<EgymLogRequestRecord, String>> formatterClazz,
+			final Class<? extends EgymLogWriter<String>> writerClazz) {
+		final Injector injector = Guice.createInjector(new EgymLogModule(), new EgymLogPipelineModule() {
+			@Override
+			protected void configure() {
+				skipDecoration().formatWith(formatterClazz).writeTo(writerClazz);
+			}
+		});
+		final EgymLogQueue logQueue = injector.getInstance(EgymLogQueue.class);
+
+		return new Runnable() {
+			@Override
+			public void run() {
+				logQueue.startRequest();
+				for (int i = 0; i < LINES_PER_REQUEST; i++) {
+					log.info("Loaded entity \"order-4711\" in 12 ms\n\twith state ACTIVE");
+				}
+				logQueue.endRequest();
+			}
+		};
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.benchmark;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.writer.EgymLogStreamingWriter;
+
+/**
+ * Discards all log messages and accepts them as streamed characters. Used to measure the cost of everything in front of the writer when
+ * the pipeline formats into its reused per-thread buffer.
+ */
+@Singleton
+@ThreadSafe
+class NullStreamingWriter extends NullWriter implements EgymLogStreamingWriter {
+	/** Keeps the JIT from optimizing the formatting away. */
+	private volatile int charCount;
+
+	@Override
+	public void writeChars(StringBuilder logMessage) {
+		charCount = logMessage.length();
+	}
+}
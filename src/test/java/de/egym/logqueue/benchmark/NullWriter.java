@@ -0,0 +1,29 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.benchmark;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.inject.Singleton;
+
+import de.egym.logqueue.writer.EgymLogWriter;
+
+/**
+ * Discards all log messages. Used to measure the cost of everything in front of the writer.
+ */
+@Singleton
+@ThreadSafe
+class NullWriter implements EgymLogWriter<String> {
+	/** Keeps the JIT from optimizing the formatting away. */
+	private volatile int length;
+
+	@Override
+	public void write(String logMessage) {
+		if (logMessage != null) {
+			length = logMessage.length();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.benchmark;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import de.egym.logqueue.EgymLogModule;
+import de.egym.logqueue.EgymLogQueue;
+import de.egym.logqueue.config.EgymLogPipelineModule;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+
+/**
+ * Measures a request which logs several errors with a nested exception, as emitted during incidents. The split variant adds what the
+ * formatter did per throwable before it walked the stack trace elements directly: printing the stack trace into a string and splitting
+ * it into lines.
+ */
+public class StackTraceFormattingBenchmark {
+	private static final int ERRORS_PER_REQUEST = 10;
+
+	private static final Logger log = LoggerFactory.getLogger(StackTraceFormattingBenchmark.class);
+
+	/** Keeps the JIT from optimizing the split away. */
+	private static volatile int lineCount;
+
+	public static void main(String[] args) {
+		final Injector injector = Guice.createInjector(new EgymLogModule(), new EgymLogPipelineModule() {
+			@Override
+			protected void configure() {
+				skipDecoration().formatWith(EgymLogPlainTextFormatter.class).writeTo(NullStreamingWriter.class);
+			}
+		});
+		final EgymLogQueue logQueue = injector.getInstance(EgymLogQueue.class);
+		final Exception exception = new IllegalStateException("Request failed", new RuntimeException("Connection reset"));
+
+		final Runnable direct = new Runnable() {
+			@Override
+			public void run() {
+				logQueue.startRequest();
+				for (int i = 0; i < ERRORS_PER_REQUEST; i++) {
+					log.error("Processing failed\nfor entity order-4711", exception);
+				}
+				logQueue.endRequest();
+			}
+		};
+
+		final Runnable split = new Runnable() {
+			@Override
+			public void run() {
+				direct.run();
+				for (int i = 0; i < ERRORS_PER_REQUEST; i++) {
+					lineCount = ExceptionUtils.getFullStackTrace(exception).split("\n").length;
+				}
+			}
+		};
+
+		for (int round = 0; round < 3; round++) {
+			Benchmark.run("stack traces, direct", 2000, 5000, direct);
+			Benchmark.run("stack traces, direct + print and split", 2000, 5000, split);
+		}
+	}
+}
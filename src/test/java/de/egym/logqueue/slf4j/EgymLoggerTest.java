@@ -16,9 +16,11 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import de.egym.logqueue.EgymLogClock;
 import de.egym.logqueue.EgymLogLevel;
 import de.egym.logqueue.EgymLogQueue;
 import de.egym.logqueue.EgymLogRecord;
+import de.egym.logqueue.EgymLogSystemClock;
 
 @Test
 public class EgymLoggerTest {
@@ -120,4 +122,63 @@ public class EgymLoggerTest {
 		EgymLogRecord logRecord = logRecordCaptor.getValue();
 		assertEquals(logRecord.getMessage(), "format string with arg1=value1 and arg2=value2 and arg3=value3");
 	}
+
+	@Test
+	public void testMessageFormattingWithMutableArgument() {
+		logger = new EgymLogger("foo");
+		EgymLogger.logQueue = logQueue;
+
+		final StringBuilder mutableArg = new StringBuilder("before");
+		logger.debug("format string with arg1={}", mutableArg);
+		mutableArg.setLength(0);
+		mutableArg.append("after");
+
+		ArgumentCaptor<EgymLogRecord> logRecordCaptor = ArgumentCaptor.forClass(EgymLogRecord.class);
+		verify(logQueue).log(logRecordCaptor.capture());
+
+		// The message is rendered lazily, but must reflect the argument's state at the time of the log call.
+		EgymLogRecord logRecord = logRecordCaptor.getValue();
+		assertEquals(logRecord.getMessage(), "format string with arg1=before");
+	}
+
+	@Test
+	public void testMessageFormattingBelowThreshold() {
+		logger = new EgymLogger("foo");
+		EgymLogger.logQueue = logQueue;
+
+		logger.trace("format string with arg1={}", "value1");
+
+		verify(logQueue, never()).log(any(EgymLogRecord.class));
+	}
+
+	@Test
+	public void testWithClock() {
+		final EgymLogClock fixedClock = new EgymLogClock() {
+			@Override
+			public long currentTimeMillis() {
+				return 1387139060000L;
+			}
+
+			@Override
+			public long nanoTime() {
+				return 42L;
+			}
+		};
+
+		logger = new EgymLogger("foo");
+		EgymLogger.logQueue = logQueue;
+		EgymLogger.clock = fixedClock;
+		try {
+			logger.info("Hello World");
+		} finally {
+			EgymLogger.clock = EgymLogSystemClock.getInstance();
+		}
+
+		final ArgumentCaptor<EgymLogRecord> logRecordCaptor = ArgumentCaptor.forClass(EgymLogRecord.class);
+		verify(logQueue).log(logRecordCaptor.capture());
+
+		final EgymLogRecord logRecord = logRecordCaptor.getValue();
+		assertEquals(logRecord.getTimestampMillis(), 1387139060000L);
+		assertEquals(logRecord.getTimestamp().getMillis(), 1387139060000L);
+	}
 }
@@ -0,0 +1,155 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogCompressedFileWriterConfig;
+
+@Test
+public class EgymLogCompressedFileWriterTest {
+	/** The length of the gzip header written by the writer. */
+	private static final int GZIP_HEADER_LENGTH = 10;
+
+	private File file;
+
+	@BeforeMethod
+	public void init() throws IOException {
+		file = File.createTempFile("egym-log-test-", ".log.gz");
+	}
+
+	@AfterMethod
+	public void cleanUp() {
+		file.delete();
+	}
+
+	@Test
+	public void testWriteAndClose() throws IOException {
+		// given
+		final EgymLogCompressedFileWriter writer = new EgymLogCompressedFileWriter(EgymLogCompressedFileWriterConfig.toFile(file)
+				.withBufferSize(16));
+
+		// when
+		writer.write("Grüße aus München");
+		writer.write(null);
+		writer.writeBatch(Arrays.asList("Hello", null, "World"));
+		writer.writeChars(new StringBuilder("Bye"));
+		writer.close();
+		writer.close();
+
+		// then
+		assertEquals(readGzipFile(), "Grüße aus München\nHello\nWorld\nBye\n");
+	}
+
+	@Test
+	public void testReadableBeforeClose() throws Exception {
+		// given
+		final EgymLogCompressedFileWriter writer = new EgymLogCompressedFileWriter(EgymLogCompressedFileWriterConfig.toFile(file));
+
+		// when
+		writer.write("Hello");
+		writer.write("World");
+
+		// then
+		final byte[] data = Files.readAllBytes(file.toPath());
+		final Inflater inflater = new Inflater(true);
+		inflater.setInput(data, GZIP_HEADER_LENGTH, data.length - GZIP_HEADER_LENGTH);
+		assertEquals(inflate(inflater), "Hello\nWorld\n");
+		writer.close();
+	}
+
+	@Test
+	public void testAppendNewMember() throws IOException {
+		// given
+		final EgymLogCompressedFileWriter writer1 = new EgymLogCompressedFileWriter(EgymLogCompressedFileWriterConfig.toFile(file));
+		writer1.write("Hello");
+		writer1.close();
+
+		// when
+		final EgymLogCompressedFileWriter writer2 = new EgymLogCompressedFileWriter(EgymLogCompressedFileWriterConfig.toFile(file));
+		writer2.write("World");
+		writer2.close();
+
+		// then
+		assertEquals(readGzipFile(), "Hello\nWorld\n");
+	}
+
+	@Test
+	public void testDictionary() throws Exception {
+		// given
+		final byte[] dictionary = "INFO de.egym.service.WorkoutService: Loaded workout".getBytes(StandardCharsets.UTF_8);
+		final EgymLogCompressedFileWriter writer = new EgymLogCompressedFileWriter(EgymLogCompressedFileWriterConfig.toFile(file)
+				.withDictionary(dictionary));
+
+		// when
+		writer.write("INFO de.egym.service.WorkoutService: Loaded workout 4711");
+		writer.close();
+
+		// then
+		final byte[] data = Files.readAllBytes(file.toPath());
+		final Inflater inflater = new Inflater();
+		inflater.setInput(data);
+		assertEquals(inflater.inflate(new byte[1]), 0);
+		assertTrue(inflater.needsDictionary());
+		inflater.setDictionary(dictionary);
+		assertEquals(inflate(inflater), "INFO de.egym.service.WorkoutService: Loaded workout 4711\n");
+	}
+
+	@Test
+	public void testCompressionRatio() throws IOException {
+		// given
+		final EgymLogCompressedFileWriter writer = new EgymLogCompressedFileWriter(EgymLogCompressedFileWriterConfig.toFile(file));
+
+		// when
+		for (int i = 0; i < 1000; i++) {
+			writer.writeBatch(Arrays.asList("\t2013-12-15 21:24:20.123 INFO de.egym.service.WorkoutService: Loaded workout " + i));
+		}
+		writer.close();
+
+		// then
+		assertEquals(writer.getCompressedByteCount(), file.length());
+		assertTrue(writer.getUncompressedByteCount() > 80000);
+		assertTrue(writer.getCompressionRatio() > 2, "ratio: " + writer.getCompressionRatio());
+	}
+
+	private String readGzipFile() throws IOException {
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String inflate(Inflater inflater) throws DataFormatException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int length;
+		while ((length = inflater.inflate(buffer)) > 0) {
+			out.write(buffer, 0, length);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
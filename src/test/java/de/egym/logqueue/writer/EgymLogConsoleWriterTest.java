@@ -0,0 +1,96 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogConsoleWriterConfig;
+
+@Test
+public class EgymLogConsoleWriterTest {
+	private ByteArrayOutputStream out;
+
+	@BeforeMethod
+	public void init() {
+		out = new ByteArrayOutputStream();
+	}
+
+	@Test
+	public void testWriteAndClose() throws IOException {
+		// given
+		final EgymLogConsoleWriter writer = new EgymLogConsoleWriter(EgymLogConsoleWriterConfig.defaults().withFlushInterval(60000), out);
+
+		// when
+		writer.write("Grüße");
+		writer.write(null);
+		writer.writeBatch(Arrays.asList("Hello", null, "World"));
+		writer.close();
+		writer.close();
+
+		// then
+		assertEquals(readOutput(), "Grüße\nHello\nWorld\n");
+	}
+
+	@Test
+	public void testFlushInterval() throws Exception {
+		// given
+		final EgymLogConsoleWriter writer = new EgymLogConsoleWriter(EgymLogConsoleWriterConfig.defaults().withFlushInterval(10), out);
+
+		// when
+		writer.write("Hello");
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (readOutput().isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		// then
+		assertEquals(readOutput(), "Hello\n");
+		writer.close();
+	}
+
+	@Test
+	public void testFullBufferIsWritten() throws Exception {
+		// given
+		final EgymLogConsoleWriter writer = new EgymLogConsoleWriter(EgymLogConsoleWriterConfig.defaults().withBufferSize(8)
+				.withFlushInterval(60000), out);
+
+		// when
+		writer.write("Hello World");
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (readOutput().isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		// then
+		assertTrue(readOutput().startsWith("Hello World"));
+		writer.close();
+	}
+
+	@Test
+	public void testWriteAfterClose() throws IOException {
+		// given
+		final EgymLogConsoleWriter writer = new EgymLogConsoleWriter(EgymLogConsoleWriterConfig.defaults(), out);
+		writer.close();
+
+		// when
+		writer.write("Hello");
+
+		// then
+		assertEquals(readOutput(), "Hello\n");
+	}
+
+	private String readOutput() {
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogFileWriterConfig;
+import de.egym.logqueue.config.EgymLogFsyncPolicy;
+import de.egym.logqueue.config.EgymLogRotationConfig;
+
+@Test
+public class EgymLogFileWriterTest {
+	private File file;
+
+	@BeforeMethod
+	public void init() throws IOException {
+		file = File.createTempFile("egym-log-test-", ".log");
+	}
+
+	@AfterMethod
+	public void cleanUp() {
+		for (File archive : listArchives()) {
+			archive.delete();
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testWriteAndClose() throws IOException {
+		// given
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withMaxBatchDelay(60000));
+
+		// when
+		writer.write("Hello");
+		writer.write(null);
+		writer.write("World");
+
+		// then
+		assertEquals(readFile(), "");
+
+		// when
+		writer.close();
+		writer.close();
+
+		// then
+		assertEquals(readFile(), "Hello\nWorld\n");
+	}
+
+	@Test
+	public void testMessagesSpanningBuffers() throws IOException {
+		// given
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withBufferSize(7)
+				.withFsyncPolicy(EgymLogFsyncPolicy.PER_BATCH));
+		final String message = "Grüße aus München, € 100";
+
+		// when
+		writer.write(message);
+		writer.write("");
+		writer.close();
+
+		// then
+		assertEquals(readFile(), message + "\n\n");
+	}
+
+	@Test
+	public void testWriteChars() throws IOException {
+		// given
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withBufferSize(7));
+		final StringBuilder str = new StringBuilder("Grüße aus München");
+
+		// when
+		writer.writeChars(str);
+		str.setLength(0);
+		writer.writeChars(str.append("Hello"));
+		writer.write("World");
+		writer.close();
+
+		// then
+		assertEquals(readFile(), "Grüße aus München\nHello\nWorld\n");
+	}
+
+	@Test
+	public void testBatchSizeTriggersCommit() throws IOException {
+		// given
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withBatchSize(10)
+				.withMaxBatchDelay(60000));
+
+		// when
+		writer.write("short");
+		final String beforeBatchIsFull = readFile();
+		writer.write("long enough");
+		final String afterBatchIsFull = readFile();
+		writer.close();
+
+		// then
+		assertEquals(beforeBatchIsFull, "");
+		assertEquals(afterBatchIsFull, "short\nlong enough\n");
+	}
+
+	@Test
+	public void testDelayTriggersCommit() throws Exception {
+		// given
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withMaxBatchDelay(10)
+				.withFsyncPolicy(EgymLogFsyncPolicy.INTERVAL));
+
+		// when
+		writer.write("Hello");
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (readFile().isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		// then
+		assertEquals(readFile(), "Hello\n");
+		writer.close();
+	}
+
+	@Test
+	public void testRotationBySize() throws Exception {
+		// given
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withBatchSize(1).withRotation(
+				EgymLogRotationConfig.none().withMaxFileSize(10).withMaxArchives(2)));
+
+		// when
+		writer.write("first block");
+		writer.write("second block");
+		writer.write("third block");
+		writer.write("current");
+		writer.close();
+
+		// then
+		assertEquals(readFile(), "current\n");
+
+		final File[] archives = listArchives();
+		assertEquals(archives.length, 2);
+		assertTrue(archives[0].getName().endsWith(".gz"));
+		assertEquals(readCompressed(archives[0]), "second block\n");
+		assertEquals(readCompressed(archives[1]), "third block\n");
+	}
+
+	@Test
+	public void testRotationWithoutCompression() throws Exception {
+		// given
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withBatchSize(1).withRotation(
+				EgymLogRotationConfig.none().withMaxFileSize(1).withCompression(false)));
+
+		// when
+		writer.write("archived");
+		writer.close();
+
+		// then
+		assertEquals(readFile(), "");
+		final File[] archives = listArchives();
+		assertEquals(archives.length, 1);
+		assertEquals(new String(Files.readAllBytes(archives[0].toPath()), StandardCharsets.UTF_8), "archived\n");
+	}
+
+	@Test
+	public void testRetentionKeepsUnrelatedFiles() throws Exception {
+		// given
+		final File backup = new File(file.getPath() + ".bak");
+		final File stripe = new File(file.getPath() + ".0");
+		assertTrue(backup.createNewFile());
+		assertTrue(stripe.createNewFile());
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file).withBatchSize(1).withRotation(
+				EgymLogRotationConfig.none().withMaxFileSize(1).withMaxArchives(1)));
+
+		// when
+		writer.write("first");
+		writer.write("second");
+		writer.write("third");
+		writer.close();
+
+		// then
+		assertTrue(backup.exists());
+		assertTrue(stripe.exists());
+		final File[] archives = listArchives();
+		assertEquals(archives.length, 3);
+		assertEquals(archives[0], stripe);
+		assertTrue(archives[1].getName().endsWith(".gz"));
+		assertEquals(readCompressed(archives[1]), "third\n");
+		assertEquals(archives[2], backup);
+	}
+
+	@Test
+	public void testExitWithoutClose() throws Exception {
+		// given
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ExitWithoutClose.class.getName(),
+				file.getPath()).inheritIO().start();
+
+		// when
+		final int exitCode = process.waitFor();
+
+		// then
+		assertEquals(exitCode, 0);
+		assertEquals(readFile(), "Hello\nLate\n");
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testWriteAfterClose() throws IOException {
+		final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(file));
+		writer.close();
+
+		writer.write("Hello");
+	}
+
+	/**
+	 * Writes a message and exits without closing the writer. A shutdown hook writes another message while the JVM exits, like the
+	 * dispatcher draining its queue.
+	 */
+	public static class ExitWithoutClose {
+		public static void main(String[] args) throws IOException {
+			final EgymLogFileWriter writer = new EgymLogFileWriter(EgymLogFileWriterConfig.toFile(new File(args[0]))
+					.withMaxBatchDelay(60000));
+			writer.write("Hello");
+
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					writer.write("Late");
+				}
+			}));
+		}
+	}
+
+	private String readFile() throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private File[] listArchives() {
+		final File[] archives = file.getParentFile().listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(file.getName() + ".");
+			}
+		});
+		Arrays.sort(archives);
+		return archives;
+	}
+
+	private static String readCompressed(File archive) throws IOException {
+		try (InputStream in = new GZIPInputStream(new FileInputStream(archive))) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			int length;
+			while ((length = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, length);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.EgymLogRequestRecord;
+import de.egym.logqueue.config.EgymLogJournalConfig;
+import de.egym.logqueue.config.EgymLogPipelineConfig;
+import de.egym.logqueue.decorator.EgymLogNoOpDecorator;
+import de.egym.logqueue.formatter.EgymLogFormatter;
+import de.egym.logqueue.formatter.EgymLogPlainTextFormatter;
+
+@Test
+public class EgymLogJournalWriterTest {
+	/**
+	 * Collects all messages. Fails the configured number of times first.
+	 */
+	private static class RecordingWriter implements EgymLogWriter<String> {
+		private final List<String> logMessages = new ArrayList<>();
+
+		private int failures;
+
+		RecordingWriter(int failures) {
+			this.failures = failures;
+		}
+
+		@Override
+		public synchronized void write(String logMessage) {
+			if (failures > 0) {
+				failures--;
+				throw new IllegalStateException("Writer is down");
+			}
+			logMessages.add(logMessage);
+		}
+
+		synchronized List<String> getLogMessages() {
+			return new ArrayList<>(logMessages);
+		}
+	}
+
+	/**
+	 * Appends the next message to the journal whenever a message is forwarded, until the configured number of messages is reached. So the
+	 * forwarder never catches up completely. Records the largest journal length it sees.
+	 */
+	private static class FeedbackWriter implements EgymLogWriter<String> {
+		private final File journalFile;
+
+		private final int count;
+
+		private final List<String> logMessages = new ArrayList<>();
+
+		private EgymLogJournalWriter journal;
+
+		private long maxJournalLength;
+
+		FeedbackWriter(File journalFile, int count) {
+			this.journalFile = journalFile;
+			this.count = count;
+		}
+
+		static String message(int i) {
+			final char[] padding = new char[1000];
+			Arrays.fill(padding, 'x');
+			return i + new String(padding);
+		}
+
+		synchronized void setJournal(EgymLogJournalWriter journal) {
+			this.journal = journal;
+		}
+
+		@Override
+		public synchronized void write(String logMessage) {
+			logMessages.add(logMessage);
+			maxJournalLength = Math.max(maxJournalLength, journalFile.length());
+			// Two messages are in flight.
+			final int next = logMessages.size() + 1;
+			if (next < count) {
+				journal.write(message(next));
+			}
+		}
+
+		synchronized List<String> getLogMessages() {
+			return new ArrayList<>(logMessages);
+		}
+
+		synchronized long getMaxJournalLength() {
+			return maxJournalLength;
+		}
+	}
+
+	private File directory;
+
+	private EgymLogJournalConfig config;
+
+	/**
+	 * Produces bytes, which cannot be journaled.
+	 */
+	private static class BinaryFormatter implements EgymLogFormatter<EgymLogRequestRecord, byte[]> {
+		@Override
+		public byte[] format(EgymLogRequestRecord requestRecord) {
+			return new byte[0];
+		}
+	}
+
+	private static class BinaryWriter implements EgymLogWriter<byte[]> {
+		@Override
+		public void write(byte[] logMessage) {
+		}
+	}
+
+	@BeforeMethod
+	public void init() throws IOException {
+		directory = Files.createTempDirectory("egym-log-journal-").toFile();
+		config = EgymLogJournalConfig.toDirectory(directory).withRetryDelay(10);
+	}
+
+	@AfterMethod
+	public void cleanUp() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testForwardAndClose() throws IOException {
+		// given
+		final RecordingWriter target = new RecordingWriter(0);
+		final EgymLogJournalWriter writer = new EgymLogJournalWriter(config, target);
+
+		// when
+		writer.write("Grüße");
+		writer.write(null);
+		writer.writeBatch(Arrays.asList("Hello", null, "World"));
+		writer.close();
+		writer.close();
+
+		// then
+		assertEquals(target.getLogMessages(), Arrays.asList("Grüße", "Hello", "World"));
+		assertEquals(writer.getPendingBytes(), 0);
+	}
+
+	@Test
+	public void testJournaledPipelineConfig() {
+		// when
+		final EgymLogPipelineConfig<EgymLogRequestRecord, String> pipelineConfig = new EgymLogPipelineConfig<>(
+				EgymLogNoOpDecorator.class, EgymLogPlainTextFormatter.class, RecordingWriter.class, null, config);
+
+		// then
+		assertEquals(pipelineConfig.getJournaledWriterClazz(), RecordingWriter.class);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testJournaledPipelineRequiresStrings() {
+		// when
+		new EgymLogPipelineConfig<>(EgymLogNoOpDecorator.class, BinaryFormatter.class, BinaryWriter.class, null, config);
+	}
+
+	@Test
+	public void testRetryAfterFailure() throws Exception {
+		// given
+		final RecordingWriter target = new RecordingWriter(3);
+		final EgymLogJournalWriter writer = new EgymLogJournalWriter(config, target);
+
+		// when
+		writer.write("Hello");
+		writer.write("World");
+		awaitForwarded(writer);
+		writer.close();
+
+		// then
+		assertEquals(target.getLogMessages(), Arrays.asList("Hello", "World"));
+	}
+
+	@Test
+	public void testReplayAfterRestart() throws Exception {
+		// given
+		final EgymLogJournalWriter failingWriter = new EgymLogJournalWriter(config, new RecordingWriter(Integer.MAX_VALUE));
+		failingWriter.write("Hello");
+		failingWriter.write("World");
+		failingWriter.close();
+
+		// when
+		final RecordingWriter target = new RecordingWriter(0);
+		final EgymLogJournalWriter writer = new EgymLogJournalWriter(config, target);
+		awaitForwarded(writer);
+		writer.close();
+
+		// then
+		assertEquals(target.getLogMessages(), Arrays.asList("Hello", "World"));
+	}
+
+	@Test
+	public void testTornEntryIsDiscarded() throws Exception {
+		// given
+		final EgymLogJournalWriter failingWriter = new EgymLogJournalWriter(config, new RecordingWriter(Integer.MAX_VALUE));
+		failingWriter.write("Hello");
+		failingWriter.close();
+		final ByteBuffer tornEntry = ByteBuffer.allocate(7);
+		tornEntry.putInt(100).put(new byte[] { 'a', 'b', 'c' }).flip();
+		Files.write(new File(directory, EgymLogJournalWriter.JOURNAL_FILE_NAME).toPath(), tornEntry.array(), StandardOpenOption.APPEND);
+
+		// when
+		final RecordingWriter target = new RecordingWriter(0);
+		final EgymLogJournalWriter writer = new EgymLogJournalWriter(config, target);
+		writer.write("World");
+		awaitForwarded(writer);
+		writer.close();
+
+		// then
+		assertEquals(target.getLogMessages(), Arrays.asList("Hello", "World"));
+	}
+
+	@Test
+	public void testCompactionWhileAppending() throws Exception {
+		// given
+		final int count = (int) (3 * EgymLogJournalWriter.COMPACTION_THRESHOLD / 1000);
+		final FeedbackWriter target = new FeedbackWriter(new File(directory, EgymLogJournalWriter.JOURNAL_FILE_NAME), count);
+		final EgymLogJournalWriter writer = new EgymLogJournalWriter(config, target);
+		target.setJournal(writer);
+
+		// when
+		writer.writeBatch(Arrays.asList(FeedbackWriter.message(0), FeedbackWriter.message(1)));
+		final long deadline = System.currentTimeMillis() + 30000;
+		while (target.getLogMessages().size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		writer.close();
+
+		// then
+		final List<String> logMessages = target.getLogMessages();
+		assertEquals(logMessages.size(), count);
+		for (int i = 0; i < count; i++) {
+			assertEquals(logMessages.get(i), FeedbackWriter.message(i));
+		}
+		assertTrue(target.getMaxJournalLength() < 2 * EgymLogJournalWriter.COMPACTION_THRESHOLD, "The journal grew to "
+				+ target.getMaxJournalLength() + " bytes");
+	}
+
+	private void awaitForwarded(EgymLogJournalWriter writer) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (writer.getPendingBytes() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
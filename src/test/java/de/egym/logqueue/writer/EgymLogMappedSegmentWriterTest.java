@@ -0,0 +1,154 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogSegmentWriterConfig;
+
+@Test
+public class EgymLogMappedSegmentWriterTest {
+	private File directory;
+
+	@BeforeMethod
+	public void init() throws IOException {
+		directory = File.createTempFile("egym-log-test-", "");
+		assertTrue(directory.delete());
+		assertTrue(directory.mkdir());
+	}
+
+	@AfterMethod
+	public void cleanUp() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testSegmentIsTrimmedOnClose() throws IOException {
+		// given
+		final EgymLogMappedSegmentWriter writer = new EgymLogMappedSegmentWriter(EgymLogSegmentWriterConfig.toDirectory(directory));
+
+		// when
+		writer.write("Hello");
+		writer.write(null);
+		writer.write("Grüße");
+		writer.close();
+		writer.close();
+
+		// then
+		final File[] files = directory.listFiles();
+		assertEquals(files.length, 1);
+		assertTrue(files[0].getName().startsWith("egym-log-"));
+		assertEquals(read(files[0]), "Hello\nGrüße\n");
+	}
+
+	@Test
+	public void testRollsOverToFreshSegments() throws IOException {
+		// given
+		final EgymLogMappedSegmentWriter writer = new EgymLogMappedSegmentWriter(EgymLogSegmentWriterConfig.toDirectory(directory)
+				.withFilePrefix("app").withSegmentSize(16));
+
+		// when
+		writer.write("first line");
+		writer.write("second line");
+		writer.write("a line which is larger than a segment");
+		writer.write("last");
+		writer.close();
+
+		// then
+		final File[] files = directory.listFiles();
+		Arrays.sort(files);
+		assertEquals(files.length, 4);
+		assertEquals(read(files[0]), "first line\n");
+		assertEquals(read(files[1]), "second line\n");
+		assertEquals(read(files[2]), "a line which is larger than a segment\n");
+		assertEquals(read(files[3]), "last\n");
+	}
+
+	@Test
+	public void testByteWriter() throws IOException {
+		// given
+		final EgymLogMappedSegmentByteWriter writer = new EgymLogMappedSegmentByteWriter(EgymLogSegmentWriterConfig.toDirectory(directory));
+
+		// when
+		writer.write("Hello ".getBytes(StandardCharsets.UTF_8));
+		writer.write("World".getBytes(StandardCharsets.UTF_8));
+		writer.close();
+
+		// then
+		assertEquals(read(directory.listFiles()[0]), "Hello World");
+	}
+
+	@Test
+	public void testExitWithoutClose() throws Exception {
+		// given
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ExitWithoutClose.class.getName(),
+				directory.getPath()).inheritIO().start();
+
+		// when
+		final int exitCode = process.waitFor();
+
+		// then
+		assertEquals(exitCode, 0);
+		final File[] files = directory.listFiles();
+		Arrays.sort(files);
+		final StringBuilder content = new StringBuilder();
+		for (File file : files) {
+			content.append(read(file));
+		}
+		// Untrimmed segments would contain trailing zeros.
+		assertEquals(content.toString(), "Hello\nLate\n");
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testWriteAfterClose() throws IOException {
+		final EgymLogMappedSegmentWriter writer = new EgymLogMappedSegmentWriter(EgymLogSegmentWriterConfig.toDirectory(directory));
+		writer.close();
+
+		writer.write("Hello");
+	}
+
+	/**
+	 * Writes a message and exits without closing the writer. Another shutdown hook writes a message after the writer's hook has run, like
+	 * the dispatcher draining its queue.
+	 */
+	public static class ExitWithoutClose {
+		public static void main(String[] args) {
+			final EgymLogMappedSegmentWriter writer = new EgymLogMappedSegmentWriter(EgymLogSegmentWriterConfig.toDirectory(new File(
+					args[0])));
+			writer.write("Hello");
+
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					writer.write("Late");
+				}
+			}));
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
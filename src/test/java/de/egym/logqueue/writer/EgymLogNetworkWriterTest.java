@@ -0,0 +1,283 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import static org.testng.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogNetworkWriterConfig;
+
+@Test
+public class EgymLogNetworkWriterTest {
+	/**
+	 * An in-process collector on the loopback interface. Collects the blocks of all connections.
+	 */
+	private static class LoopbackReceiver implements Runnable {
+		private final ServerSocket serverSocket;
+
+		private final List<String> blocks = new ArrayList<>();
+
+		LoopbackReceiver(int port) throws IOException {
+			serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+			final Thread thread = new Thread(this, "loopback-receiver");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void run() {
+			while (!serverSocket.isClosed()) {
+				try (Socket socket = serverSocket.accept()) {
+					final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+					while (true) {
+						final int frameLength = in.readInt();
+						final int blockCount = in.readInt();
+						int length = 4;
+						for (int i = 0; i < blockCount; i++) {
+							final byte[] block = new byte[in.readInt()];
+							in.readFully(block);
+							length += 4 + block.length;
+							synchronized (this) {
+								blocks.add(new String(block, StandardCharsets.UTF_8));
+							}
+						}
+						assertEquals(length, frameLength);
+					}
+				} catch (EOFException e) {
+					// The writer closed the connection.
+				} catch (IOException e) {
+					// The receiver was closed.
+				}
+			}
+		}
+
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		synchronized List<String> getBlocks() {
+			return new ArrayList<>(blocks);
+		}
+
+		List<String> awaitBlocks(int count) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + 5000;
+			while (getBlocks().size() < count && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			return getBlocks();
+		}
+
+		void close() throws IOException {
+			serverSocket.close();
+		}
+	}
+
+	private File spoolFile;
+
+	private LoopbackReceiver receiver;
+
+	@BeforeMethod
+	public void init() throws IOException {
+		spoolFile = File.createTempFile("egym-log-test-", ".spool");
+	}
+
+	@AfterMethod
+	public void cleanUp() throws IOException {
+		if (receiver != null) {
+			receiver.close();
+			receiver = null;
+		}
+		spoolFile.delete();
+	}
+
+	@Test
+	public void testSendToCollector() throws Exception {
+		// given
+		receiver = new LoopbackReceiver(0);
+		final EgymLogNetworkWriter writer = new EgymLogNetworkWriter(EgymLogNetworkWriterConfig.toAddress("localhost", receiver.getPort())
+				.withMaxFrameSize(64));
+		final List<String> expectedBlocks = new ArrayList<>();
+
+		// when
+		for (int i = 0; i < 100; i++) {
+			writer.write("Grüße " + i);
+			expectedBlocks.add("Grüße " + i);
+		}
+		writer.write(null);
+		writer.writeBatch(Arrays.asList("Hello", null, "World"));
+		expectedBlocks.addAll(Arrays.asList("Hello", "World"));
+		writer.close();
+		writer.close();
+
+		// then
+		assertEquals(receiver.awaitBlocks(expectedBlocks.size()), expectedBlocks);
+		assertEquals(writer.getDroppedBlockCount(), 0);
+	}
+
+	@Test
+	public void testSpoolWhileCollectorIsDown() throws Exception {
+		// given
+		final int port = findFreePort();
+		final EgymLogNetworkWriter writer = new EgymLogNetworkWriter(EgymLogNetworkWriterConfig.toAddress("localhost", port)
+				.withSpoolFile(spoolFile).withReconnectBackoff(10, 50));
+
+		// when
+		writer.write("Hello");
+		writer.write("World");
+		awaitSpooled();
+		receiver = new LoopbackReceiver(port);
+		receiver.awaitBlocks(2);
+		writer.write("Bye");
+		writer.close();
+
+		// then
+		assertEquals(receiver.awaitBlocks(3), Arrays.asList("Hello", "World", "Bye"));
+		assertEquals(spoolFile.length(), 0);
+	}
+
+	@Test
+	public void testSpoolReplayedAfterRestart() throws Exception {
+		// given
+		final int port = findFreePort();
+		final EgymLogNetworkWriter offlineWriter = new EgymLogNetworkWriter(EgymLogNetworkWriterConfig.toAddress("localhost", port)
+				.withSpoolFile(spoolFile));
+		offlineWriter.write("Hello");
+		offlineWriter.close();
+
+		// when
+		receiver = new LoopbackReceiver(port);
+		final EgymLogNetworkWriter writer = new EgymLogNetworkWriter(EgymLogNetworkWriterConfig.toAddress("localhost", port)
+				.withSpoolFile(spoolFile));
+		writer.write("World");
+		writer.close();
+
+		// then
+		assertEquals(receiver.awaitBlocks(2), Arrays.asList("Hello", "World"));
+	}
+
+	@Test
+	public void testDropWithoutSpool() throws Exception {
+		// given
+		final EgymLogNetworkWriter writer = new EgymLogNetworkWriter(EgymLogNetworkWriterConfig.toAddress("localhost", findFreePort()));
+
+		// when
+		writer.write("Hello");
+		writer.close();
+
+		// then
+		assertFalse(writer.isConnected());
+		assertEquals(writer.getDroppedBlockCount(), 1);
+	}
+
+	@Test
+	public void testWritesRacingCloseAreNotLost() throws Exception {
+		for (int round = 0; round < 20; round++) {
+			// given
+			final EgymLogNetworkWriter writer = new EgymLogNetworkWriter(EgymLogNetworkWriterConfig.toAddress("localhost",
+					findFreePort()));
+			final AtomicLong accepted = new AtomicLong();
+			final List<Thread> threads = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				threads.add(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							while (true) {
+								writer.write("Hello");
+								accepted.incrementAndGet();
+							}
+						} catch (IllegalStateException e) {
+							// The writer has been closed.
+						}
+					}
+				}));
+			}
+
+			// when
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			Thread.sleep(5);
+			writer.close();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+
+			// then
+			assertEquals(writer.getDroppedBlockCount(), accepted.get());
+		}
+	}
+
+	@Test
+	public void testExitWithoutClose() throws Exception {
+		// given
+		receiver = new LoopbackReceiver(0);
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ExitWithoutClose.class.getName(),
+				String.valueOf(receiver.getPort())).inheritIO().start();
+
+		// when
+		final int exitCode = process.waitFor();
+
+		// then
+		assertEquals(exitCode, 0);
+		assertEquals(receiver.awaitBlocks(2), Arrays.asList("Hello", "Late"));
+	}
+
+	/**
+	 * Writes a message and exits without closing the writer. A shutdown hook writes another message while the JVM exits, like the
+	 * dispatcher draining its queue.
+	 */
+	public static class ExitWithoutClose {
+		public static void main(String[] args) throws IOException {
+			final EgymLogNetworkWriter writer = new EgymLogNetworkWriter(EgymLogNetworkWriterConfig.toAddress("localhost", Integer
+					.parseInt(args[0])));
+			writer.write("Hello");
+
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					writer.write("Late");
+				}
+			}));
+		}
+	}
+
+	private void awaitSpooled() throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (spoolFile.length() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static int findFreePort() throws IOException {
+		try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			return serverSocket.getLocalPort();
+		}
+	}
+}
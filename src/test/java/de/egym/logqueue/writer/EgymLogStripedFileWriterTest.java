@@ -0,0 +1,145 @@
+/**
+ * This file is part of the source code and related artifacts for eGym Application.
+ *
+ * Copyright © 2013 eGym GmbH
+ */
+package de.egym.logqueue.writer;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.egym.logqueue.config.EgymLogFileWriterConfig;
+import de.egym.logqueue.config.EgymLogStripedFileWriterConfig;
+
+@Test
+public class EgymLogStripedFileWriterTest {
+	private static final int STRIPES = 3;
+
+	private File file;
+
+	@BeforeMethod
+	public void init() throws IOException {
+		file = File.createTempFile("egym-log-test-", ".log");
+	}
+
+	@AfterMethod
+	public void cleanUp() {
+		for (File stripeFile : stripeFiles()) {
+			stripeFile.delete();
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testWriteAndMerge() throws IOException {
+		// given
+		final EgymLogStripedFileWriter writer = new EgymLogStripedFileWriter(EgymLogStripedFileWriterConfig.of(
+				EgymLogFileWriterConfig.toFile(file)).withStripes(STRIPES));
+
+		// when
+		writer.write("first\n  second line\r");
+		writer.write(null);
+		writer.writeChars(new StringBuilder(""));
+		writer.writeBatch(Arrays.asList("third", null, "fourth"));
+		writer.close();
+
+		// then
+		final String stripe = new String(Files.readAllBytes(EgymLogStripedFileWriter.getStripeFile(file,
+				(int) (Thread.currentThread().getId() % STRIPES)).toPath()), StandardCharsets.UTF_8);
+		assertTrue(stripe.startsWith(EgymLogStripedFileWriter.HEADER_MARKER + "0 "));
+		assertEquals(merge(), "first\n  second line\r\n\nthird\nfourth\n");
+	}
+
+	@Test
+	public void testConcurrentWritersAreMergedInOrder() throws Exception {
+		// given
+		final EgymLogStripedFileWriter writer = new EgymLogStripedFileWriter(EgymLogStripedFileWriterConfig.of(
+				EgymLogFileWriterConfig.toFile(file)).withStripes(STRIPES));
+		final int messagesPerThread = 2000;
+		final List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4 * STRIPES; t++) {
+			final int threadIndex = t;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < messagesPerThread; i += 2) {
+						if (i % 10 == 0) {
+							writer.writeBatch(Arrays.asList(message(threadIndex, i), message(threadIndex, i + 1)));
+						} else {
+							writer.write(message(threadIndex, i));
+							writer.writeChars(new StringBuilder(message(threadIndex, i + 1)));
+						}
+					}
+				}
+			});
+		}
+
+		// when
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		writer.close();
+
+		// then
+		final SortedMap<Long, String> messagesBySequence = new TreeMap<>();
+		for (File stripeFile : stripeFiles()) {
+			long previousSequence = -1;
+			final List<String> lines = Files.readAllLines(stripeFile.toPath(), StandardCharsets.UTF_8);
+			for (int i = 0; i < lines.size(); i += 2) {
+				final String header = lines.get(i);
+				assertEquals(header.charAt(0), EgymLogStripedFileWriter.HEADER_MARKER);
+				final long sequence = Long.parseLong(header.substring(1, header.indexOf(' ')));
+				assertTrue(sequence > previousSequence, "Stripe " + stripeFile + " is not sorted at sequence " + sequence);
+				previousSequence = sequence;
+				messagesBySequence.put(sequence, lines.get(i + 1));
+			}
+		}
+		assertEquals(messagesBySequence.size(), threads.size() * messagesPerThread);
+		assertEquals(messagesBySequence.lastKey().longValue(), messagesBySequence.size() - 1);
+
+		final StringBuilder expectedOutput = new StringBuilder();
+		final int[] nextMessage = new int[threads.size()];
+		for (String message : messagesBySequence.values()) {
+			final String[] parts = message.split(" ");
+			final int threadIndex = Integer.parseInt(parts[1]);
+			assertEquals(Integer.parseInt(parts[3]), nextMessage[threadIndex]++, "Out of order: " + message);
+			expectedOutput.append(message).append('\n');
+		}
+		assertEquals(merge(), expectedOutput.toString());
+	}
+
+	private static String message(int threadIndex, int i) {
+		return "thread " + threadIndex + " message " + i;
+	}
+
+	private String merge() throws IOException {
+		final StringWriter out = new StringWriter();
+		EgymLogStripeMerger.merge(stripeFiles(), out);
+		return out.toString();
+	}
+
+	private List<File> stripeFiles() {
+		final List<File> stripeFiles = new ArrayList<>();
+		for (int i = 0; i < STRIPES; i++) {
+			stripeFiles.add(EgymLogStripedFileWriter.getStripeFile(file, i));
+		}
+		return stripeFiles;
+	}
+}